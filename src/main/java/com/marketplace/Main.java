@@ -3,16 +3,23 @@ package com.marketplace;
 import com.marketplace.models.Merchant;
 import com.marketplace.models.User;
 import com.marketplace.models.Product;
+import com.marketplace.search.ProductFacets;
 import com.marketplace.service.AdminService;
 import com.marketplace.service.AuthService;
 import com.marketplace.service.OrderService;
+import com.marketplace.service.ProductImportService;
 import com.marketplace.service.ProductService;
 import com.marketplace.service.MessageService;
 import com.marketplace.service.ComplaintService;
 import com.marketplace.models.Enums;
-import com.marketplace.dao.ProductDAO;
-import com.marketplace.dao.MerchantDAO;
-import com.marketplace.dao.UserDAO;
+import com.marketplace.dao.MerchantRepository;
+import com.marketplace.dao.Page;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.ProductSort;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.StorageEngines;
+import com.marketplace.dao.UserRepository;
+import com.marketplace.db.DataGenerator;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -23,16 +30,19 @@ import java.util.Scanner;
  * 
  */
 public class Main {
-    private static final AuthService auth = new AuthService();
-    private static final ProductService productService = new ProductService();
-    private static final OrderService orderService = new OrderService();
-    private static final AdminService adminService = new AdminService();
-    private static final MessageService messageService = new MessageService();
-    private static final ComplaintService complaintService = new ComplaintService();
+    // 存储引擎由 -Dmarketplace.storage=sqlite|memory 选择，默认 SQLite
+    private static final StorageEngine storage = StorageEngines.getDefault();
+    private static final AuthService auth = new AuthService(storage);
+    private static final ProductService productService = new ProductService(storage);
+    private static final OrderService orderService = new OrderService(storage);
+    private static final AdminService adminService = new AdminService(storage);
+    private static final MessageService messageService = new MessageService(storage);
+    private static final ComplaintService complaintService = new ComplaintService(storage);
+    private static final ProductImportService importService = new ProductImportService(storage);
     private static final com.marketplace.service.CartService cartService = new com.marketplace.service.CartService();
-    private static final ProductDAO productDAO = new ProductDAO();
-    private static final MerchantDAO merchantDAO = new MerchantDAO();
-    private static final UserDAO userDAO = new UserDAO();
+    private static final ProductRepository productDAO = storage.products();
+    private static final MerchantRepository merchantDAO = storage.merchants();
+    private static final UserRepository userDAO = storage.users();
 
     private static String currentUserPhone = null; 
     private static Merchant currentMerchant = null; 
@@ -187,16 +197,22 @@ public class Main {
     // ---------- 用户菜单 (登录后) ----------
     private static void userMenu(Scanner sc) throws SQLException {
         while (true) {
-            System.out.println("用户菜单：1 列出商品(可购买/私信/加入购物车) 2 搜索商品 3 查看消息 4 切换到商家 5 领取优惠券 6 加入购物车 0 注销");
+            System.out.println("用户菜单：1 列出商品(可购买/私信/加入购物车) 2 搜索商品 3 查看消息 4 切换到商家 5 领取优惠券 6 加入购物车 7 按条件筛选商品 0 注销");
             String c = sc.nextLine().trim();
             switch (c) {
                 case "1":
-                    List<Product> list = productService.listPublished();
-                    for (Product p : list)
-                        System.out.println(p.getProductId() + " | " + p.getTitle() + " | " + p.getPrice() + " | 库存:" + p.getStock() + " | 联系方式: 使用站内私信或购买后交换");
-                    // 浏览时提供购买或私信操作（购买只能在浏览界面触发）
-                    System.out.print("输入要操作的商品ID（或回车返回）: ");
-                    String sel = sc.nextLine().trim();
+                    // 分页浏览（最新上架在前，每页 20 条），浏览时提供购买或私信操作（购买只能在浏览界面触发）
+                    String cursor = null;
+                    String sel;
+                    while (true) {
+                        Page<Product> page = productService.listPublishedPage(ProductSort.NEWEST, cursor, 20);
+                        for (Product p : page.items())
+                            System.out.println(p.getProductId() + " | " + p.getTitle() + " | " + p.getPrice() + " | 库存:" + p.getStock() + " | 联系方式: 使用站内私信或购买后交换");
+                        System.out.print(page.hasNext() ? "输入 n 查看下一页，或输入要操作的商品ID（回车返回）: " : "输入要操作的商品ID（或回车返回）: ");
+                        sel = sc.nextLine().trim();
+                        if (!sel.equals("n") || !page.hasNext()) break;
+                        cursor = page.nextCursor();
+                    }
                     if (!sel.isEmpty()) {
                         Product prod = productDAO.findById(sel);
                         if (prod == null) { System.out.println("商品不存在"); break; }
@@ -216,8 +232,11 @@ public class Main {
                                 String chosen = sc.nextLine().trim();
                                 if (!chosen.isEmpty()) useCouponId = chosen;
                             }
-                            // 减少库存并创建订单（若使用优惠券则调用带券的下单）
-                            productDAO.reduceStock(sel, qty);
+                            // 减少库存并创建订单（若使用优惠券则调用带券的下单）；库存不足时不下单
+                            if (!productDAO.reduceStock(sel, qty)) {
+                                System.out.println("库存不足，购买失败");
+                                break;
+                            }
                             if (useCouponId == null) {
                                 orderService.createOrder(currentUserPhone, prod.getMerchantId(), total, 0.0, 0.0);
                             } else {
@@ -277,9 +296,49 @@ public class Main {
                 case "2":
                     System.out.print("关键词: ");
                     String kw = sc.nextLine();
-                    List<Product> sres = productService.searchProducts(kw);
-                    for (Product p : sres)
-                        System.out.println(p.getProductId() + " | " + p.getTitle() + " | " + p.getPrice() + " | 库存:" + p.getStock() + " | 联系方式: 使用站内私信或购买后交换");
+                    if (kw.isBlank()) {
+                        System.out.println("请输入关键词，浏览全部商品请使用 1");
+                        break;
+                    }
+                    // 按相关度取前 50 条，没有完全匹配时再容错搜索一次
+                    List<ProductService.ScoredProduct> found = productService.searchScored(kw, 50);
+                    if (found.isEmpty()) {
+                        found = productService.searchFuzzy(kw, 50);
+                        if (!found.isEmpty()) System.out.println("未找到完全匹配，以下为近似结果：");
+                    }
+                    for (ProductService.ScoredProduct sp : found) {
+                        Product p = sp.product();
+                        System.out.println(p.getProductId() + " | " + p.getTitle() + " | " + p.getPrice() + " | 库存:" + p.getStock() + " | 相关度:" + String.format("%.2f", sp.score()) + " | 联系方式: 使用站内私信或购买后交换");
+                    }
+                    break;
+                case "7":
+                    System.out.print("关键词（可空）: ");
+                    String fkw = sc.nextLine().trim();
+                    ProductFacets.PriceBand[] bands = ProductFacets.PriceBand.values();
+                    StringBuilder bandMenu = new StringBuilder("价格区间（可空）：");
+                    for (int i = 0; i < bands.length; i++) bandMenu.append(i + 1).append(' ').append(bands[i].label()).append(' ');
+                    System.out.print(bandMenu.append(": "));
+                    String fb = sc.nextLine().trim();
+                    java.util.Set<ProductFacets.PriceBand> fbands = new java.util.HashSet<>();
+                    try {
+                        if (!fb.isEmpty()) fbands.add(bands[Integer.parseInt(fb) - 1]);
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        System.out.println("价格区间输入无效，已忽略");
+                    }
+                    System.out.print("商家ID（可空）: ");
+                    String fm = sc.nextLine().trim();
+                    System.out.print("只看有货？(y/N): ");
+                    boolean inStockOnly = sc.nextLine().trim().equalsIgnoreCase("y");
+                    ProductFacets.Filter filter = new ProductFacets.Filter(fbands, fm.isEmpty() ? null : java.util.Set.of(fm),
+                            inStockOnly ? java.util.Set.of(ProductFacets.StockState.IN_STOCK) : null, java.util.Set.of(Enums.ProductStatus.PUBLISHED));
+                    ProductService.FilteredProducts fr = productService.filterProducts(fkw, filter, 50);
+                    for (Product p : fr.products())
+                        System.out.println(p.getProductId() + " | " + p.getTitle() + " | " + p.getPrice() + " | 库存:" + p.getStock());
+                    System.out.println("共 " + fr.total() + " 件");
+                    fr.counts().priceBands().forEach((b, n) -> System.out.print(b.label() + "(" + n + ") "));
+                    System.out.println();
+                    System.out.println("有货 " + fr.counts().stock().getOrDefault(ProductFacets.StockState.IN_STOCK, 0)
+                            + " / 无货 " + fr.counts().stock().getOrDefault(ProductFacets.StockState.SOLD_OUT, 0));
                     break;
                 case "3":
                     // 列出与当前用户相关的所有消息（包括收到和已发送），选择后可回复或继续发送给对方
@@ -381,7 +440,7 @@ public class Main {
     // ---------- 商家菜单 (登录后) ----------
     private static void merchantMenu(Scanner sc) throws SQLException {
         while (true) {
-            System.out.println("商家菜单：1 发布商品 2 列出我的商品 3 查看消息 4 私信用户 0 注销");
+            System.out.println("商家菜单：1 发布商品 2 列出我的商品 3 查看消息 4 私信用户 6 批量导入商品 0 注销");
             String c = sc.nextLine().trim();
             switch (c) {
                 case "1":
@@ -397,9 +456,16 @@ public class Main {
                     System.out.println("发布成功");
                     break;
                 case "2":
-                    List<Product> my = productDAO.listByMerchant(currentMerchant.getMerchantId());
-                    for (Product p : my)
-                        System.out.println(p.getProductId() + " | " + p.getTitle() + " | " + p.getPrice() + " | 库存:" + p.getStock());
+                    String myCursor = null;
+                    while (true) {
+                        Page<Product> my = productService.listMerchantProductsPage(currentMerchant.getMerchantId(), ProductSort.NEWEST, myCursor, 20);
+                        for (Product p : my.items())
+                            System.out.println(p.getProductId() + " | " + p.getTitle() + " | " + p.getPrice() + " | 库存:" + p.getStock());
+                        if (!my.hasNext()) break;
+                        System.out.print("输入 n 查看下一页（回车返回）: ");
+                        if (!sc.nextLine().trim().equals("n")) break;
+                        myCursor = my.nextCursor();
+                    }
                     break;
                 case "5":
                     // 创建优惠券
@@ -471,6 +537,20 @@ public class Main {
                     messageService.sendMessagePublic(currentMerchant.getPhone(), to, content);
                     System.out.println("已发送");
                     break;
+                case "6":
+                    System.out.print("导入文件路径（.csv 或 .jsonl，需含 title/price/stock）: ");
+                    String importPath = sc.nextLine().trim();
+                    if (importPath.isEmpty()) { System.out.println("已取消"); break; }
+                    try {
+                        ProductImportService.Report report = importService.importFile(java.nio.file.Path.of(importPath), currentMerchant.getMerchantId(), currentMerchant.getPhone());
+                        System.out.println("导入成功 " + report.imported() + " 件，失败 " + report.failed() + " 行");
+                        // 只显示前 20 条失败原因
+                        for (ProductImportService.RowError e : report.errors().subList(0, Math.min(20, report.errors().size())))
+                            System.out.println("  第 " + e.line() + " 行: " + e.message());
+                    } catch (java.io.IOException e) {
+                        System.out.println("导入失败: " + e.getMessage());
+                    }
+                    break;
                 case "0":
                     currentMerchant = null;
                     System.out.println("商家已注销");
@@ -486,7 +566,7 @@ public class Main {
     // ---------- 管理员菜单 (登录后) ----------
     private static void adminMenu(Scanner sc) throws SQLException {
         while (true) {
-            System.out.println("管理员菜单：1 搜索商品 2 查看所有用户手机号 3 查看被封商品 4 查看被封手机号 5 封禁商品 6 封禁手机号 7 取消封禁 8 强制删除商品 9 一键清空数据 10 加载样例数据 0 注销");
+            System.out.println("管理员菜单：1 搜索商品 2 查看所有用户手机号 3 查看被封商品 4 查看被封手机号 5 封禁商品 6 封禁手机号 7 取消封禁 8 强制删除商品 9 一键清空数据 10 加载样例数据 11 生成大规模测试数据 12 SQL 执行统计 13 慢查询记录 14 商品缓存统计 15 导出商品 16 商品变更日志 17 库存台账 0 注销");
             String c = sc.nextLine().trim();
             switch (c) {
                 case "1":
@@ -544,6 +624,67 @@ public class Main {
                     adminService.seedSampleData();
                     System.out.println("已加载样例商家与商品（若不存在）");
                     break;
+                case "11":
+                    System.out.print("规模倍数（1 = 10 万用户/20 万商品/50 万订单/100 万消息，回车默认 1）: ");
+                    String scaleIn = sc.nextLine().trim();
+                    System.out.print("随机种子（回车默认 42）: ");
+                    String seedIn = sc.nextLine().trim();
+                    try {
+                        double scale = scaleIn.isEmpty() ? 1.0 : Double.parseDouble(scaleIn);
+                        long seed = seedIn.isEmpty() ? 42L : Long.parseLong(seedIn);
+                        System.out.println("正在生成，数据量较大时需要数分钟...");
+                        System.out.println("生成完成: " + adminService.generateData(DataGenerator.Config.scaled(scale, seed)));
+                    } catch (NumberFormatException e) {
+                        System.out.println("输入格式错误");
+                    } catch (UnsupportedOperationException e) {
+                        System.out.println("当前存储引擎不支持生成数据: " + e.getMessage());
+                    }
+                    break;
+                case "12":
+                    System.out.print(adminService.sqlMetricsReport(20));
+                    System.out.print("输入 R 清零统计（回车返回）: ");
+                    if ("R".equalsIgnoreCase(sc.nextLine().trim())) {
+                        adminService.resetSqlMetrics();
+                        System.out.println("SQL 统计已清零");
+                    }
+                    break;
+                case "13":
+                    java.util.List<com.marketplace.db.SlowQueryLog.Entry> slow = adminService.recentSlowQueries();
+                    if (slow.isEmpty()) System.out.println("无慢查询记录");
+                    else slow.forEach(e -> System.out.print(e.format()));
+                    break;
+                case "14":
+                    com.marketplace.dao.CachingProductRepository.Stats cs = adminService.productCacheStats();
+                    if (cs == null) System.out.println("当前存储引擎未启用商品缓存");
+                    else System.out.printf("商品缓存：条目 %d，命中 %d，未命中 %d（命中率 %.1f%%），淘汰 %d；已发布列表命中 %d，未命中 %d%n",
+                            cs.size(), cs.hits(), cs.misses(), cs.hitRate() * 100, cs.evictions(), cs.listHits(), cs.listMisses());
+                    break;
+                case "15":
+                    System.out.print("导出文件路径（默认 products.jsonl）: ");
+                    String exportPath = sc.nextLine().trim();
+                    if (exportPath.isEmpty()) exportPath = "products.jsonl";
+                    try {
+                        long exported = adminService.exportProducts(java.nio.file.Path.of(exportPath));
+                        System.out.println("已导出 " + exported + " 件商品到 " + exportPath);
+                    } catch (java.io.IOException e) {
+                        System.out.println("导出失败: " + e.getMessage());
+                    }
+                    break;
+                case "16":
+                    List<com.marketplace.dao.ProductChange> changes = adminService.recentProductChanges(20);
+                    if (changes == null) { System.out.println("当前存储引擎不记录商品变更日志"); break; }
+                    if (changes.isEmpty()) System.out.println("暂无商品变更");
+                    for (com.marketplace.dao.ProductChange ch : changes)
+                        System.out.println("#" + ch.sequence() + " | " + ch.kind() + " | " + ch.productId() + " | " + new java.util.Date(ch.changedAt()));
+                    break;
+                case "17":
+                    java.util.Map<String, Integer> oversold = adminService.stockOversold();
+                    if (oversold == null) { System.out.println("当前存储引擎未启用库存台账"); break; }
+                    if (oversold.isEmpty()) System.out.println("写回时未发现超卖");
+                    oversold.forEach((id, n) -> System.out.println("超卖 | " + id + " | " + n + " 件（库存已置 0）"));
+                    SQLException flushFailure = adminService.stockLedgerFlushFailure();
+                    if (flushFailure != null) System.out.println("后台写回失败，稍后重试: " + flushFailure.getMessage());
+                    break;
                 case "0":
                     adminUser = null;
                     System.out.println("管理员已退出");
@@ -0,0 +1,29 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Complaint;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link ComplaintRepository} 的异步版本：每个操作在虚拟线程上执行并返回 CompletableFuture
+ */
+public class AsyncComplaintDAO extends AsyncDAO {
+    private final ComplaintRepository dao;
+
+    public AsyncComplaintDAO() {
+        this(StorageEngines.getDefault().complaints());
+    }
+
+    public AsyncComplaintDAO(ComplaintRepository dao) {
+        this.dao = dao;
+    }
+
+    public CompletableFuture<Void> save(Complaint c) {
+        return async(() -> { dao.save(c); return null; });
+    }
+
+    public CompletableFuture<List<String>> listOpenComplaints() {
+        return async(dao::listOpenComplaints);
+    }
+}
@@ -0,0 +1,45 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Coupon;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link CouponRepository} 的异步版本：每个操作在虚拟线程上执行并返回 CompletableFuture
+ */
+public class AsyncCouponDAO extends AsyncDAO {
+    private final CouponRepository dao;
+
+    public AsyncCouponDAO() {
+        this(StorageEngines.getDefault().coupons());
+    }
+
+    public AsyncCouponDAO(CouponRepository dao) {
+        this.dao = dao;
+    }
+
+    public CompletableFuture<Void> save(Coupon c) {
+        return async(() -> { dao.save(c); return null; });
+    }
+
+    public CompletableFuture<Boolean> claimCoupon(String couponId, String userPhone) {
+        return async(() -> dao.claimCoupon(couponId, userPhone));
+    }
+
+    public CompletableFuture<List<String>> listUserCoupons(String userPhone) {
+        return async(() -> dao.listUserCoupons(userPhone));
+    }
+
+    public CompletableFuture<Void> markUserCouponUsed(String userCouponId) {
+        return async(() -> { dao.markUserCouponUsed(userCouponId); return null; });
+    }
+
+    public CompletableFuture<Double> getDiscountByUserCouponId(String userCouponId) {
+        return async(() -> dao.getDiscountByUserCouponId(userCouponId));
+    }
+
+    public CompletableFuture<List<String>> listCouponsByMerchant(String merchantId) {
+        return async(() -> dao.listCouponsByMerchant(merchantId));
+    }
+}
@@ -0,0 +1,33 @@
+package com.marketplace.dao;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 异步 DAO 的公共部分：把同步 DAO 调用放到虚拟线程上执行，返回 CompletableFuture。
+ * 多个互不依赖的查询（如商品、优惠券折扣、用户 VIP）可以同时发起，总耗时取最慢的一次而不是求和。
+ * 注意：异步调用运行在其它线程上，不会加入调用方当前的工作单元（事务）。
+ */
+abstract class AsyncDAO {
+    /** 每个任务一个虚拟线程；阻塞在 JDBC 上时不占用平台线程，并发度由连接池上限约束 */
+    private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dao-async-", 0).factory());
+
+    @FunctionalInterface
+    protected interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    protected static <T> CompletableFuture<T> async(SqlCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+}
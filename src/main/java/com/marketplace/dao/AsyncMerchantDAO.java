@@ -0,0 +1,36 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Merchant;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link MerchantRepository} 的异步版本：每个操作在虚拟线程上执行并返回 CompletableFuture
+ */
+public class AsyncMerchantDAO extends AsyncDAO {
+    private final MerchantRepository dao;
+
+    public AsyncMerchantDAO() {
+        this(StorageEngines.getDefault().merchants());
+    }
+
+    public AsyncMerchantDAO(MerchantRepository dao) {
+        this.dao = dao;
+    }
+
+    public CompletableFuture<Void> save(Merchant m, String password) {
+        return async(() -> { dao.save(m, password); return null; });
+    }
+
+    public CompletableFuture<Merchant> findByPhone(String phone) {
+        return async(() -> dao.findByPhone(phone));
+    }
+
+    public CompletableFuture<String> getPasswordByPhone(String phone) {
+        return async(() -> dao.getPasswordByPhone(phone));
+    }
+
+    public CompletableFuture<Void> updatePasswordByPhone(String phone, String hashed) {
+        return async(() -> { dao.updatePasswordByPhone(phone, hashed); return null; });
+    }
+}
@@ -0,0 +1,29 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Order;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link OrderRepository} 的异步版本：每个操作在虚拟线程上执行并返回 CompletableFuture
+ */
+public class AsyncOrderDAO extends AsyncDAO {
+    private final OrderRepository dao;
+
+    public AsyncOrderDAO() {
+        this(StorageEngines.getDefault().orders());
+    }
+
+    public AsyncOrderDAO(OrderRepository dao) {
+        this.dao = dao;
+    }
+
+    public CompletableFuture<Void> save(Order o) {
+        return async(() -> { dao.save(o); return null; });
+    }
+
+    public CompletableFuture<List<Order>> findByUser(String userId) {
+        return async(() -> dao.findByUser(userId));
+    }
+}
@@ -0,0 +1,45 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Product;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link ProductRepository} 的异步版本：每个操作在虚拟线程上执行并返回 CompletableFuture
+ */
+public class AsyncProductDAO extends AsyncDAO {
+    private final ProductRepository dao;
+
+    public AsyncProductDAO() {
+        this(StorageEngines.getDefault().products());
+    }
+
+    public AsyncProductDAO(ProductRepository dao) {
+        this.dao = dao;
+    }
+
+    public CompletableFuture<Void> save(Product p) {
+        return async(() -> { dao.save(p); return null; });
+    }
+
+    public CompletableFuture<List<Product>> listPublished() {
+        return async(dao::listPublished);
+    }
+
+    public CompletableFuture<Boolean> reduceStock(String productId, int qty) {
+        return async(() -> dao.reduceStock(productId, qty));
+    }
+
+    public CompletableFuture<Void> deleteProduct(String productId) {
+        return async(() -> { dao.deleteProduct(productId); return null; });
+    }
+
+    public CompletableFuture<Product> findById(String id) {
+        return async(() -> dao.findById(id));
+    }
+
+    public CompletableFuture<List<Product>> listByMerchant(String merchantId) {
+        return async(() -> dao.listByMerchant(merchantId));
+    }
+}
@@ -0,0 +1,49 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.User;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link UserRepository} 的异步版本：每个操作在虚拟线程上执行并返回 CompletableFuture
+ */
+public class AsyncUserDAO extends AsyncDAO {
+    private final UserRepository dao;
+
+    public AsyncUserDAO() {
+        this(StorageEngines.getDefault().users());
+    }
+
+    public AsyncUserDAO(UserRepository dao) {
+        this.dao = dao;
+    }
+
+    public CompletableFuture<Void> save(User u) {
+        return async(() -> { dao.save(u); return null; });
+    }
+
+    public CompletableFuture<User> findByPhone(String phone) {
+        return async(() -> dao.findByPhone(phone));
+    }
+
+    public CompletableFuture<Void> addSpentAndMaybeUpgrade(String phone, double amount) {
+        return async(() -> { dao.addSpentAndMaybeUpgrade(phone, amount); return null; });
+    }
+
+    public CompletableFuture<Map<String, Object>> getVipAndTotalByPhone(String phone) {
+        return async(() -> dao.getVipAndTotalByPhone(phone));
+    }
+
+    public CompletableFuture<Void> updatePasswordByPhone(String phone, String hashed) {
+        return async(() -> { dao.updatePasswordByPhone(phone, hashed); return null; });
+    }
+
+    public CompletableFuture<String> findPhoneByUserId(String userId) {
+        return async(() -> dao.findPhoneByUserId(userId));
+    }
+
+    public CompletableFuture<String> findAnyPhone() {
+        return async(dao::findAnyPhone);
+    }
+}
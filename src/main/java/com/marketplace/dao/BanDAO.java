@@ -0,0 +1,82 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.DBUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 黑名单数据访问对象：负责 banned 与 banned_products 表。
+ */
+public class BanDAO implements BanRepository {
+
+    public boolean banPhone(String phone, String reason) throws SQLException {
+        return DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO banned (phone, reason) VALUES (?, ?)") ) {
+                ps.setString(1, phone);
+                ps.setString(2, reason);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    public boolean unbanPhone(String phone) throws SQLException {
+        return DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM banned WHERE phone = ?") ) {
+                ps.setString(1, phone);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    public boolean isBanned(String phone) throws SQLException {
+        try (Connection c = DBUtil.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT phone FROM banned WHERE phone = ?")) {
+            ps.setString(1, phone);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    public boolean banProduct(String productId, String reason) throws SQLException {
+        return DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO banned_products (product_id, reason) VALUES (?, ?)") ) {
+                ps.setString(1, productId);
+                ps.setString(2, reason);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    public boolean unbanProduct(String productId) throws SQLException {
+        return DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM banned_products WHERE product_id = ?") ) {
+                ps.setString(1, productId);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    public List<String> listBannedProductsSorted() throws SQLException {
+        List<String> res = new ArrayList<>();
+        String sql = "SELECT p.id, p.title FROM products p JOIN banned_products b ON p.id = b.product_id ORDER BY p.title COLLATE NOCASE ASC";
+        try (Connection c = DBUtil.getConnection(); PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) res.add(rs.getString("id") + " | " + rs.getString("title"));
+        }
+        return res;
+    }
+
+    public List<String> listBannedPhonesSorted() throws SQLException {
+        List<String> res = new ArrayList<>();
+        String sql = "SELECT phone FROM banned ORDER BY CAST(phone AS INTEGER) ASC, phone ASC";
+        try (Connection c = DBUtil.getConnection(); PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) res.add(rs.getString("phone"));
+        }
+        return res;
+    }
+}
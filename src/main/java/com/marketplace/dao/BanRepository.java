@@ -0,0 +1,25 @@
+package com.marketplace.dao;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 黑名单存储接口：被封禁的手机号与商品
+ */
+public interface BanRepository {
+    boolean banPhone(String phone, String reason) throws SQLException;
+
+    boolean unbanPhone(String phone) throws SQLException;
+
+    boolean isBanned(String phone) throws SQLException;
+
+    boolean banProduct(String productId, String reason) throws SQLException;
+
+    boolean unbanProduct(String productId) throws SQLException;
+
+    /** 被封禁且仍存在的商品，格式 "id | title"，按标题排序（忽略大小写） */
+    List<String> listBannedProductsSorted() throws SQLException;
+
+    /** 被封禁的手机号，按数值大小排序 */
+    List<String> listBannedPhonesSorted() throws SQLException;
+}
@@ -0,0 +1,277 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.UnitOfWork;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 商品读缓存：包在任意 {@link ProductRepository} 外面，按 id 缓存商品（容量有上限，按 LRU 淘汰），
+ * 另外缓存一份已发布商品列表的快照。
+ * - 经本对象的保存、删除、扣库存会立即失效对应商品和列表快照
+ * - 同时订阅底层仓储的变更事件，其他途径的写入在事务提交后失效，批量重置时整体清空
+ * - 工作单元（事务）内的读取直接访问底层仓储，避免把未提交的数据放进缓存
+ * 返回的都是副本，调用方修改不会影响缓存。
+ */
+public class CachingProductRepository implements ProductRepository {
+    /** 缓存统计：按 id 查询的命中/未命中/淘汰次数与当前条目数，以及已发布列表快照的命中/未命中次数 */
+    public record Stats(long hits, long misses, long evictions, int size, long listHits, long listMisses) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final ProductRepository delegate;
+    private final int capacity;
+    private final LinkedHashMap<String, Product> entries;
+    private List<Product> published;
+    // 每次失效加一。读库前记下，写回缓存时若已变化说明期间发生过写入，放弃写回以免缓存旧值
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder listHits = new LongAdder();
+    private final LongAdder listMisses = new LongAdder();
+    private volatile boolean subscribed;
+
+    public CachingProductRepository(ProductRepository delegate) {
+        this(delegate, Integer.getInteger("marketplace.productCache.capacity", 10_000));
+    }
+
+    public CachingProductRepository(ProductRepository delegate, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Product> eldest) {
+                if (size() <= CachingProductRepository.this.capacity) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public void save(Product p) throws SQLException {
+        delegate.save(p);
+        invalidate(p.getProductId());
+    }
+
+    public void saveAll(List<Product> products) throws SQLException {
+        delegate.saveAll(products);
+        List<String> ids = new ArrayList<>(products.size());
+        for (Product p : products) ids.add(p.getProductId());
+        invalidate(ids);
+    }
+
+    public List<Product> listPublished() throws SQLException {
+        if (UnitOfWork.current() != null) return delegate.listPublished();
+        ensureSubscribed();
+        List<Product> snapshot;
+        synchronized (this) {
+            snapshot = published;
+        }
+        if (snapshot != null) {
+            listHits.increment();
+            return copyAll(snapshot);
+        }
+        listMisses.increment();
+        long gen = generation.get();
+        List<Product> loaded = delegate.listPublished();
+        synchronized (this) {
+            if (generation.get() == gen) published = copyAll(loaded);
+        }
+        return loaded;
+    }
+
+    public boolean reduceStock(String productId, int qty) throws SQLException {
+        boolean ok = delegate.reduceStock(productId, qty);
+        if (ok) invalidate(productId);
+        return ok;
+    }
+
+    public void deleteProduct(String productId) throws SQLException {
+        delegate.deleteProduct(productId);
+        invalidate(productId);
+    }
+
+    public Product findById(String id) throws SQLException {
+        if (id == null || UnitOfWork.current() != null) return delegate.findById(id);
+        ensureSubscribed();
+        Product cached;
+        synchronized (this) {
+            cached = entries.get(id);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached.copy();
+        }
+        misses.increment();
+        long gen = generation.get();
+        Product loaded = delegate.findById(id);
+        if (loaded != null) {
+            synchronized (this) {
+                if (generation.get() == gen) entries.put(id, loaded.copy());
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 命中缓存的直接返回，其余的一次交给底层仓储批量查询
+     */
+    public List<Product> findByIds(Collection<String> ids) throws SQLException {
+        if (UnitOfWork.current() != null) return delegate.findByIds(ids);
+        ensureSubscribed();
+        List<Product> res = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String id : new HashSet<>(ids)) {
+                Product cached = entries.get(id);
+                if (cached != null) res.add(cached.copy());
+                else missing.add(id);
+            }
+        }
+        hits.add(res.size());
+        if (missing.isEmpty()) return res;
+        misses.add(missing.size());
+        long gen = generation.get();
+        List<Product> loaded = delegate.findByIds(missing);
+        synchronized (this) {
+            if (generation.get() == gen) for (Product p : loaded) entries.put(p.getProductId(), p.copy());
+        }
+        res.addAll(loaded);
+        return res;
+    }
+
+    public List<Product> listByMerchant(String merchantId) throws SQLException {
+        return delegate.listByMerchant(merchantId);
+    }
+
+    public void forEach(ProductVisitor visitor) throws SQLException {
+        delegate.forEach(visitor);
+    }
+
+    public Page<Product> listPublishedPage(ProductSort sort, String cursor, int pageSize) throws SQLException {
+        return delegate.listPublishedPage(sort, cursor, pageSize);
+    }
+
+    public Page<Product> listByMerchantPage(String merchantId, ProductSort sort, String cursor, int pageSize) throws SQLException {
+        return delegate.listByMerchantPage(merchantId, sort, cursor, pageSize);
+    }
+
+    public List<Product> searchFullText(List<List<String>> groups, int limit) throws SQLException {
+        return delegate.searchFullText(groups, limit);
+    }
+
+    public void addChangeListener(ProductChangeListener listener) throws SQLException {
+        delegate.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(ProductChangeListener listener) throws SQLException {
+        delegate.removeChangeListener(listener);
+    }
+
+    public List<ProductChange> readChanges(long afterSequence, int max) throws SQLException {
+        return delegate.readChanges(afterSequence, max);
+    }
+
+    public long latestChangeSequence() throws SQLException {
+        return delegate.latestChangeSequence();
+    }
+
+    /**
+     * 失效单个商品及已发布列表快照
+     */
+    public void invalidate(String productId) {
+        generation.incrementAndGet();
+        synchronized (this) {
+            entries.remove(productId);
+            published = null;
+        }
+    }
+
+    /**
+     * 失效一批商品及已发布列表快照（只加一次锁）
+     */
+    public void invalidate(Collection<String> productIds) {
+        generation.incrementAndGet();
+        synchronized (this) {
+            for (String id : productIds) entries.remove(id);
+            published = null;
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            entries.clear();
+            published = null;
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, listHits.sum(), listMisses.sum());
+    }
+
+    public ProductRepository getDelegate() {
+        return delegate;
+    }
+
+    // 首次读取前订阅底层变更（此前缓存为空，不会错过需要失效的写入）；不发事件的实现只靠本对象的写入失效
+    private void ensureSubscribed() throws SQLException {
+        if (subscribed) return;
+        synchronized (this) {
+            if (subscribed) return;
+            try {
+                delegate.addChangeListener(new Invalidator());
+            } catch (UnsupportedOperationException ignore) {
+                // 见上
+            }
+            subscribed = true;
+        }
+    }
+
+    private final class Invalidator implements ProductChangeListener {
+        public void saved(Product product) {
+            invalidate(product.getProductId());
+        }
+
+        public void savedAll(List<Product> products) {
+            List<String> ids = new ArrayList<>(products.size());
+            for (Product p : products) ids.add(p.getProductId());
+            invalidate(ids);
+        }
+
+        public void deleted(String productId) {
+            invalidate(productId);
+        }
+
+        public void stockChanged(String productId) {
+            invalidate(productId);
+        }
+
+        public void reset() {
+            invalidateAll();
+        }
+    }
+
+    private static List<Product> copyAll(List<Product> list) {
+        List<Product> res = new ArrayList<>(list.size());
+        for (Product p : list) res.add(p.copy());
+        return res;
+    }
+}
@@ -13,18 +13,19 @@ import java.util.List;
 /**
  * 投诉 DAO：持久化 complaints 表，支持提交与列出投诉。
  */
-public class ComplaintDAO {
+public class ComplaintDAO implements ComplaintRepository {
 
     public void save(Complaint c) throws SQLException {
-        try (Connection conn = DBUtil.getConnection();
-             PreparedStatement ps = conn.prepareStatement("INSERT INTO complaints (id, user_id, target_id, type, status) VALUES (?, ?, ?, ?, ?)") ) {
-            ps.setString(1, c.getComplaintId());
-            ps.setString(2, c.getUserId());
-            ps.setString(3, c.getTargetId());
-            ps.setString(4, c.getType().name());
-            ps.setString(5, c.getStatus().name());
-            ps.executeUpdate();
-        }
+        DBUtil.writeGrouped(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO complaints (id, user_id, target_id, type, status) VALUES (?, ?, ?, ?, ?)") ) {
+                ps.setString(1, c.getComplaintId());
+                ps.setString(2, c.getUserId());
+                ps.setString(3, c.getTargetId());
+                ps.setString(4, c.getType().name());
+                ps.setString(5, c.getStatus().name());
+                return ps.executeUpdate();
+            }
+        });
     }
 
     public List<String> listOpenComplaints() throws SQLException {
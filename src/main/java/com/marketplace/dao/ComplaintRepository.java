@@ -0,0 +1,16 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Complaint;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 投诉存储接口
+ */
+public interface ComplaintRepository {
+    void save(Complaint c) throws SQLException;
+
+    /** 状态为 OPEN 的投诉，按 id 倒序 */
+    List<String> listOpenComplaints() throws SQLException;
+}
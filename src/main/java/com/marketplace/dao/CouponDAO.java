@@ -1,6 +1,7 @@
 package com.marketplace.dao;
 
 import com.marketplace.db.DBUtil;
+import com.marketplace.db.Database;
 import com.marketplace.models.Coupon;
 
 import java.sql.Connection;
@@ -14,22 +15,50 @@ import java.util.UUID;
 /**
  * 优惠券 DAO：负责 coupons 与 user_coupons 的简单持久化操作（骨架实现）
  */
-public class CouponDAO {
+public class CouponDAO implements CouponRepository {
+    // 为 null 时使用默认库（DBUtil）；分片存储为每个分片库创建一个实例
+    private final Database db;
+
+    public CouponDAO() {
+        this(null);
+    }
+
+    public CouponDAO(Database db) {
+        this.db = db;
+    }
+
+    private Database db() throws SQLException {
+        return db != null ? db : DBUtil.database();
+    }
 
     /**
      * 保存优惠券定义到数据库（若已存在则忽略）
      */
     public void save(Coupon c) throws SQLException {
-        try (Connection conn = DBUtil.getConnection();
-             PreparedStatement ps = conn.prepareStatement("INSERT OR IGNORE INTO coupons (id, merchant_id, code, discount, valid_until, total_qty, claimed_qty) VALUES (?, ?, ?, ?, ?, ?, ?)") ) {
-            ps.setString(1, c.getCouponId());
-            ps.setString(2, c.getMerchantId());
-            ps.setString(3, c.getCode());
-            ps.setDouble(4, c.getDiscount());
-            ps.setString(5, c.getValidUntil());
-            ps.setInt(6, c.getTotalQty());
-            ps.setInt(7, c.getClaimedQty());
-            ps.executeUpdate();
+        db().write(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("INSERT OR IGNORE INTO coupons (id, merchant_id, code, discount, valid_until, total_qty, claimed_qty) VALUES (?, ?, ?, ?, ?, ?, ?)") ) {
+                ps.setString(1, c.getCouponId());
+                ps.setString(2, c.getMerchantId());
+                ps.setString(3, c.getCode());
+                ps.setDouble(4, c.getDiscount());
+                ps.setString(5, c.getValidUntil());
+                ps.setInt(6, c.getTotalQty());
+                ps.setInt(7, c.getClaimedQty());
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * 优惠券是否存在于本库
+     */
+    public boolean exists(String couponId) throws SQLException {
+        try (Connection conn = db().getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM coupons WHERE id = ?")) {
+            ps.setString(1, couponId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
         }
     }
 
@@ -38,25 +67,16 @@ public class CouponDAO {
      * @return true 如果领取成功
      */
     public boolean claimCoupon(String couponId, String userPhone) throws SQLException {
-        Connection conn = DBUtil.getConnection();
-        try {
-            // 使用事务保护：避免并发超领
-            conn.setAutoCommit(false);
-
+        // 在一个工作单元中完成：检查余量、插入领取记录与更新计数保持原子
+        return db().inTransaction(conn -> {
             // 检查剩余数量
             try (PreparedStatement q = conn.prepareStatement("SELECT total_qty, claimed_qty FROM coupons WHERE id = ?")){
                 q.setString(1, couponId);
                 try (ResultSet rs = q.executeQuery()){
-                    if (!rs.next()) {
-                        conn.rollback();
-                        return false;
-                    }
+                    if (!rs.next()) return false;
                     int total = rs.getInt("total_qty");
                     int claimed = rs.getInt("claimed_qty");
-                    if (claimed >= total) {
-                        conn.rollback();
-                        return false;
-                    }
+                    if (claimed >= total) return false;
                 }
             }
 
@@ -73,16 +93,8 @@ public class CouponDAO {
                 up.setString(1, couponId);
                 up.executeUpdate();
             }
-
-            conn.commit();
             return true;
-        } catch (SQLException ex) {
-            try { conn.rollback(); } catch (SQLException ignore) {}
-            throw ex;
-        } finally {
-            try { conn.setAutoCommit(true); } catch (SQLException ignore) {}
-            try { conn.close(); } catch (SQLException ignore) {}
-        }
+        });
     }
 
     /**
@@ -90,7 +102,7 @@ public class CouponDAO {
      */
     public List<String> listUserCoupons(String userPhone) throws SQLException {
         List<String> res = new ArrayList<>();
-        try (Connection conn = DBUtil.getConnection();
+        try (Connection conn = db().getConnection();
              PreparedStatement ps = conn.prepareStatement("SELECT uc.id AS ucid, c.code, c.discount, uc.used FROM user_coupons uc JOIN coupons c ON uc.coupon_id = c.id WHERE uc.user_phone = ?")) {
             ps.setString(1, userPhone);
             try (ResultSet rs = ps.executeQuery()) {
@@ -106,18 +118,19 @@ public class CouponDAO {
      * 标记用户领取的优惠券为已使用
      */
     public void markUserCouponUsed(String userCouponId) throws SQLException {
-        try (Connection conn = DBUtil.getConnection();
-             PreparedStatement ps = conn.prepareStatement("UPDATE user_coupons SET used = 1 WHERE id = ?")) {
-            ps.setString(1, userCouponId);
-            ps.executeUpdate();
-        }
+        db().write(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE user_coupons SET used = 1 WHERE id = ?")) {
+                ps.setString(1, userCouponId);
+                return ps.executeUpdate();
+            }
+        });
     }
 
     /**
      * 根据 user_coupons.id 获取对应的 coupon 折扣
      */
     public Double getDiscountByUserCouponId(String userCouponId) throws SQLException {
-        try (Connection conn = DBUtil.getConnection();
+        try (Connection conn = db().getConnection();
              PreparedStatement ps = conn.prepareStatement("SELECT c.discount FROM user_coupons uc JOIN coupons c ON uc.coupon_id = c.id WHERE uc.id = ?")) {
             ps.setString(1, userCouponId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -133,7 +146,7 @@ public class CouponDAO {
      */
     public List<String> listCouponsByMerchant(String merchantId) throws SQLException {
         List<String> res = new ArrayList<>();
-        try (Connection conn = DBUtil.getConnection();
+        try (Connection conn = db().getConnection();
              PreparedStatement ps = conn.prepareStatement("SELECT id, code, discount, (total_qty - claimed_qty) AS remain FROM coupons WHERE merchant_id = ?")) {
             ps.setString(1, merchantId);
             try (ResultSet rs = ps.executeQuery()) {
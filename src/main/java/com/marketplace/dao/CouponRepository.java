@@ -0,0 +1,31 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Coupon;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 优惠券存储接口：优惠券定义与用户领取记录
+ */
+public interface CouponRepository {
+    /** 保存优惠券定义（已存在则忽略） */
+    void save(Coupon c) throws SQLException;
+
+    /**
+     * 领取优惠券：余量检查、写领取记录与计数更新是原子的
+     * @return true 如果领取成功
+     */
+    boolean claimCoupon(String couponId, String userPhone) throws SQLException;
+
+    /** 用户领取的优惠券，格式: user_coupon_id | coupon_code | discount | used(0/1) */
+    List<String> listUserCoupons(String userPhone) throws SQLException;
+
+    void markUserCouponUsed(String userCouponId) throws SQLException;
+
+    /** 领取记录对应的优惠金额，不存在返回 null */
+    Double getDiscountByUserCouponId(String userCouponId) throws SQLException;
+
+    /** 商家的优惠券，格式：coupon_id | code | discount | remain_qty */
+    List<String> listCouponsByMerchant(String merchantId) throws SQLException;
+}
@@ -12,22 +12,23 @@ import java.sql.SQLException;
 /**
  * 商家数据访问对象：处理 merchants 表的持久化操作。
  */
-public class MerchantDAO {
+public class MerchantDAO implements MerchantRepository {
     /**
      * 保存商家及其密码（若已存在则忽略）
      */
     public void save(Merchant m, String password) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("INSERT OR IGNORE INTO merchants (id, shop_name, phone, password, contact_info, employee_count, identity) VALUES (?, ?, ?, ?, ?, ?, ?)") ) {
-            ps.setString(1, m.getMerchantId());
-            ps.setString(2, m.getShopName());
-            ps.setString(3, m.getPhone());
-            ps.setString(4, password);
-            ps.setString(5, m.getContactInfo());
-            ps.setInt(6, m.getEmployeeCount());
-            ps.setString(7, m.getIdentity().name());
-            ps.executeUpdate();
-        }
+        DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT OR IGNORE INTO merchants (id, shop_name, phone, password, contact_info, employee_count, identity) VALUES (?, ?, ?, ?, ?, ?, ?)") ) {
+                ps.setString(1, m.getMerchantId());
+                ps.setString(2, m.getShopName());
+                ps.setString(3, m.getPhone());
+                ps.setString(4, password);
+                ps.setString(5, m.getContactInfo());
+                ps.setInt(6, m.getEmployeeCount());
+                ps.setString(7, m.getIdentity().name());
+                return ps.executeUpdate();
+            }
+        });
     }
 
     /**
@@ -68,11 +69,12 @@ public class MerchantDAO {
      * 根据手机号更新商家密码（可用于迁移明文到哈希）
      */
     public void updatePasswordByPhone(String phone, String hashed) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("UPDATE merchants SET password = ? WHERE phone = ?")) {
-            ps.setString(1, hashed);
-            ps.setString(2, phone);
-            ps.executeUpdate();
-        }
+        DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE merchants SET password = ? WHERE phone = ?")) {
+                ps.setString(1, hashed);
+                ps.setString(2, phone);
+                return ps.executeUpdate();
+            }
+        });
     }
 }
@@ -0,0 +1,19 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Merchant;
+
+import java.sql.SQLException;
+
+/**
+ * 商家存储接口
+ */
+public interface MerchantRepository {
+    /** 保存商家及其密码（已存在则忽略） */
+    void save(Merchant m, String password) throws SQLException;
+
+    Merchant findByPhone(String phone) throws SQLException;
+
+    String getPasswordByPhone(String phone) throws SQLException;
+
+    void updatePasswordByPhone(String phone, String hashed) throws SQLException;
+}
@@ -0,0 +1,89 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.DBUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 消息数据访问对象：负责 messages 表的读写。
+ */
+public class MessageDAO implements MessageRepository {
+    private static final String COLUMNS = "id, sender_id, receiver_id, content, timestamp, is_read";
+
+    /**
+     * 保存消息。消息插入频繁，走组提交，返回时已随所在批次提交。
+     */
+    public void save(Row m) throws SQLException {
+        DBUtil.writeGrouped(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO messages (id, sender_id, receiver_id, content, timestamp, is_read) VALUES (?, ?, ?, ?, ?, ?)")) {
+                ps.setString(1, m.id());
+                ps.setString(2, m.senderId());
+                ps.setString(3, m.receiverId());
+                ps.setString(4, m.content());
+                ps.setString(5, m.timestamp());
+                ps.setInt(6, m.read() ? 1 : 0);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    public List<Row> listByReceiver(String receiverId) throws SQLException {
+        return query("SELECT " + COLUMNS + " FROM messages WHERE receiver_id = ? ORDER BY timestamp DESC", receiverId);
+    }
+
+    public List<Row> listBySender(String senderId) throws SQLException {
+        return query("SELECT " + COLUMNS + " FROM messages WHERE sender_id = ? ORDER BY timestamp DESC", senderId);
+    }
+
+    public int countUnread(String receiverId) throws SQLException {
+        try (Connection c = DBUtil.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT COUNT(1) FROM messages WHERE receiver_id = ? AND is_read = 0")) {
+            ps.setString(1, receiverId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        }
+        return 0;
+    }
+
+    public List<Row> conversation(String a, String b) throws SQLException {
+        return query("SELECT " + COLUMNS + " FROM messages WHERE (sender_id = ? AND receiver_id = ?) OR (sender_id = ? AND receiver_id = ?) ORDER BY timestamp ASC", a, b, b, a);
+    }
+
+    /**
+     * 批量标记为已读
+     */
+    public void markRead(Collection<String> ids) throws SQLException {
+        if (ids.isEmpty()) return;
+        DBUtil.write(c -> {
+            try (PreparedStatement up = c.prepareStatement("UPDATE messages SET is_read = 1 WHERE id = ?")) {
+                for (String id : ids) {
+                    up.setString(1, id);
+                    up.addBatch();
+                }
+                return up.executeBatch();
+            }
+        });
+    }
+
+    private List<Row> query(String sql, String... params) throws SQLException {
+        List<Row> res = new ArrayList<>();
+        try (Connection c = DBUtil.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setString(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) res.add(mapRow(rs));
+            }
+        }
+        return res;
+    }
+
+    private Row mapRow(ResultSet rs) throws SQLException {
+        return new Row(rs.getString("id"), rs.getString("sender_id"), rs.getString("receiver_id"), rs.getString("content"), rs.getString("timestamp"), rs.getInt("is_read") != 0);
+    }
+}
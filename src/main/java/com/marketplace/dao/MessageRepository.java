@@ -0,0 +1,33 @@
+package com.marketplace.dao;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 站内消息存储接口
+ */
+public interface MessageRepository {
+
+    /**
+     * messages 表中的一行。timestamp 为毫秒时间戳的字符串形式，与表结构保持一致。
+     */
+    record Row(String id, String senderId, String receiverId, String content, String timestamp, boolean read) {
+    }
+
+    /** 保存消息（同 id 覆盖） */
+    void save(Row m) throws SQLException;
+
+    /** 收到的消息，按时间倒序 */
+    List<Row> listByReceiver(String receiverId) throws SQLException;
+
+    /** 发出的消息，按时间倒序 */
+    List<Row> listBySender(String senderId) throws SQLException;
+
+    int countUnread(String receiverId) throws SQLException;
+
+    /** 双方之间的全部消息，按时间升序 */
+    List<Row> conversation(String a, String b) throws SQLException;
+
+    void markRead(Collection<String> ids) throws SQLException;
+}
@@ -1,6 +1,7 @@
 package com.marketplace.dao;
 
 import com.marketplace.db.DBUtil;
+import com.marketplace.db.Database;
 import com.marketplace.models.Order;
 
 import java.sql.Connection;
@@ -13,23 +14,40 @@ import java.util.List;
 /**
  * 订单数据访问对象：封装与 orders 表交互的 CRUD 操作。
  */
-public class OrderDAO {
+public class OrderDAO implements OrderRepository {
+    // 为 null 时使用默认库（DBUtil）；分片存储为每个分片库创建一个实例
+    private final Database db;
+
+    public OrderDAO() {
+        this(null);
+    }
+
+    public OrderDAO(Database db) {
+        this.db = db;
+    }
+
+    private Database db() throws SQLException {
+        return db != null ? db : DBUtil.database();
+    }
+
     /**
      * 保存或更新订单记录
      */
     public void save(Order o) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO orders (id, user_id, merchant_id, total_amount, discount, pay_by_platform, status, create_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
-            ps.setString(1, o.getOrderId());
-            ps.setString(2, o.getUserId());
-            ps.setString(3, o.getMerchantId());
-            ps.setDouble(4, o.getTotalAmount());
-            ps.setDouble(5, o.getDiscount());
-            ps.setDouble(6, o.getPayByPlatform());
-            ps.setString(7, o.getStatus().name());
-            ps.setString(8, Long.toString(o.getCreateTime().getTime()));
-            ps.executeUpdate();
-        }
+        // 高频插入走组提交，与并发下单的其它写入合并为一个事务
+        db().writeGrouped(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO orders (id, user_id, merchant_id, total_amount, discount, pay_by_platform, status, create_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                ps.setString(1, o.getOrderId());
+                ps.setString(2, o.getUserId());
+                ps.setString(3, o.getMerchantId());
+                ps.setDouble(4, o.getTotalAmount());
+                ps.setDouble(5, o.getDiscount());
+                ps.setDouble(6, o.getPayByPlatform());
+                ps.setString(7, o.getStatus().name());
+                ps.setString(8, Long.toString(o.getCreateTime().getTime()));
+                return ps.executeUpdate();
+            }
+        });
     }
 
     /**
@@ -37,7 +55,7 @@ public class OrderDAO {
      */
     public List<Order> findByUser(String userId) throws SQLException {
         List<Order> res = new ArrayList<>();
-        try (Connection c = DBUtil.getConnection();
+        try (Connection c = db().getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT id, user_id, merchant_id, total_amount, discount, pay_by_platform, status FROM orders WHERE user_id = ?")) {
             ps.setString(1, userId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -0,0 +1,16 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Order;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 订单存储接口
+ */
+public interface OrderRepository {
+    /** 保存或更新订单 */
+    void save(Order o) throws SQLException;
+
+    List<Order> findByUser(String userId) throws SQLException;
+}
@@ -0,0 +1,12 @@
+package com.marketplace.dao;
+
+import java.util.List;
+
+/**
+ * 一页结果。nextCursor 为下一页的游标（传回同一接口即可继续翻页），没有更多数据时为 null。
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
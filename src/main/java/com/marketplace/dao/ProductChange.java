@@ -0,0 +1,14 @@
+package com.marketplace.dao;
+
+/**
+ * 商品变更日志中的一条记录：序号严格递增；只记商品 id 与变更类型，订阅方按 id 回读最新内容。
+ */
+public record ProductChange(long sequence, String productId, Kind kind, long changedAt) {
+    public enum Kind {
+        /** 新建或修改了库存以外的字段 */
+        SAVED,
+        /** 只有库存变化 */
+        STOCK,
+        DELETED
+    }
+}
@@ -0,0 +1,185 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 商品变更日志的订阅：从给定序号之后开始，由后台线程按批拉取变更交给处理器。
+ * - 处理完一批才拉下一批：处理器慢时订阅只是落后（见 {@link #lag()}），不会在内存里堆积变更
+ * - 读取或处理失败时位置不前进，错误交给 {@link Handler#onError}，按轮询间隔成倍退避（至多一分钟）后从同一位置重试，
+ *   同一条变更可能被处理多次
+ * - 订阅位置早于日志保留的最早变更时，先回调 {@link Handler#onGap}，处理器应整体重新加载
+ * - 仓储发布变更事件时，新的写入会立即唤醒拉取线程，否则按轮询间隔检查
+ */
+public final class ProductChangeFeed implements AutoCloseable {
+    /** 变更处理器，在订阅线程上依次调用 */
+    public interface Handler {
+        void onChanges(List<ProductChange> changes) throws SQLException;
+
+        /**
+         * (position, firstAvailable) 之间的变更已被清理，接下来从 firstAvailable 开始投递
+         */
+        default void onGap(long position, long firstAvailable) throws SQLException {
+        }
+
+        /**
+         * 读取或处理变更失败，稍后重试；failures 为连续失败次数
+         */
+        default void onError(Exception error, int failures) {
+        }
+    }
+
+    // 连续失败时退避间隔的上限
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final ProductRepository repository;
+    private final Handler handler;
+    private final int batchSize;
+    private final long pollMillis;
+    private final Thread thread;
+    private final ProductChangeListener waker = new Waker();
+    private final Object signal = new Object();
+    private boolean pending;
+    private volatile long position;
+    private volatile boolean closed;
+
+    private ProductChangeFeed(ProductRepository repository, long afterSequence, int batchSize, long pollMillis, Handler handler) {
+        this.repository = repository;
+        this.position = afterSequence;
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.handler = handler;
+        this.thread = new Thread(this::run, "product-change-feed");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 订阅序号大于 afterSequence 的变更（传 {@link ProductRepository#latestChangeSequence()} 只看之后的新变更），
+     * 每批至多 256 条，无事件通知时每秒检查一次
+     */
+    public static ProductChangeFeed tail(ProductRepository repository, long afterSequence, Handler handler) throws SQLException {
+        return tail(repository, afterSequence, 256, 1000, handler);
+    }
+
+    public static ProductChangeFeed tail(ProductRepository repository, long afterSequence, int batchSize, long pollMillis, Handler handler) throws SQLException {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        ProductChangeFeed feed = new ProductChangeFeed(repository, afterSequence, batchSize, pollMillis, handler);
+        try {
+            repository.addChangeListener(feed.waker);
+        } catch (UnsupportedOperationException ignore) {
+            // 只靠轮询
+        }
+        feed.thread.start();
+        return feed;
+    }
+
+    /** 已处理完的最后一条变更的序号 */
+    public long position() {
+        return position;
+    }
+
+    /** 尚未处理的变更数 */
+    public long lag() throws SQLException {
+        return Math.max(0, repository.latestChangeSequence() - position);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            repository.removeChangeListener(waker);
+        } catch (SQLException ignore) {
+            // 订阅线程已停止，多收到的唤醒没有影响
+        }
+        wake();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(pollMillis + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        int failures = 0;
+        while (!closed) {
+            try {
+                List<ProductChange> batch = repository.readChanges(position, batchSize);
+                if (batch.isEmpty()) {
+                    await();
+                    continue;
+                }
+                long first = batch.get(0).sequence();
+                if (first > position + 1) handler.onGap(position, first);
+                handler.onChanges(batch);
+                position = batch.get(batch.size() - 1).sequence();
+                failures = 0;
+            } catch (SQLException | RuntimeException e) {
+                // 位置不前进，退避后重试
+                failures++;
+                try {
+                    handler.onError(e, failures);
+                } catch (RuntimeException ignore) {
+                    // 错误回调自身失败不影响重试
+                }
+                backOff(Math.max(pollMillis, Math.min(MAX_BACKOFF_MILLIS, pollMillis << Math.min(failures - 1, 16))));
+            }
+        }
+    }
+
+    // 与 await 不同，新写入的唤醒不会提前结束退避，只有 close 会
+    private void backOff(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (signal) {
+            try {
+                for (long left = millis; left > 0 && !closed; left = deadline - System.currentTimeMillis()) signal.wait(left);
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+            pending = false;
+        }
+    }
+
+    private void await() {
+        synchronized (signal) {
+            try {
+                if (!pending && !closed) signal.wait(pollMillis);
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+            pending = false;
+        }
+    }
+
+    private void wake() {
+        synchronized (signal) {
+            pending = true;
+            signal.notifyAll();
+        }
+    }
+
+    private final class Waker implements ProductChangeListener {
+        public void saved(Product product) {
+            wake();
+        }
+
+        public void savedAll(List<Product> products) {
+            wake();
+        }
+
+        public void deleted(String productId) {
+            wake();
+        }
+
+        public void stockChanged(String productId) {
+            wake();
+        }
+
+        public void reset() {
+            wake();
+        }
+    }
+}
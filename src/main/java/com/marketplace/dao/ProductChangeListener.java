@@ -0,0 +1,27 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Product;
+
+import java.util.List;
+
+/**
+ * 商品变更回调，供搜索索引等内存派生结构增量更新。事件在写入所在事务提交后发出。
+ */
+public interface ProductChangeListener {
+    /** 商品被保存（新建、修改或状态变化），参数为保存后的完整内容 */
+    void saved(Product product);
+
+    /** 一批商品在同一事务中被保存（批量导入），默认逐个转给 {@link #saved}；可重写为整批处理，只加一次锁 */
+    default void savedAll(List<Product> products) {
+        for (Product p : products) saved(p);
+    }
+
+    void deleted(String productId);
+
+    /** 商品库存被扣减；只关心标题、描述等内容的订阅者可忽略 */
+    default void stockChanged(String productId) {
+    }
+
+    /** 发生了绕过 DAO 的批量变更（清库、加载样例数据等），需要整体重新加载 */
+    void reset();
+}
@@ -1,6 +1,7 @@
 package com.marketplace.dao;
 
 import com.marketplace.db.DBUtil;
+import com.marketplace.db.Database;
 import com.marketplace.models.Enums;
 import com.marketplace.models.Product;
 
@@ -9,28 +10,84 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 商品数据访问对象：负责 products 表的数据读写。
  */
-public class ProductDAO {
+public class ProductDAO implements ProductRepository {
+    // 为 null 时使用默认库（DBUtil）；分片存储为每个分片库创建一个实例
+    private final Database db;
+    // 流式遍历时每批取回的行数
+    private static final int FETCH_SIZE = Integer.getInteger("marketplace.db.fetchSize", 500);
+    // 批量按 id 查询时每条 IN (...) 的参数个数，低于 SQLite 的参数上限
+    private static final int IDS_PER_QUERY = 500;
+
+    public ProductDAO() {
+        this(null);
+    }
+
+    public ProductDAO(Database db) {
+        this.db = db;
+    }
+
+    private Database db() throws SQLException {
+        return db != null ? db : DBUtil.database();
+    }
+
+    // created_at 只在首次插入时写入，更新时保持原上架时间
+    private static final String UPSERT = "INSERT INTO products (id, title, description, price, stock, status, merchant_id, merchant_phone, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT(id) DO UPDATE SET title = excluded.title, description = excluded.description, price = excluded.price, stock = excluded.stock, "
+            + "status = excluded.status, merchant_id = excluded.merchant_id, merchant_phone = excluded.merchant_phone";
+
     /**
-     * 保存或更新商品记录
+     * 保存或更新商品记录。
+     * 使用 UPSERT 而不是 INSERT OR REPLACE：REPLACE 会先删旧行且不触发删除触发器，会让 products_fts 残留旧内容
      */
     public void save(Product p) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO products (id, title, description, price, stock, status, merchant_id, merchant_phone) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
-            ps.setString(1, p.getProductId());
-            ps.setString(2, p.getTitle());
-            ps.setString(3, p.getDescription());
-            ps.setDouble(4, p.getPrice());
-            ps.setInt(5, p.getStock());
-            ps.setString(6, p.getStatus().name());
-            ps.setString(7, p.getMerchantId());
-            ps.setString(8, p.getMerchantPhone());
-            ps.executeUpdate();
-        }
+        db().write(c -> {
+            try (PreparedStatement ps = c.prepareStatement(UPSERT)) {
+                bindUpsert(ps, p);
+                return ps.executeUpdate();
+            }
+        });
+        // 事件异步于调用方执行，传出副本以免调用方之后修改对象
+        ProductEvents.saved(db(), p.copy());
+    }
+
+    /**
+     * 批量保存：一个事务、一条预编译语句的批处理，提交后发一次批量事件
+     */
+    public void saveAll(List<Product> products) throws SQLException {
+        if (products.isEmpty()) return;
+        db().inTransaction(c -> {
+            try (PreparedStatement ps = c.prepareStatement(UPSERT)) {
+                for (Product p : products) {
+                    bindUpsert(ps, p);
+                    ps.addBatch();
+                }
+                return ps.executeBatch().length;
+            }
+        });
+        List<Product> copies = new ArrayList<>(products.size());
+        for (Product p : products) copies.add(p.copy());
+        ProductEvents.savedAll(db(), copies);
+    }
+
+    private static void bindUpsert(PreparedStatement ps, Product p) throws SQLException {
+        ps.setString(1, p.getProductId());
+        ps.setString(2, p.getTitle());
+        ps.setString(3, p.getDescription());
+        ps.setDouble(4, p.getPrice());
+        ps.setInt(5, p.getStock());
+        ps.setString(6, p.getStatus().name());
+        ps.setString(7, p.getMerchantId());
+        ps.setString(8, p.getMerchantPhone());
+        ps.setLong(9, p.getCreatedAt() > 0 ? p.getCreatedAt() : System.currentTimeMillis());
     }
 
     /**
@@ -38,7 +95,7 @@ public class ProductDAO {
      */
     public List<Product> listPublished() throws SQLException {
         List<Product> res = new ArrayList<>();
-        try (Connection c = DBUtil.getConnection();
+        try (Connection c = db().getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT id, title, description, price, stock, status, merchant_id, merchant_phone FROM products WHERE status = 'PUBLISHED'")) {
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -52,25 +109,31 @@ public class ProductDAO {
     /**
      * 减少商品库存（库存充足时）
      */
-    public void reduceStock(String productId, int qty) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?")) {
-            ps.setInt(1, qty);
-            ps.setString(2, productId);
-            ps.setInt(3, qty);
-            ps.executeUpdate();
-        }
+    public boolean reduceStock(String productId, int qty) throws SQLException {
+        int updated = db().write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?")) {
+                ps.setInt(1, qty);
+                ps.setString(2, productId);
+                ps.setInt(3, qty);
+                return ps.executeUpdate();
+            }
+        });
+        if (updated == 0) return false;
+        ProductEvents.stockChanged(db(), productId);
+        return true;
     }
 
     /**
      * 删除商品（管理员强制删除）
      */
     public void deleteProduct(String productId) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("DELETE FROM products WHERE id = ?")) {
-            ps.setString(1, productId);
-            ps.executeUpdate();
-        }
+        db().write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM products WHERE id = ?")) {
+                ps.setString(1, productId);
+                return ps.executeUpdate();
+            }
+        });
+        ProductEvents.deleted(db(), productId);
     }
 
     /**
@@ -80,7 +143,7 @@ public class ProductDAO {
      * 根据商品 id 查询商品，若不存在返回 null
      */
     public Product findById(String id) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
+        try (Connection c = db().getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT id, title, description, price, stock, status, merchant_id, merchant_phone FROM products WHERE id = ?")) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
@@ -90,12 +153,35 @@ public class ProductDAO {
         return null;
     }
 
+    /**
+     * 按 id 批量查询，每 {@value #IDS_PER_QUERY} 个 id 一条 IN (...) 查询
+     */
+    public List<Product> findByIds(Collection<String> ids) throws SQLException {
+        List<String> list = new ArrayList<>(new HashSet<>(ids));
+        List<Product> res = new ArrayList<>();
+        if (list.isEmpty()) return res;
+        try (Connection c = db().getConnection()) {
+            for (int from = 0; from < list.size(); from += IDS_PER_QUERY) {
+                List<String> chunk = list.subList(from, Math.min(list.size(), from + IDS_PER_QUERY));
+                String sql = "SELECT id, title, description, price, stock, status, merchant_id, merchant_phone FROM products WHERE id IN ("
+                        + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) ps.setString(i + 1, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) res.add(mapRow(rs));
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
     /**
      * 列出某商家的所有商品
      */
     public List<Product> listByMerchant(String merchantId) throws SQLException {
         List<Product> res = new ArrayList<>();
-        try (Connection c = DBUtil.getConnection();
+        try (Connection c = db().getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT id, title, description, price, stock, status, merchant_id, merchant_phone FROM products WHERE merchant_id = ?")) {
             ps.setString(1, merchantId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -105,6 +191,175 @@ public class ProductDAO {
         return res;
     }
 
+    /**
+     * 流式遍历全部商品：结果集按 fetch size 分批从 SQLite 取行，遍历结束或回调抛出异常时关闭
+     */
+    public void forEach(ProductVisitor visitor) throws SQLException {
+        try (Connection c = db().getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT id, title, description, price, stock, status, merchant_id, merchant_phone, created_at FROM products")) {
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Product p = mapRow(rs);
+                    p.setCreatedAt(rs.getLong("created_at"));
+                    visitor.visit(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * 已发布商品的一页：按 (排序键, id) 做 keyset 分页，走 idx_products_status_created / idx_products_status_price 索引范围扫描
+     */
+    public Page<Product> listPublishedPage(ProductSort sort, String cursor, int pageSize) throws SQLException {
+        return page("status = 'PUBLISHED'", null, sort, cursor, pageSize);
+    }
+
+    /**
+     * 商家商品的一页，走 idx_products_merchant_created / idx_products_merchant_price 索引
+     */
+    public Page<Product> listByMerchantPage(String merchantId, ProductSort sort, String cursor, int pageSize) throws SQLException {
+        return page("merchant_id = ?", merchantId, sort, cursor, pageSize);
+    }
+
+    private Page<Product> page(String filter, String filterParam, ProductSort sort, String cursor, int pageSize) throws SQLException {
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize must be >= 1");
+        ProductKeyset.Position pos = ProductKeyset.decode(sort, cursor);
+        String key = sort == ProductSort.NEWEST ? "created_at" : "price";
+        boolean asc = sort == ProductSort.PRICE_ASC;
+        StringBuilder sql = new StringBuilder("SELECT id, title, description, price, stock, status, merchant_id, merchant_phone, created_at FROM products WHERE ").append(filter);
+        if (pos != null) sql.append(" AND (").append(key).append(", id) ").append(asc ? ">" : "<").append(" (?, ?)");
+        String dir = asc ? " ASC" : " DESC";
+        sql.append(" ORDER BY ").append(key).append(dir).append(", id").append(dir).append(" LIMIT ?");
+        List<Product> rows = new ArrayList<>();
+        try (Connection c = db().getConnection(); PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int i = 1;
+            if (filterParam != null) ps.setString(i++, filterParam);
+            if (pos != null) {
+                if (sort == ProductSort.NEWEST) ps.setLong(i++, pos.createdAt());
+                else ps.setDouble(i++, pos.price());
+                ps.setString(i++, pos.id());
+            }
+            // 多取一条用于判断是否还有下一页
+            ps.setInt(i, pageSize + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Product p = mapRow(rs);
+                    p.setCreatedAt(rs.getLong("created_at"));
+                    rows.add(p);
+                }
+            }
+        }
+        return ProductKeyset.trim(rows, sort, pageSize);
+    }
+
+    /**
+     * 全文检索的一条命中：score 为 bm25 得分，越小越相关；只含不足 3 个字的词的组没有得分，记为 0，排在有得分的命中之后
+     */
+    public record Hit(Product product, double score) {}
+
+    /**
+     * 基于 products_fts 的全文检索，按 bm25 排序（标题权重高于描述），只返回已发布商品。
+     * trigram 分词只能索引不少于 3 个字的词：组内的长词用 MATCH 检索并计算得分，短词在其结果上追加 LIKE 过滤；
+     * 整组都是短词时只能用 LIKE，按插入顺序排在有得分的结果之后。
+     * @param groups OR 连接的各组，每组为 AND 连接的查询词
+     */
+    public List<Product> searchFullText(List<List<String>> groups, int limit) throws SQLException {
+        List<Product> res = new ArrayList<>();
+        for (Hit h : searchFullTextScored(groups, limit)) res.add(h.product());
+        return res;
+    }
+
+    /**
+     * 同 {@link #searchFullText}，同时返回得分（供分片合并）
+     */
+    public List<Hit> searchFullTextScored(List<List<String>> groups, int limit) throws SQLException {
+        List<Hit> res = new ArrayList<>();
+        if (groups.isEmpty() || limit <= 0) return res;
+        List<String> params = new ArrayList<>();
+        StringBuilder union = new StringBuilder();
+        for (List<String> g : groups) {
+            StringBuilder match = new StringBuilder();
+            List<String> shortTerms = new ArrayList<>();
+            for (String t : g) {
+                if (t.codePointCount(0, t.length()) < 3) {
+                    shortTerms.add(t);
+                    continue;
+                }
+                if (match.length() > 0) match.append(" AND ");
+                match.append('"').append(t.replace("\"", "\"\"")).append('"');
+            }
+            if (union.length() > 0) union.append(" UNION ALL ");
+            union.append("SELECT p.rowid AS rid, p.id, p.title, p.description, p.price, p.stock, p.status, p.merchant_id, p.merchant_phone, ");
+            if (match.length() > 0) {
+                union.append("bm25(products_fts, 2.0, 1.0) AS score FROM products_fts f JOIN products p ON p.rowid = f.rowid WHERE products_fts MATCH ?");
+                params.add(match.toString());
+            } else {
+                union.append("0.0 AS score FROM products_fts f JOIN products p ON p.rowid = f.rowid WHERE 1");
+            }
+            union.append(" AND p.status = 'PUBLISHED'");
+            for (String t : shortTerms) {
+                union.append(" AND (f.title LIKE ? ESCAPE '\\' OR f.description LIKE ? ESCAPE '\\')");
+                String pattern = "%" + t.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+                params.add(pattern);
+                params.add(pattern);
+            }
+        }
+        // bm25 只能直接用在带 MATCH 的查询上，各组不能放进子查询里去重：同一商品命中多个组时会出现多次，
+        // 按得分排序后保留第一次（最好的得分），为此多取 (组数 - 1) * limit 条
+        String sql = union + " ORDER BY score, rid LIMIT ?";
+        Set<String> seen = new HashSet<>();
+        try (Connection c = db().getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            for (String p : params) ps.setString(i++, p);
+            ps.setLong(i, (long) limit * groups.size());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && res.size() < limit) {
+                    Product p = mapRow(rs);
+                    if (seen.add(p.getProductId())) res.add(new Hit(p, rs.getDouble("score")));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 订阅本库的商品变更：同一数据库上所有 ProductDAO 实例的写入都会通知到
+     */
+    public void addChangeListener(ProductChangeListener listener) throws SQLException {
+        ProductEvents.subscribe(db(), listener);
+    }
+
+    public void removeChangeListener(ProductChangeListener listener) throws SQLException {
+        ProductEvents.unsubscribe(db(), listener);
+    }
+
+    /**
+     * 变更日志由 products 上的触发器写入（见迁移 7），绕过 DAO 的批量写入也会记录
+     */
+    public List<ProductChange> readChanges(long afterSequence, int max) throws SQLException {
+        List<ProductChange> res = new ArrayList<>();
+        try (Connection c = db().getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT seq, product_id, kind, changed_at FROM product_changes WHERE seq > ? ORDER BY seq LIMIT ?")) {
+            ps.setLong(1, afterSequence);
+            ps.setInt(2, max);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    res.add(new ProductChange(rs.getLong(1), rs.getString(2), ProductChange.Kind.valueOf(rs.getString(3)), rs.getLong(4)));
+                }
+            }
+        }
+        return res;
+    }
+
+    public long latestChangeSequence() throws SQLException {
+        try (Connection c = db().getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT COALESCE(MAX(seq), 0) FROM product_changes");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
     /**
      * 将当前行映射为 Product 对象（减少重复代码）
      */
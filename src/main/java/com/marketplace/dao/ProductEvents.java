@@ -0,0 +1,64 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.Database;
+import com.marketplace.db.UnitOfWork;
+import com.marketplace.models.Product;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * SQLite 商品变更的订阅表：同一个数据库上的所有 {@link ProductDAO} 实例共享订阅者，
+ * 因此无论通过哪个 DAO 实例写入，订阅者都能收到通知。
+ */
+final class ProductEvents {
+    private static final Map<Database, List<ProductChangeListener>> LISTENERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ProductEvents() {}
+
+    static void subscribe(Database db, ProductChangeListener l) {
+        List<ProductChangeListener> list;
+        synchronized (LISTENERS) {
+            list = LISTENERS.get(db);
+            if (list == null) {
+                List<ProductChangeListener> created = new CopyOnWriteArrayList<>();
+                LISTENERS.put(db, created);
+                db.addResetListener(() -> created.forEach(ProductChangeListener::reset));
+                list = created;
+            }
+        }
+        list.add(l);
+    }
+
+    static void unsubscribe(Database db, ProductChangeListener l) {
+        List<ProductChangeListener> list = LISTENERS.get(db);
+        if (list != null) list.remove(l);
+    }
+
+    static void saved(Database db, Product p) {
+        List<ProductChangeListener> list = LISTENERS.get(db);
+        if (list == null || list.isEmpty()) return;
+        UnitOfWork.runAfterCommit(() -> list.forEach(l -> l.saved(p)));
+    }
+
+    static void savedAll(Database db, List<Product> products) {
+        List<ProductChangeListener> list = LISTENERS.get(db);
+        if (list == null || list.isEmpty() || products.isEmpty()) return;
+        UnitOfWork.runAfterCommit(() -> list.forEach(l -> l.savedAll(products)));
+    }
+
+    static void deleted(Database db, String productId) {
+        List<ProductChangeListener> list = LISTENERS.get(db);
+        if (list == null || list.isEmpty()) return;
+        UnitOfWork.runAfterCommit(() -> list.forEach(l -> l.deleted(productId)));
+    }
+
+    static void stockChanged(Database db, String productId) {
+        List<ProductChangeListener> list = LISTENERS.get(db);
+        if (list == null || list.isEmpty()) return;
+        UnitOfWork.runAfterCommit(() -> list.forEach(l -> l.stockChanged(productId)));
+    }
+}
@@ -0,0 +1,76 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 商品 keyset 分页的游标编解码与排序规则，各存储实现共用。
+ * 游标为 "排序键:id"（排序键为上架时间或价格），以 id 作为同值时的次序，保证翻页不重不漏。
+ */
+public final class ProductKeyset {
+    /** 解码后的游标位置 */
+    public record Position(long createdAt, double price, String id) {}
+
+    private ProductKeyset() {}
+
+    public static Comparator<Product> comparator(ProductSort sort) {
+        return switch (sort) {
+            case NEWEST -> Comparator.comparingLong(Product::getCreatedAt).thenComparing(Product::getProductId).reversed();
+            case PRICE_ASC -> Comparator.comparingDouble(Product::getPrice).thenComparing(Product::getProductId);
+            case PRICE_DESC -> Comparator.comparingDouble(Product::getPrice).thenComparing(Product::getProductId).reversed();
+        };
+    }
+
+    public static String cursorOf(ProductSort sort, Product p) {
+        String key = sort == ProductSort.NEWEST ? Long.toString(p.getCreatedAt()) : Double.toString(p.getPrice());
+        return key + ":" + p.getProductId();
+    }
+
+    /**
+     * @return null 表示从第一页开始
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static Position decode(ProductSort sort, String cursor) {
+        if (cursor == null || cursor.isEmpty()) return null;
+        int i = cursor.indexOf(':');
+        if (i <= 0) throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        String key = cursor.substring(0, i);
+        String id = cursor.substring(i + 1);
+        try {
+            return sort == ProductSort.NEWEST ? new Position(Long.parseLong(key), 0, id) : new Position(0, Double.parseDouble(key), id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+
+    /** p 是否排在游标之后（即属于下一页） */
+    public static boolean isAfter(ProductSort sort, Product p, Position pos) {
+        if (pos == null) return true;
+        Product anchor = new Product(pos.id(), null, null, pos.price(), 0, null, null, null);
+        anchor.setCreatedAt(pos.createdAt());
+        return comparator(sort).compare(p, anchor) > 0;
+    }
+
+    /**
+     * 在内存中从候选商品里取游标之后的一页（内存存储与分片合并使用）
+     */
+    public static Page<Product> page(Iterable<Product> candidates, ProductSort sort, String cursor, int pageSize) {
+        Position pos = decode(sort, cursor);
+        List<Product> after = new ArrayList<>();
+        for (Product p : candidates) if (isAfter(sort, p, pos)) after.add(p);
+        after.sort(comparator(sort));
+        return trim(after, sort, pageSize);
+    }
+
+    /**
+     * 已排好序、可能多取了一条的结果截成一页并生成下一页游标
+     */
+    public static Page<Product> trim(List<Product> sorted, ProductSort sort, int pageSize) {
+        if (sorted.size() <= pageSize) return new Page<>(sorted, null);
+        List<Product> items = new ArrayList<>(sorted.subList(0, pageSize));
+        return new Page<>(items, cursorOf(sort, items.get(items.size() - 1)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 商品存储接口：SQLite 实现见 {@link ProductDAO}，内存实现见 com.marketplace.dao.memory。
+ */
+public interface ProductRepository {
+    /** 保存或更新商品 */
+    void save(Product p) throws SQLException;
+
+    /**
+     * 批量保存：整批在一个事务中写入，失败时整批回滚；变更订阅者只收到一次 {@link ProductChangeListener#savedAll} 通知。
+     * 默认逐个调用 {@link #save}
+     */
+    default void saveAll(List<Product> products) throws SQLException {
+        for (Product p : products) save(p);
+    }
+
+    /** 已发布的商品列表 */
+    List<Product> listPublished() throws SQLException;
+
+    /**
+     * 库存充足时扣减库存
+     * @return 是否扣减成功；商品不存在或库存不足时返回 false
+     */
+    boolean reduceStock(String productId, int qty) throws SQLException;
+
+    void deleteProduct(String productId) throws SQLException;
+
+    /** 按 id 查询，不存在返回 null */
+    Product findById(String id) throws SQLException;
+
+    /**
+     * 按 id 批量查询，返回其中存在的商品（顺序不定）；默认逐个调用 {@link #findById}
+     */
+    default List<Product> findByIds(Collection<String> ids) throws SQLException {
+        List<Product> res = new ArrayList<>();
+        for (String id : ids) {
+            Product p = findById(id);
+            if (p != null) res.add(p);
+        }
+        return res;
+    }
+
+    List<Product> listByMerchant(String merchantId) throws SQLException;
+
+    /**
+     * 流式遍历全部商品（任意状态）：逐条回调，不把整张表装进内存，适合导出、重建索引等批处理。
+     * 遍历期间占用一个读连接，回调里不要做耗时操作。
+     */
+    void forEach(ProductVisitor visitor) throws SQLException;
+
+    /**
+     * 已发布商品的一页（keyset 分页）：cursor 为上一页返回的游标，null 表示第一页
+     */
+    Page<Product> listPublishedPage(ProductSort sort, String cursor, int pageSize) throws SQLException;
+
+    /** 某商家全部商品的一页，用法同 {@link #listPublishedPage} */
+    Page<Product> listByMerchantPage(String merchantId, ProductSort sort, String cursor, int pageSize) throws SQLException;
+
+    /**
+     * 持久化全文检索（SQLite FTS5），按相关度返回至多 limit 个已发布商品
+     * @param groups OR 连接的各组，每组为 AND 连接的小写查询词
+     */
+    default List<Product> searchFullText(List<List<String>> groups, int limit) throws SQLException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support full-text search");
+    }
+
+    /**
+     * 订阅本仓储的商品变更（保存、删除、批量重置），事件在写入提交后发出
+     */
+    default void addChangeListener(ProductChangeListener listener) throws SQLException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not publish change events");
+    }
+
+    default void removeChangeListener(ProductChangeListener listener) throws SQLException {
+    }
+
+    /**
+     * 变更日志中序号大于 afterSequence 的至多 max 条变更，按序号递增。
+     * 日志只保留最近的一部分，返回的第一条序号大于 afterSequence + 1 说明中间的变更已被清理。
+     * 一般通过 {@link ProductChangeFeed} 订阅，而不是直接调用
+     */
+    default List<ProductChange> readChanges(long afterSequence, int max) throws SQLException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not keep a change log");
+    }
+
+    /** 变更日志的最新序号，尚无变更时为 0 */
+    default long latestChangeSequence() throws SQLException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not keep a change log");
+    }
+}
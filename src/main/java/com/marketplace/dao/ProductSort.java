@@ -0,0 +1,13 @@
+package com.marketplace.dao;
+
+/**
+ * 商品列表的排序方式，用于 keyset 分页
+ */
+public enum ProductSort {
+    /** 最新上架在前 */
+    NEWEST,
+    /** 价格从低到高 */
+    PRICE_ASC,
+    /** 价格从高到低 */
+    PRICE_DESC
+}
@@ -0,0 +1,13 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+
+/**
+ * 逐条处理商品的回调，见 {@link ProductRepository#forEach(ProductVisitor)}。抛出异常即中止遍历。
+ */
+@FunctionalInterface
+public interface ProductVisitor {
+    void visit(Product p) throws SQLException;
+}
@@ -0,0 +1,51 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.Enums;
+import com.marketplace.models.Merchant;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+
+/**
+ * 示例商家与商品（与 DBUtil.seedSampleData 的 SQL 版本内容一致），通过仓储接口写入任意存储引擎。
+ */
+public final class SampleData {
+    private static final String[][] MERCHANTS = {
+            {"m1", "示例商家A", "10000000001", "联系A"}, {"m2", "示例商家B", "10000000002", "联系B"},
+            {"m3", "示例商家C", "10000000003", "联系C"}, {"m4", "示例商家D", "10000000004", "联系D"},
+            {"m5", "示例商家E", "10000000005", "联系E"}, {"m6", "示例商家F", "10000000006", "联系F"},
+            {"m7", "示例商家G", "10000000007", "联系G"}};
+
+    private static final Object[][] PRODUCTS = {
+            {"p1", "示例手机", "性价比高的示例手机", 1999.0, 50, "m1"},
+            {"p2", "示例耳机", "舒适无线耳机", 299.0, 120, "m1"},
+            {"p3", "示例笔记本", "办公学习用示例笔记本", 6999.0, 20, "m2"},
+            {"p4", "示例键盘", "机械键盘示例", 399.0, 80, "m3"},
+            {"p5", "示例鼠标", "人体工学鼠标", 199.0, 150, "m3"},
+            {"p6", "示例显示器", "24寸高清显示器", 899.0, 30, "m4"},
+            {"p7", "示例移动电源", "大容量移动电源", 149.0, 200, "m4"},
+            {"p8", "示例相机", "入门级微单相机", 2499.0, 10, "m5"},
+            {"p9", "示例手表", "智能手表示例", 599.0, 60, "m5"},
+            {"p10", "示例背包", "轻便旅行背包", 249.0, 70, "m6"},
+            {"p11", "示例运动鞋", "跑步运动鞋", 499.0, 40, "m6"},
+            {"p12", "示例书籍", "Java 编程入门书", 89.0, 200, "m7"},
+            {"p13", "示例耳塞", "降噪耳塞", 59.0, 300, "m7"}};
+
+    private SampleData() {
+    }
+
+    public static void seed(StorageEngine engine) throws SQLException {
+        for (String[] s : MERCHANTS) {
+            Merchant m = new Merchant(s[1], s[2], s[3], Enums.IDENTITY.BOSS);
+            m.setMerchantId(s[0]);
+            engine.merchants().save(m, "pwd");
+        }
+        for (Object[] it : PRODUCTS) {
+            String id = (String) it[0];
+            if (engine.products().findById(id) != null) continue; // 与 INSERT OR IGNORE 一致
+            String merchantId = (String) it[5];
+            String phone = "1000000000" + merchantId.substring(1);
+            engine.products().save(new Product(id, (String) it[1], (String) it[2], (Double) it[3], (Integer) it[4], Enums.ProductStatus.PUBLISHED, merchantId, phone));
+        }
+    }
+}
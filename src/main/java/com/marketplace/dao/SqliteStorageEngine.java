@@ -0,0 +1,43 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.DBUtil;
+
+import java.sql.SQLException;
+
+/**
+ * 基于 SQLite 的存储引擎：各仓储即现有的 DAO（商品外加读缓存），事务由 {@link DBUtil#inTransaction} 提供。
+ */
+public class SqliteStorageEngine implements StorageEngine {
+    // 商品读多写少，在 DAO 外加一层读缓存；扣库存默认走内存台账（-Dmarketplace.stockLedger=false 关闭）
+    private final ProductRepository products = new CachingProductRepository(
+            Boolean.parseBoolean(System.getProperty("marketplace.stockLedger", "true")) ? StockLedger.forDefaultDatabase() : new ProductDAO());
+    private final OrderRepository orders = new OrderDAO();
+    private final UserRepository users = new UserDAO();
+    private final MerchantRepository merchants = new MerchantDAO();
+    private final CouponRepository coupons = new CouponDAO();
+    private final MessageRepository messages = new MessageDAO();
+    private final ComplaintRepository complaints = new ComplaintDAO();
+    private final BanRepository bans = new BanDAO();
+
+    public String name() { return "sqlite"; }
+    public ProductRepository products() { return products; }
+    public OrderRepository orders() { return orders; }
+    public UserRepository users() { return users; }
+    public MerchantRepository merchants() { return merchants; }
+    public CouponRepository coupons() { return coupons; }
+    public MessageRepository messages() { return messages; }
+    public ComplaintRepository complaints() { return complaints; }
+    public BanRepository bans() { return bans; }
+
+    public <T> T inTransaction(Work<T> work) throws SQLException {
+        return DBUtil.inTransaction(conn -> work.run());
+    }
+
+    public void clearAllData() throws SQLException {
+        DBUtil.clearAllData();
+    }
+
+    public void seedSampleData() throws SQLException {
+        DBUtil.seedSampleData();
+    }
+}
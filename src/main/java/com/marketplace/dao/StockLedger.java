@@ -0,0 +1,610 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.DBUtil;
+import com.marketplace.db.Database;
+import com.marketplace.db.UnitOfWork;
+import com.marketplace.models.Product;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 内存库存台账：包在 SQLite 商品仓储外面，扣库存只在内存中完成，再由后台线程批量写回数据库。
+ * - 每个商品的可用库存（数据库库存减去未写回的扣减）是一个 AtomicInteger，按商品 id 分段加锁“够则减”，
+ *   不同商品的购买互不等待，也不再排队等数据库写锁
+ * - 扣减先追加到日志文件再返回成功；后台线程定期把累计的扣减合并成一个事务写回 products.stock，
+ *   同一事务中记下已写回的日志序号（stock_ledger 表），之后删除已写回的日志段
+ * - 进程崩溃后，下次启动时把日志中序号大于已写回序号的扣减重新计入待写回；日志不逐条 fsync，
+ *   掉电可能丢失最近一个写回周期内的扣减
+ * - 事务（工作单元）内的扣减先在台账中预留，再直接写库，与台账扣减不会卖出同一件库存
+ * - 写回时库存不足（台账之外的写入压低了库存）不会静默截断：库存置 0，超卖数量记入 {@link #oversold()}，
+ *   并向订阅者发出库存变化事件；只有显式调用 {@link #flush()} 时才以异常报告
+ * 日志默认放在数据库文件旁的 &lt;数据库文件&gt;-ledger 目录中，可用 marketplace.stockLedger.dir 指定。
+ * 台账独占日志目录：目录已被其他进程的台账占用时，本进程的台账不生效，扣库存直接走数据库条件更新。
+ */
+public class StockLedger implements ProductRepository, AutoCloseable {
+    private static final Pattern SEGMENT = Pattern.compile("stock-ledger-(\\d+)\\.log");
+    private static final int STRIPES = 64;
+    private static StockLedger defaultLedger;
+
+    private final ProductRepository delegate;
+    // 为 null 时使用默认库（DBUtil），与 ProductDAO 相同
+    private final Database db;
+    private final long flushMillis;
+    private final Object[] stripes = new Object[STRIPES];
+    private final Map<String, AtomicInteger> available = new ConcurrentHashMap<>();
+    private final Map<String, Integer> oversold = new ConcurrentHashMap<>();
+    private final List<ProductChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // 写回时持有写锁，事务外加载库存时持有读锁：加载期间不会完成一次写回
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    // 以下字段由 journalLock 保护
+    private final Object journalLock = new Object();
+    private final Map<String, Integer> pending = new HashMap<>();
+    // 最近一次写回的批次：序号不超过 inFlightUpTo，数据库中的已写回序号更小时说明尚未计入库存
+    private Map<String, Integer> inFlight = Map.of();
+    private long inFlightUpTo;
+    private FileOutputStream journal;
+    private int segment;
+    private long lastSequence;
+    private volatile long appliedSequence;
+    private Path journalDir;
+    private FileChannel lockChannel;
+    private ScheduledExecutorService flusher;
+    private volatile SQLException lastFlushFailure;
+    private volatile boolean started;
+    private volatile boolean active;
+
+    /**
+     * @param journalDir 日志目录，为 null 时放在数据库文件旁
+     */
+    public StockLedger(ProductRepository delegate, Database db, Path journalDir, long flushMillis) {
+        this.delegate = delegate;
+        this.db = db;
+        this.journalDir = journalDir;
+        this.flushMillis = flushMillis;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+    }
+
+    /**
+     * 默认库共用的台账：日志目录由 marketplace.stockLedger.dir 指定（默认在数据库文件旁），
+     * 写回间隔由 marketplace.stockLedger.flushMillis 指定（默认 200 毫秒）
+     */
+    public static synchronized StockLedger forDefaultDatabase() {
+        if (defaultLedger == null) {
+            String dir = System.getProperty("marketplace.stockLedger.dir", "");
+            defaultLedger = new StockLedger(new ProductDAO(), null, dir.isEmpty() ? null : Paths.get(dir),
+                    Long.getLong("marketplace.stockLedger.flushMillis", 200));
+        }
+        return defaultLedger;
+    }
+
+    private Database db() throws SQLException {
+        return db != null ? db : DBUtil.database();
+    }
+
+    public void save(Product p) throws SQLException {
+        // 先写回未落库的扣减，保存的库存即为此后的可用库存；其他商品的超卖已记录，不影响本次保存
+        writeBack();
+        delegate.save(p);
+        invalidate(p.getProductId());
+    }
+
+    public void saveAll(List<Product> products) throws SQLException {
+        writeBack();
+        delegate.saveAll(products);
+        for (Product p : products) invalidate(p.getProductId());
+    }
+
+    public List<Product> listPublished() throws SQLException {
+        ensureStarted();
+        return overlay(delegate.listPublished());
+    }
+
+    public boolean reduceStock(String productId, int qty) throws SQLException {
+        if (qty < 0) throw new IllegalArgumentException("qty must be >= 0");
+        // 日志目录被其他进程占用：与未启用台账时一样直接条件更新
+        if (!ensureStarted()) return delegate.reduceStock(productId, qty);
+        boolean inTransaction = UnitOfWork.current() != null;
+        synchronized (stripe(productId)) {
+            AtomicInteger stock = load(productId);
+            if (stock == null || stock.get() < qty) return false;
+            if (qty == 0) return true;
+            stock.addAndGet(-qty);
+            if (inTransaction) {
+                // 预留已生效，数据库中的库存不少于台账中的可用库存，条件更新必然满足；事务结束后重新加载
+                boolean ok;
+                try {
+                    ok = delegate.reduceStock(productId, qty);
+                } catch (SQLException | RuntimeException e) {
+                    stock.addAndGet(qty);
+                    throw e;
+                }
+                if (!ok) {
+                    stock.addAndGet(qty);
+                    return false;
+                }
+                UnitOfWork.runAfterCompletion(() -> invalidate(productId));
+                return true;
+            }
+            try {
+                append(productId, qty);
+            } catch (IOException e) {
+                stock.addAndGet(qty);
+                throw new SQLException("Cannot append to stock journal", e);
+            }
+        }
+        for (ProductChangeListener l : listeners) l.stockChanged(productId);
+        return true;
+    }
+
+    public void deleteProduct(String productId) throws SQLException {
+        ensureStarted();
+        delegate.deleteProduct(productId);
+        invalidate(productId);
+    }
+
+    public Product findById(String id) throws SQLException {
+        ensureStarted();
+        return overlay(delegate.findById(id));
+    }
+
+    public List<Product> findByIds(Collection<String> ids) throws SQLException {
+        ensureStarted();
+        return overlay(delegate.findByIds(ids));
+    }
+
+    public List<Product> listByMerchant(String merchantId) throws SQLException {
+        ensureStarted();
+        return overlay(delegate.listByMerchant(merchantId));
+    }
+
+    public void forEach(ProductVisitor visitor) throws SQLException {
+        ensureStarted();
+        delegate.forEach(p -> visitor.visit(overlay(p)));
+    }
+
+    public Page<Product> listPublishedPage(ProductSort sort, String cursor, int pageSize) throws SQLException {
+        ensureStarted();
+        Page<Product> page = delegate.listPublishedPage(sort, cursor, pageSize);
+        overlay(page.items());
+        return page;
+    }
+
+    public Page<Product> listByMerchantPage(String merchantId, ProductSort sort, String cursor, int pageSize) throws SQLException {
+        ensureStarted();
+        Page<Product> page = delegate.listByMerchantPage(merchantId, sort, cursor, pageSize);
+        overlay(page.items());
+        return page;
+    }
+
+    public List<Product> searchFullText(List<List<String>> groups, int limit) throws SQLException {
+        ensureStarted();
+        return overlay(delegate.searchFullText(groups, limit));
+    }
+
+    public void addChangeListener(ProductChangeListener listener) throws SQLException {
+        delegate.addChangeListener(listener);
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ProductChangeListener listener) throws SQLException {
+        listeners.remove(listener);
+        delegate.removeChangeListener(listener);
+    }
+
+    public List<ProductChange> readChanges(long afterSequence, int max) throws SQLException {
+        return delegate.readChanges(afterSequence, max);
+    }
+
+    public long latestChangeSequence() throws SQLException {
+        return delegate.latestChangeSequence();
+    }
+
+    /**
+     * 立即把累计的扣减写回数据库（后台线程也会定期调用）。事务中调用时不写回，避免事务回滚时丢失扣减。
+     * @throws SQLException 写回失败（扣减保留，稍后重试），或写回已提交但有商品超卖（见 {@link #oversold()}）
+     */
+    public void flush() throws SQLException {
+        Map<String, Integer> shortfall = writeBack();
+        if (!shortfall.isEmpty()) throw new SQLException("Stock ledger oversold " + shortfall + ", stock set to 0");
+    }
+
+    // 写回累计的扣减，返回本次发现的超卖（已记入 oversold 并发出库存变化事件）
+    private Map<String, Integer> writeBack() throws SQLException {
+        if (!ensureStarted() || UnitOfWork.current() != null) return Map.of();
+        Map<String, Integer> shortfall;
+        flushLock.writeLock().lock();
+        try {
+            Map<String, Integer> batch;
+            long upTo;
+            int sealed;
+            synchronized (journalLock) {
+                if (pending.isEmpty() && appliedSequence == lastSequence) return Map.of();
+                sealed = segment;
+                try {
+                    openSegment(segment + 1);
+                } catch (IOException e) {
+                    throw new SQLException("Cannot rotate stock journal", e);
+                }
+                batch = new HashMap<>(pending);
+                pending.clear();
+                upTo = lastSequence;
+                inFlight = batch;
+                inFlightUpTo = upTo;
+            }
+            try {
+                shortfall = apply(batch, upTo);
+            } catch (SQLException | RuntimeException e) {
+                synchronized (journalLock) {
+                    batch.forEach((id, qty) -> pending.merge(id, qty, Integer::sum));
+                    inFlight = Map.of();
+                    inFlightUpTo = 0;
+                }
+                throw e;
+            }
+            appliedSequence = upTo;
+            try {
+                for (Map.Entry<Integer, Path> e : segments().entrySet()) {
+                    if (e.getKey() <= sealed) Files.deleteIfExists(e.getValue());
+                }
+            } catch (IOException ignore) {
+                // 已写回，旧日志段留待下次写回时删除；重放时会按序号跳过
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+        for (Map.Entry<String, Integer> e : shortfall.entrySet()) {
+            oversold.merge(e.getKey(), e.getValue(), Integer::sum);
+            // 库存已置 0，缓存与搜索视图据此重新读取
+            invalidate(e.getKey());
+            for (ProductChangeListener l : listeners) l.stockChanged(e.getKey());
+        }
+        return shortfall;
+    }
+
+    /** 已记入日志、尚未写回数据库的扣减涉及的商品数 */
+    public int pendingProducts() {
+        synchronized (journalLock) {
+            return pending.size();
+        }
+    }
+
+    /** 写回时发现的超卖：商品 id 到库存不足的件数（累计） */
+    public Map<String, Integer> oversold() {
+        return Map.copyOf(oversold);
+    }
+
+    /** 后台写回最近一次失败的原因，之后写回成功则为 null */
+    public SQLException lastFlushFailure() {
+        return lastFlushFailure;
+    }
+
+    /**
+     * 停止后台写回并写回剩余的扣减
+     */
+    @Override
+    public void close() throws SQLException {
+        synchronized (this) {
+            if (!started) return;
+            if (flusher != null) flusher.shutdown();
+        }
+        try {
+            flush();
+        } finally {
+            synchronized (journalLock) {
+                try {
+                    if (journal != null) journal.close();
+                    if (lockChannel != null) lockChannel.close();
+                } catch (IOException ignore) {
+                    // 剩余扣减已写回，日志不再需要
+                }
+                journal = null;
+            }
+            active = false;
+        }
+    }
+
+    // 首次使用时读入未写回的日志并启动后台写回；返回台账是否生效（日志目录被其他进程占用时为 false）
+    private boolean ensureStarted() throws SQLException {
+        if (started) return active;
+        synchronized (this) {
+            if (started) return active;
+            if (journalDir == null) journalDir = besideDatabase(db().getUrl());
+            try {
+                Files.createDirectories(journalDir);
+                lockChannel = FileChannel.open(journalDir.resolve("stock-ledger.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock;
+                try {
+                    lock = lockChannel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    // 同一进程中的另一个台账占用
+                    lock = null;
+                }
+                if (lock == null) {
+                    lockChannel.close();
+                    started = true;
+                    return false;
+                }
+                recover();
+            } catch (IOException e) {
+                throw new SQLException("Cannot open stock journal in " + journalDir, e);
+            }
+            try {
+                delegate.addChangeListener(new Invalidator());
+            } catch (UnsupportedOperationException ignore) {
+                // 只靠本对象的写入重新加载
+            }
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "stock-ledger-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushInBackground, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+            active = true;
+            started = true;
+            return true;
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            writeBack();
+            lastFlushFailure = null;
+        } catch (SQLException e) {
+            // 写回失败时扣减仍在日志与内存中，下个周期重试；原因留给 lastFlushFailure() 查询
+            lastFlushFailure = e;
+        }
+    }
+
+    // jdbc:sqlite:marketplace.db 的日志放在 marketplace.db-ledger 目录；内存库放在临时目录
+    private static Path besideDatabase(String url) throws SQLException {
+        String file = url.startsWith("jdbc:sqlite:") ? url.substring("jdbc:sqlite:".length()) : "";
+        int q = file.indexOf('?');
+        if (q >= 0) file = file.substring(0, q);
+        if (file.startsWith("file:")) file = file.substring("file:".length());
+        if (file.isEmpty() || file.startsWith(":memory:")) {
+            try {
+                return Files.createTempDirectory("stock-ledger");
+            } catch (IOException e) {
+                throw new SQLException("Cannot create stock journal directory", e);
+            }
+        }
+        return Paths.get(file + "-ledger");
+    }
+
+    // 序号大于已写回序号的日志记录重新计入待写回（由第一次写回提交）；旧日志段在那次写回后删除
+    private void recover() throws IOException, SQLException {
+        long applied = 0;
+        try (Connection c = db().getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT applied_seq FROM stock_ledger WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) applied = rs.getLong(1);
+        }
+        TreeMap<Integer, Path> segments = segments();
+        Map<String, Integer> replay = new HashMap<>();
+        long max = applied;
+        for (Path f : segments.values()) {
+            try (BufferedReader in = Files.newBufferedReader(f, StandardCharsets.UTF_8)) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    String[] parts = line.split("\t");
+                    // 崩溃时写了一半的最后一行不完整，跳过
+                    if (parts.length != 3) continue;
+                    long seq;
+                    int qty;
+                    try {
+                        seq = Long.parseLong(parts[0]);
+                        qty = Integer.parseInt(parts[2]);
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    if (seq <= applied) continue;
+                    replay.merge(parts[1], qty, Integer::sum);
+                    max = Math.max(max, seq);
+                }
+            }
+        }
+        synchronized (journalLock) {
+            pending.putAll(replay);
+            lastSequence = max;
+            appliedSequence = applied;
+            openSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        }
+    }
+
+    // 一个事务：扣减各商品库存并记下已写回的序号；返回库存不足的商品及差额（这些商品库存置 0）
+    private Map<String, Integer> apply(Map<String, Integer> batch, long upTo) throws SQLException {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(batch.entrySet());
+        return db().inTransaction(c -> {
+            Map<String, Integer> shortfall = new HashMap<>();
+            int[] counts;
+            try (PreparedStatement ps = c.prepareStatement("UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?")) {
+                for (Map.Entry<String, Integer> e : entries) {
+                    ps.setInt(1, e.getValue());
+                    ps.setString(2, e.getKey());
+                    ps.setInt(3, e.getValue());
+                    ps.addBatch();
+                }
+                counts = ps.executeBatch();
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) continue;
+                String id = entries.get(i).getKey();
+                // 商品已删除时扣减无处可记，忽略；仍存在则是超卖
+                try (PreparedStatement ps = c.prepareStatement("SELECT stock FROM products WHERE id = ?")) {
+                    ps.setString(1, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) continue;
+                        shortfall.put(id, entries.get(i).getValue() - rs.getInt(1));
+                    }
+                }
+                try (PreparedStatement ps = c.prepareStatement("UPDATE products SET stock = 0 WHERE id = ?")) {
+                    ps.setString(1, id);
+                    ps.executeUpdate();
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement("UPDATE stock_ledger SET applied_seq = ? WHERE id = 1")) {
+                ps.setLong(1, upTo);
+                ps.executeUpdate();
+            }
+            return shortfall;
+        });
+    }
+
+    // 调用方持有该商品的分段锁
+    private AtomicInteger load(String productId) throws SQLException {
+        AtomicInteger stock = available.get(productId);
+        if (stock != null) return stock;
+        // 事务中运行在写线程上，写回排在本事务之后，不会与加载交错；此时不能等待写回持有的写锁
+        boolean inTransaction = UnitOfWork.current() != null;
+        if (!inTransaction) flushLock.readLock().lock();
+        try {
+            int dbStock;
+            long applied;
+            // 库存与已写回序号一次读出，据此判断最近一次写回的批次是否已计入这份库存
+            try (Connection c = db().getConnection();
+                 PreparedStatement ps = c.prepareStatement("SELECT p.stock, l.applied_seq FROM products p, stock_ledger l WHERE p.id = ? AND l.id = 1")) {
+                ps.setString(1, productId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    dbStock = rs.getInt(1);
+                    applied = rs.getLong(2);
+                }
+            }
+            int owed;
+            synchronized (journalLock) {
+                owed = pending.getOrDefault(productId, 0);
+                if (inFlightUpTo > applied) owed += inFlight.getOrDefault(productId, 0);
+            }
+            stock = new AtomicInteger(dbStock - owed);
+            available.put(productId, stock);
+            return stock;
+        } finally {
+            if (!inTransaction) flushLock.readLock().unlock();
+        }
+    }
+
+    private void invalidate(String productId) {
+        synchronized (stripe(productId)) {
+            available.remove(productId);
+        }
+    }
+
+    private Object stripe(String productId) {
+        return stripes[(productId.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private void append(String productId, int qty) throws IOException {
+        synchronized (journalLock) {
+            if (journal == null) throw new IOException("stock journal is closed");
+            long seq = lastSequence + 1;
+            // 每条记录一次 write，进程崩溃时已返回成功的扣减都在操作系统缓冲区里
+            journal.write((seq + "\t" + productId + "\t" + qty + "\n").getBytes(StandardCharsets.UTF_8));
+            lastSequence = seq;
+            pending.merge(productId, qty, Integer::sum);
+        }
+    }
+
+    private void openSegment(int n) throws IOException {
+        FileOutputStream next = new FileOutputStream(journalDir.resolve("stock-ledger-" + n + ".log").toFile(), true);
+        if (journal != null) {
+            journal.getFD().sync();
+            journal.close();
+        }
+        segment = n;
+        journal = next;
+    }
+
+    private TreeMap<Integer, Path> segments() throws IOException {
+        TreeMap<Integer, Path> res = new TreeMap<>();
+        try (var files = Files.list(journalDir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Matcher m = SEGMENT.matcher(f.getFileName().toString());
+                if (m.matches()) res.put(Integer.parseInt(m.group(1)), f);
+            }
+        }
+        return res;
+    }
+
+    private Product overlay(Product p) {
+        if (p != null) {
+            synchronized (journalLock) {
+                overlayLocked(p);
+            }
+        }
+        return p;
+    }
+
+    private List<Product> overlay(List<Product> list) {
+        synchronized (journalLock) {
+            if (available.isEmpty() && pending.isEmpty()) return list;
+            for (Product p : list) overlayLocked(p);
+        }
+        return list;
+    }
+
+    // 已加载的商品取台账中的可用库存，未加载的从数据库库存中扣除待写回的部分
+    private void overlayLocked(Product p) {
+        AtomicInteger stock = available.get(p.getProductId());
+        if (stock != null) {
+            p.setStock(stock.get());
+        } else {
+            Integer owed = pending.get(p.getProductId());
+            if (owed != null) p.setStock(p.getStock() - owed);
+        }
+    }
+
+    /**
+     * 其他途径的写入提交后重新加载对应商品；清库、批量生成数据后先写回未落库的扣减，再丢弃全部缓存的库存
+     */
+    private final class Invalidator implements ProductChangeListener {
+        public void saved(Product product) {
+            invalidate(product.getProductId());
+        }
+
+        public void savedAll(List<Product> products) {
+            for (Product p : products) invalidate(p.getProductId());
+        }
+
+        public void deleted(String productId) {
+            invalidate(productId);
+        }
+
+        public void stockChanged(String productId) {
+            invalidate(productId);
+        }
+
+        public void reset() {
+            flushInBackground();
+            // 仍未写回的扣减保留在待写回中，重新加载时照常扣除
+            available.clear();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.marketplace.dao;
+
+import java.sql.SQLException;
+
+/**
+ * 存储引擎：一组配套的仓储实现。服务层只依赖这里的接口，
+ * 可在 SQLite（{@link SqliteStorageEngine}）与内存（com.marketplace.dao.memory.InMemoryStorageEngine）之间切换。
+ */
+public interface StorageEngine {
+
+    @FunctionalInterface
+    interface Work<T> {
+        T run() throws SQLException;
+    }
+
+    /** 引擎名称，如 "sqlite"、"memory" */
+    String name();
+
+    ProductRepository products();
+
+    OrderRepository orders();
+
+    UserRepository users();
+
+    MerchantRepository merchants();
+
+    CouponRepository coupons();
+
+    MessageRepository messages();
+
+    ComplaintRepository complaints();
+
+    BanRepository bans();
+
+    /**
+     * 把 work 内的多次仓储调用作为一个整体执行。
+     * SQLite 引擎在一个事务中执行，失败整体回滚；内存引擎串行执行，但不提供回滚。
+     */
+    <T> T inTransaction(Work<T> work) throws SQLException;
+
+    /** 清空全部业务数据 */
+    void clearAllData() throws SQLException;
+
+    /** 写入示例商家与商品 */
+    void seedSampleData() throws SQLException;
+}
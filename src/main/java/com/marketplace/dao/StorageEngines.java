@@ -0,0 +1,55 @@
+package com.marketplace.dao;
+
+import com.marketplace.dao.memory.InMemoryStorageEngine;
+import com.marketplace.dao.shard.ShardedStorageEngine;
+
+import java.sql.SQLException;
+
+/**
+ * 默认存储引擎的选择：系统属性 marketplace.storage=sqlite（默认）、memory 或 sharded。
+ * 服务的无参构造函数使用这里的默认引擎。
+ */
+public final class StorageEngines {
+    private static volatile StorageEngine defaultEngine;
+
+    private StorageEngines() {
+    }
+
+    public static StorageEngine getDefault() {
+        StorageEngine e = defaultEngine;
+        if (e == null) {
+            synchronized (StorageEngines.class) {
+                if (defaultEngine == null) defaultEngine = create(System.getProperty("marketplace.storage", "sqlite"));
+                e = defaultEngine;
+            }
+        }
+        return e;
+    }
+
+    /**
+     * 替换默认引擎（之后新建的服务使用新引擎）
+     */
+    public static void setDefault(StorageEngine engine) {
+        defaultEngine = engine;
+    }
+
+    /**
+     * 按名称创建引擎
+     */
+    public static StorageEngine create(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "sqlite":
+                return new SqliteStorageEngine();
+            case "memory":
+                return new InMemoryStorageEngine();
+            case "sharded":
+                try {
+                    return ShardedStorageEngine.fromSystemProperties();
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Cannot open shard databases", e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown storage engine: " + name + " (expected sqlite, memory or sharded)");
+        }
+    }
+}
@@ -8,27 +8,54 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 用户数据访问对象：负责 users 表的读写操作。
  */
-public class UserDAO {
+public class UserDAO implements UserRepository {
     /**
      * 保存用户记录（若已存在则忽略）
      */
     public void save(User u) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("INSERT OR IGNORE INTO users (id, username, phone, password, vip, login_count, last_login) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
-            ps.setString(1, u.getUserId());
-            ps.setString(2, u.getUsername());
-            ps.setString(3, u.getPhone());
-            ps.setString(4, ""); // password persisted by auth service
-            ps.setString(5, Enums.VIPLevel.NORMAL.name());
-            ps.setInt(6, u.getLoginCount());
-            ps.setString(7, null);
-            ps.executeUpdate();
-        }
+        DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT OR IGNORE INTO users (id, username, phone, password, vip, login_count, last_login) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                ps.setString(1, u.getUserId());
+                ps.setString(2, u.getUsername());
+                ps.setString(3, u.getPhone());
+                ps.setString(4, ""); // password persisted by auth service
+                ps.setString(5, Enums.VIPLevel.NORMAL.name());
+                ps.setInt(6, u.getLoginCount());
+                ps.setString(7, null);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * 注册用户：检查手机号是否已被注册与插入在写线程上一起执行，避免并发注册同一手机号
+     */
+    public boolean register(User u, String password) throws SQLException {
+        return DBUtil.write(c -> {
+            try (PreparedStatement check = c.prepareStatement("SELECT phone FROM users WHERE phone = ?")) {
+                check.setString(1, u.getPhone());
+                try (ResultSet rs = check.executeQuery()) {
+                    if (rs.next()) return false; // 已存在
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO users (id, username, phone, password, vip, login_count, total_spent) VALUES (?, ?, ?, ?, ?, ?, ?)") ) {
+                ps.setString(1, u.getUserId());
+                ps.setString(2, u.getUsername());
+                ps.setString(3, u.getPhone());
+                ps.setString(4, password);
+                ps.setString(5, Enums.VIPLevel.NORMAL.name());
+                ps.setInt(6, 0);
+                ps.setDouble(7, 0.0);
+                return ps.executeUpdate() > 0;
+            }
+        });
     }
 
     /**
@@ -48,11 +75,26 @@ public class UserDAO {
         return null;
     }
 
+    /**
+     * 获取用户已存密码，用户不存在返回 null
+     */
+    public String getPasswordByPhone(String phone) throws SQLException {
+        try (Connection c = DBUtil.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT password FROM users WHERE phone = ?")) {
+            ps.setString(1, phone);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getString(1);
+            }
+        }
+        return null;
+    }
+
     /**
      * 增加用户消费总额，并在达到阈值时更新 VIP 等级（阈值示例：>=30000 -> GOLD）
      */
     public void addSpentAndMaybeUpgrade(String phone, double amount) throws SQLException {
-        try (Connection c = DBUtil.getConnection()) {
+        // 读-改-写整体在写线程上执行，避免并发下单时丢失更新
+        DBUtil.write(c -> {
             // 读取当前 total_spent 与 vip
             double total = 0.0;
             try (PreparedStatement ps = c.prepareStatement("SELECT total_spent, vip FROM users WHERE phone = ?")) {
@@ -74,9 +116,9 @@ public class UserDAO {
                 ups.setDouble(1, total);
                 ups.setString(2, newVip.name());
                 ups.setString(3, phone);
-                ups.executeUpdate();
+                return ups.executeUpdate();
             }
-        }
+        });
     }
 
     /**
@@ -99,12 +141,13 @@ public class UserDAO {
      * 更新用户密码（用于将明文迁移为哈希）
      */
     public void updatePasswordByPhone(String phone, String hashed) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("UPDATE users SET password = ? WHERE phone = ?")) {
-            ps.setString(1, hashed);
-            ps.setString(2, phone);
-            ps.executeUpdate();
-        }
+        DBUtil.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE users SET password = ? WHERE phone = ?")) {
+                ps.setString(1, hashed);
+                ps.setString(2, phone);
+                return ps.executeUpdate();
+            }
+        });
     }
 
     /**
@@ -133,4 +176,17 @@ public class UserDAO {
         }
         return null;
     }
+
+    /**
+     * 列出所有注册用户的手机号（按数字大小排序）
+     */
+    public List<String> listPhonesSorted() throws SQLException {
+        List<String> res = new ArrayList<>();
+        try (Connection c = DBUtil.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT phone FROM users WHERE phone IS NOT NULL ORDER BY CAST(phone AS INTEGER) ASC, phone ASC");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) res.add(rs.getString("phone"));
+        }
+        return res;
+    }
 }
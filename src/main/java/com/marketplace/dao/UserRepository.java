@@ -0,0 +1,42 @@
+package com.marketplace.dao;
+
+import com.marketplace.models.User;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户存储接口
+ */
+public interface UserRepository {
+    /** 保存用户（已存在则忽略），不保存密码 */
+    void save(User u) throws SQLException;
+
+    /**
+     * 注册用户：手机号未被占用时连同密码一起保存。检查与插入是原子的。
+     * @return false 表示手机号已注册
+     */
+    boolean register(User u, String password) throws SQLException;
+
+    User findByPhone(String phone) throws SQLException;
+
+    /** 登录校验用的已存密码，用户不存在返回 null */
+    String getPasswordByPhone(String phone) throws SQLException;
+
+    /** 累加消费金额并按阈值更新 VIP 等级 */
+    void addSpentAndMaybeUpgrade(String phone, double amount) throws SQLException;
+
+    /** 返回 {"vip": String, "total_spent": Double}，用户不存在返回 null */
+    Map<String, Object> getVipAndTotalByPhone(String phone) throws SQLException;
+
+    void updatePasswordByPhone(String phone, String hashed) throws SQLException;
+
+    String findPhoneByUserId(String userId) throws SQLException;
+
+    /** 任意一个已注册的手机号（回退策略用），没有用户时返回 null */
+    String findAnyPhone() throws SQLException;
+
+    /** 所有用户手机号，按数值大小排序 */
+    List<String> listPhonesSorted() throws SQLException;
+}
@@ -0,0 +1,69 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.BanRepository;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存黑名单仓储。封禁商品列表需要商品标题，因此依赖同一引擎中的商品仓储。
+ */
+public class InMemoryBanRepository implements BanRepository {
+    private final ConcurrentHashMap<String, String> phones = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> products = new ConcurrentHashMap<>();
+    private final ProductRepository productRepository;
+
+    public InMemoryBanRepository(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    public boolean banPhone(String phone, String reason) {
+        phones.put(phone, reason == null ? "" : reason);
+        return true;
+    }
+
+    public boolean unbanPhone(String phone) {
+        return phone != null && phones.remove(phone) != null;
+    }
+
+    public boolean isBanned(String phone) {
+        return phone != null && phones.containsKey(phone);
+    }
+
+    public boolean banProduct(String productId, String reason) {
+        products.put(productId, reason == null ? "" : reason);
+        return true;
+    }
+
+    public boolean unbanProduct(String productId) {
+        return productId != null && products.remove(productId) != null;
+    }
+
+    public List<String> listBannedProductsSorted() throws SQLException {
+        List<Product> banned = new ArrayList<>();
+        for (String id : products.keySet()) {
+            Product p = productRepository.findById(id);
+            if (p != null) banned.add(p);
+        }
+        banned.sort(Comparator.comparing(Product::getTitle, String.CASE_INSENSITIVE_ORDER));
+        List<String> res = new ArrayList<>();
+        for (Product p : banned) res.add(p.getProductId() + " | " + p.getTitle());
+        return res;
+    }
+
+    public List<String> listBannedPhonesSorted() {
+        List<String> res = new ArrayList<>(phones.keySet());
+        res.sort(Comparator.comparing(InMemoryUserRepository::numericValue).thenComparing(Comparator.naturalOrder()));
+        return res;
+    }
+
+    void clear() {
+        phones.clear();
+        products.clear();
+    }
+}
@@ -0,0 +1,41 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.ComplaintRepository;
+import com.marketplace.models.Complaint;
+import com.marketplace.models.Enums;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存投诉仓储
+ */
+public class InMemoryComplaintRepository implements ComplaintRepository {
+    private final ConcurrentHashMap<String, Complaint> byId = new ConcurrentHashMap<>();
+
+    public void save(Complaint c) throws SQLException {
+        // 与 complaints 表的主键约束一致：重复 id 视为错误
+        if (byId.putIfAbsent(c.getComplaintId(), c) != null) {
+            throw new SQLIntegrityConstraintViolationException("Duplicate complaint id: " + c.getComplaintId());
+        }
+    }
+
+    public List<String> listOpenComplaints() {
+        List<Complaint> open = new ArrayList<>();
+        for (Complaint c : byId.values()) if (c.getStatus() == Enums.ComplaintStatus.OPEN) open.add(c);
+        open.sort(Comparator.comparing(Complaint::getComplaintId).reversed());
+        List<String> res = new ArrayList<>();
+        for (Complaint c : open) {
+            res.add(c.getComplaintId() + " | user:" + c.getUserId() + " | target:" + c.getTargetId() + " | type:" + c.getType() + " | status:" + c.getStatus());
+        }
+        return res;
+    }
+
+    void clear() {
+        byId.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.CouponRepository;
+import com.marketplace.models.Coupon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存优惠券仓储：优惠券按 id 存放并按商家建索引，领取记录按 id 存放并按手机号建索引
+ */
+public class InMemoryCouponRepository implements CouponRepository {
+
+    private static final class CouponRow {
+        final String id;
+        final String merchantId;
+        final String code;
+        final double discount;
+        final int totalQty;
+        int claimedQty;
+
+        CouponRow(Coupon c) {
+            this.id = c.getCouponId();
+            this.merchantId = c.getMerchantId();
+            this.code = c.getCode();
+            this.discount = c.getDiscount();
+            this.totalQty = c.getTotalQty();
+            this.claimedQty = c.getClaimedQty();
+        }
+    }
+
+    private record UserCoupon(String id, String couponId, String userPhone, boolean used) {
+    }
+
+    private final ConcurrentHashMap<String, CouponRow> coupons = new ConcurrentHashMap<>();
+    private final Indexes<String> couponsByMerchant = new Indexes<>();
+    private final ConcurrentHashMap<String, UserCoupon> userCoupons = new ConcurrentHashMap<>();
+    private final Indexes<String> userCouponsByPhone = new Indexes<>();
+
+    public synchronized void save(Coupon c) {
+        if (coupons.putIfAbsent(c.getCouponId(), new CouponRow(c)) == null) {
+            couponsByMerchant.add(c.getMerchantId(), c.getCouponId());
+        }
+    }
+
+    public boolean claimCoupon(String couponId, String userPhone) {
+        CouponRow c = couponId == null ? null : coupons.get(couponId);
+        if (c == null) return false;
+        // 以优惠券为粒度加锁：余量检查与计数更新原子完成，不同优惠券的领取互不阻塞
+        synchronized (c) {
+            if (c.claimedQty >= c.totalQty) return false;
+            c.claimedQty++;
+        }
+        String id = UUID.randomUUID().toString();
+        userCoupons.put(id, new UserCoupon(id, couponId, userPhone, false));
+        userCouponsByPhone.add(userPhone, id);
+        return true;
+    }
+
+    public List<String> listUserCoupons(String userPhone) {
+        List<String> res = new ArrayList<>();
+        for (String id : userCouponsByPhone.get(userPhone)) {
+            UserCoupon uc = userCoupons.get(id);
+            CouponRow c = uc == null ? null : coupons.get(uc.couponId());
+            if (c != null) res.add(uc.id() + " | " + c.code + " | " + c.discount + " | " + (uc.used() ? 1 : 0));
+        }
+        return res;
+    }
+
+    public void markUserCouponUsed(String userCouponId) {
+        userCoupons.computeIfPresent(userCouponId, (k, uc) -> new UserCoupon(uc.id(), uc.couponId(), uc.userPhone(), true));
+    }
+
+    public Double getDiscountByUserCouponId(String userCouponId) {
+        UserCoupon uc = userCouponId == null ? null : userCoupons.get(userCouponId);
+        CouponRow c = uc == null ? null : coupons.get(uc.couponId());
+        return c == null ? null : c.discount;
+    }
+
+    public List<String> listCouponsByMerchant(String merchantId) {
+        List<String> res = new ArrayList<>();
+        for (String id : couponsByMerchant.get(merchantId)) {
+            CouponRow c = coupons.get(id);
+            if (c == null) continue;
+            int remain;
+            synchronized (c) {
+                remain = c.totalQty - c.claimedQty;
+            }
+            res.add(c.id + " | " + c.code + " | " + c.discount + " | " + remain);
+        }
+        return res;
+    }
+
+    synchronized void clear() {
+        coupons.clear();
+        couponsByMerchant.clear();
+        userCoupons.clear();
+        userCouponsByPhone.clear();
+    }
+}
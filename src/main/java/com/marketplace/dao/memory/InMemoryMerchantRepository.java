@@ -0,0 +1,55 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.MerchantRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Merchant;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存商家仓储：主表按 id 存放，按手机号建二级索引
+ */
+public class InMemoryMerchantRepository implements MerchantRepository {
+
+    private record Row(String id, String shopName, String phone, String password, String contactInfo) {
+    }
+
+    private final ConcurrentHashMap<String, Row> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> idByPhone = new ConcurrentHashMap<>();
+
+    public synchronized void save(Merchant m, String password) {
+        if (byId.containsKey(m.getMerchantId())) return;
+        byId.put(m.getMerchantId(), new Row(m.getMerchantId(), m.getShopName(), m.getPhone(), password, m.getContactInfo()));
+        if (m.getPhone() != null) idByPhone.putIfAbsent(m.getPhone(), m.getMerchantId());
+    }
+
+    public Merchant findByPhone(String phone) {
+        Row r = find(phone);
+        if (r == null) return null;
+        Merchant m = new Merchant(r.shopName(), r.phone(), r.contactInfo(), Enums.IDENTITY.BOSS);
+        m.setMerchantId(r.id());
+        m.setPassword(r.password());
+        return m;
+    }
+
+    public String getPasswordByPhone(String phone) {
+        Row r = find(phone);
+        return r == null ? null : r.password();
+    }
+
+    public void updatePasswordByPhone(String phone, String hashed) {
+        String id = phone == null ? null : idByPhone.get(phone);
+        if (id == null) return;
+        byId.computeIfPresent(id, (k, r) -> new Row(r.id(), r.shopName(), r.phone(), hashed, r.contactInfo()));
+    }
+
+    private Row find(String phone) {
+        String id = phone == null ? null : idByPhone.get(phone);
+        return id == null ? null : byId.get(id);
+    }
+
+    synchronized void clear() {
+        byId.clear();
+        idByPhone.clear();
+    }
+}
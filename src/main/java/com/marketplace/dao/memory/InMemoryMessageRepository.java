@@ -0,0 +1,82 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.MessageRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存消息仓储：主表按 id 存放，按接收者与发送者建二级索引
+ */
+public class InMemoryMessageRepository implements MessageRepository {
+    private static final Comparator<Row> BY_TIME = Comparator.comparing(Row::timestamp);
+
+    private final ConcurrentHashMap<String, Row> byId = new ConcurrentHashMap<>();
+    private final Indexes<String> byReceiver = new Indexes<>();
+    private final Indexes<String> bySender = new Indexes<>();
+
+    public synchronized void save(Row m) {
+        Row old = byId.put(m.id(), m);
+        if (old != null) {
+            byReceiver.remove(old.receiverId(), old.id());
+            bySender.remove(old.senderId(), old.id());
+        }
+        byReceiver.add(m.receiverId(), m.id());
+        bySender.add(m.senderId(), m.id());
+    }
+
+    public List<Row> listByReceiver(String receiverId) {
+        List<Row> res = collect(byReceiver.get(receiverId));
+        res.sort(BY_TIME.reversed());
+        return res;
+    }
+
+    public List<Row> listBySender(String senderId) {
+        List<Row> res = collect(bySender.get(senderId));
+        res.sort(BY_TIME.reversed());
+        return res;
+    }
+
+    public int countUnread(String receiverId) {
+        int n = 0;
+        for (String id : byReceiver.get(receiverId)) {
+            Row m = byId.get(id);
+            if (m != null && !m.read()) n++;
+        }
+        return n;
+    }
+
+    public List<Row> conversation(String a, String b) {
+        List<Row> res = new ArrayList<>();
+        for (Row m : collect(bySender.get(a))) if (b.equals(m.receiverId())) res.add(m);
+        if (!a.equals(b)) {
+            for (Row m : collect(bySender.get(b))) if (a.equals(m.receiverId())) res.add(m);
+        }
+        res.sort(BY_TIME);
+        return res;
+    }
+
+    public void markRead(Collection<String> ids) {
+        for (String id : ids) {
+            byId.computeIfPresent(id, (k, m) -> new Row(m.id(), m.senderId(), m.receiverId(), m.content(), m.timestamp(), true));
+        }
+    }
+
+    private List<Row> collect(Iterable<String> ids) {
+        List<Row> res = new ArrayList<>();
+        for (String id : ids) {
+            Row m = byId.get(id);
+            if (m != null) res.add(m);
+        }
+        return res;
+    }
+
+    synchronized void clear() {
+        byId.clear();
+        byReceiver.clear();
+        bySender.clear();
+    }
+}
@@ -0,0 +1,36 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.OrderRepository;
+import com.marketplace.models.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存订单仓储：主表按 id 存放，按用户建二级索引
+ */
+public class InMemoryOrderRepository implements OrderRepository {
+    private final ConcurrentHashMap<String, Order> byId = new ConcurrentHashMap<>();
+    private final Indexes<String> byUser = new Indexes<>();
+
+    public synchronized void save(Order o) {
+        Order old = byId.put(o.getOrderId(), o);
+        if (old != null) byUser.remove(old.getUserId(), old.getOrderId());
+        byUser.add(o.getUserId(), o.getOrderId());
+    }
+
+    public List<Order> findByUser(String userId) {
+        List<Order> res = new ArrayList<>();
+        for (String id : byUser.get(userId)) {
+            Order o = byId.get(id);
+            if (o != null) res.add(o);
+        }
+        return res;
+    }
+
+    synchronized void clear() {
+        byId.clear();
+        byUser.clear();
+    }
+}
@@ -0,0 +1,192 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.Page;
+import com.marketplace.dao.ProductChange;
+import com.marketplace.dao.ProductChangeListener;
+import com.marketplace.dao.ProductKeyset;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.ProductSort;
+import com.marketplace.dao.ProductVisitor;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 内存商品仓储：主表按 id 存放，按商家与状态建二级索引。
+ * 存取都复制对象，调用方修改返回值不会影响已存数据。
+ * 保存、删除与清空会同步通知变更订阅者，并按与 SQLite 触发器相同的规则记入变更日志（环形数组，只保留最近的一部分）。
+ */
+public class InMemoryProductRepository implements ProductRepository {
+    private final ConcurrentHashMap<String, Product> byId = new ConcurrentHashMap<>();
+    private final Indexes<String> byMerchant = new Indexes<>();
+    private final Indexes<Enums.ProductStatus> byStatus = new Indexes<>();
+    private final List<ProductChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // 变更日志：序号连续，序号 s 存放在 changes[s % changes.length]，由 changes 自身加锁
+    private final ProductChange[] changes = new ProductChange[Integer.getInteger("marketplace.changeLog.capacity", 100_000)];
+    private long lastSequence;
+
+    public void save(Product p) {
+        Product copy = p.copy();
+        synchronized (this) {
+            put(copy);
+        }
+        for (ProductChangeListener l : listeners) l.saved(copy.copy());
+    }
+
+    public void saveAll(List<Product> products) {
+        List<Product> saved = new ArrayList<>(products.size());
+        synchronized (this) {
+            for (Product p : products) {
+                Product copy = p.copy();
+                put(copy);
+                saved.add(copy.copy());
+            }
+        }
+        if (saved.isEmpty()) return;
+        for (ProductChangeListener l : listeners) l.savedAll(saved);
+    }
+
+    private void put(Product copy) {
+        Product existing = byId.get(copy.getProductId());
+        // 与 SQLite 一致：上架时间只在首次保存时确定
+        if (existing != null) copy.setCreatedAt(existing.getCreatedAt());
+        else if (copy.getCreatedAt() <= 0) copy.setCreatedAt(System.currentTimeMillis());
+        Product old = byId.put(copy.getProductId(), copy);
+        if (old != null) unindex(old);
+        byMerchant.add(copy.getMerchantId(), copy.getProductId());
+        byStatus.add(copy.getStatus(), copy.getProductId());
+        if (old == null || contentChanged(old, copy)) logChange(copy.getProductId(), ProductChange.Kind.SAVED);
+        else if (old.getStock() != copy.getStock()) logChange(copy.getProductId(), ProductChange.Kind.STOCK);
+    }
+
+    public List<Product> listPublished() {
+        return collect(byStatus.get(Enums.ProductStatus.PUBLISHED));
+    }
+
+    public boolean reduceStock(String productId, int qty) {
+        boolean[] changed = {false};
+        byId.computeIfPresent(productId, (id, p) -> {
+            if (p.getStock() < qty) return p;
+            Product updated = p.copy();
+            updated.setStock(p.getStock() - qty);
+            changed[0] = true;
+            return updated;
+        });
+        if (!changed[0]) return false;
+        logChange(productId, ProductChange.Kind.STOCK);
+        for (ProductChangeListener l : listeners) l.stockChanged(productId);
+        return true;
+    }
+
+    public void deleteProduct(String productId) {
+        synchronized (this) {
+            Product old = byId.remove(productId);
+            if (old != null) {
+                unindex(old);
+                logChange(productId, ProductChange.Kind.DELETED);
+            }
+        }
+        for (ProductChangeListener l : listeners) l.deleted(productId);
+    }
+
+    public Product findById(String id) {
+        Product p = id == null ? null : byId.get(id);
+        return p == null ? null : p.copy();
+    }
+
+    public List<Product> findByIds(Collection<String> ids) {
+        List<Product> res = new ArrayList<>();
+        for (String id : new HashSet<>(ids)) {
+            Product p = findById(id);
+            if (p != null) res.add(p);
+        }
+        return res;
+    }
+
+    public void forEach(ProductVisitor visitor) throws SQLException {
+        for (Product p : byId.values()) visitor.visit(p.copy());
+    }
+
+    public List<Product> listByMerchant(String merchantId) {
+        return collect(byMerchant.get(merchantId));
+    }
+
+    public Page<Product> listPublishedPage(ProductSort sort, String cursor, int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize must be >= 1");
+        return ProductKeyset.page(listPublished(), sort, cursor, pageSize);
+    }
+
+    public Page<Product> listByMerchantPage(String merchantId, ProductSort sort, String cursor, int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize must be >= 1");
+        return ProductKeyset.page(listByMerchant(merchantId), sort, cursor, pageSize);
+    }
+
+    public void addChangeListener(ProductChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ProductChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public List<ProductChange> readChanges(long afterSequence, int max) {
+        List<ProductChange> res = new ArrayList<>();
+        synchronized (changes) {
+            long from = Math.max(afterSequence + 1, Math.max(1, lastSequence - changes.length + 1));
+            for (long s = from; s <= lastSequence && res.size() < max; s++) res.add(changes[(int) (s % changes.length)]);
+        }
+        return res;
+    }
+
+    public long latestChangeSequence() {
+        synchronized (changes) {
+            return lastSequence;
+        }
+    }
+
+    void clear() {
+        synchronized (this) {
+            for (String id : byId.keySet()) logChange(id, ProductChange.Kind.DELETED);
+            byId.clear();
+            byMerchant.clear();
+            byStatus.clear();
+        }
+        for (ProductChangeListener l : listeners) l.reset();
+    }
+
+    private void logChange(String productId, ProductChange.Kind kind) {
+        synchronized (changes) {
+            long seq = ++lastSequence;
+            changes[(int) (seq % changes.length)] = new ProductChange(seq, productId, kind, System.currentTimeMillis());
+        }
+    }
+
+    // 与迁移 7 的触发器一致：库存与上架时间以外的字段
+    private static boolean contentChanged(Product a, Product b) {
+        return !Objects.equals(a.getTitle(), b.getTitle()) || !Objects.equals(a.getDescription(), b.getDescription())
+                || a.getPrice() != b.getPrice() || a.getStatus() != b.getStatus()
+                || !Objects.equals(a.getMerchantId(), b.getMerchantId()) || !Objects.equals(a.getMerchantPhone(), b.getMerchantPhone());
+    }
+
+    private List<Product> collect(Iterable<String> ids) {
+        List<Product> res = new ArrayList<>();
+        for (String id : ids) {
+            Product p = byId.get(id);
+            if (p != null) res.add(p.copy());
+        }
+        return res;
+    }
+
+    private void unindex(Product p) {
+        byMerchant.remove(p.getMerchantId(), p.getProductId());
+        byStatus.remove(p.getStatus(), p.getProductId());
+    }
+}
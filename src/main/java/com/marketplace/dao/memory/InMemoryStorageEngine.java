@@ -0,0 +1,61 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.SampleData;
+import com.marketplace.dao.StorageEngine;
+
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 纯内存存储引擎：数据保存在并发 Map 中，常用查询条件建有二级索引，进程退出即丢失。
+ * 用于压测以及缓存层前置部署。
+ * 事务语义：{@link #inTransaction} 之间互斥串行执行（可重入），单个仓储操作本身是原子的，但不支持回滚。
+ */
+public class InMemoryStorageEngine implements StorageEngine {
+    private final InMemoryProductRepository products = new InMemoryProductRepository();
+    private final InMemoryOrderRepository orders = new InMemoryOrderRepository();
+    private final InMemoryUserRepository users = new InMemoryUserRepository();
+    private final InMemoryMerchantRepository merchants = new InMemoryMerchantRepository();
+    private final InMemoryCouponRepository coupons = new InMemoryCouponRepository();
+    private final InMemoryMessageRepository messages = new InMemoryMessageRepository();
+    private final InMemoryComplaintRepository complaints = new InMemoryComplaintRepository();
+    private final InMemoryBanRepository bans = new InMemoryBanRepository(products);
+    private final ReentrantLock txLock = new ReentrantLock();
+
+    public String name() { return "memory"; }
+    public InMemoryProductRepository products() { return products; }
+    public InMemoryOrderRepository orders() { return orders; }
+    public InMemoryUserRepository users() { return users; }
+    public InMemoryMerchantRepository merchants() { return merchants; }
+    public InMemoryCouponRepository coupons() { return coupons; }
+    public InMemoryMessageRepository messages() { return messages; }
+    public InMemoryComplaintRepository complaints() { return complaints; }
+    public InMemoryBanRepository bans() { return bans; }
+
+    public <T> T inTransaction(Work<T> work) throws SQLException {
+        txLock.lock();
+        try {
+            return work.run();
+        } finally {
+            txLock.unlock();
+        }
+    }
+
+    public void clearAllData() {
+        products.clear();
+        orders.clear();
+        users.clear();
+        merchants.clear();
+        coupons.clear();
+        messages.clear();
+        complaints.clear();
+        bans.clear();
+    }
+
+    /**
+     * 与 SQLite 引擎相同的示例数据：7 个商家、13 个商品
+     */
+    public void seedSampleData() throws SQLException {
+        SampleData.seed(this);
+    }
+}
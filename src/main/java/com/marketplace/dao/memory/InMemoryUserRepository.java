@@ -0,0 +1,100 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.dao.UserRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存用户仓储：主表按手机号存放，按用户 id 建二级索引
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private record Row(String id, String username, String phone, String password, Enums.VIPLevel vip, double totalSpent) {
+        Row withPassword(String p) { return new Row(id, username, phone, p, vip, totalSpent); }
+        Row withSpent(Enums.VIPLevel v, double t) { return new Row(id, username, phone, password, v, t); }
+    }
+
+    private final ConcurrentHashMap<String, Row> byPhone = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> phoneById = new ConcurrentHashMap<>();
+
+    public void save(User u) {
+        insert(u, "");
+    }
+
+    public boolean register(User u, String password) {
+        return insert(u, password);
+    }
+
+    private synchronized boolean insert(User u, String password) {
+        if (phoneById.containsKey(u.getUserId()) || byPhone.containsKey(u.getPhone())) return false;
+        byPhone.put(u.getPhone(), new Row(u.getUserId(), u.getUsername(), u.getPhone(), password, Enums.VIPLevel.NORMAL, 0.0));
+        phoneById.put(u.getUserId(), u.getPhone());
+        return true;
+    }
+
+    public User findByPhone(String phone) {
+        Row r = phone == null ? null : byPhone.get(phone);
+        return r == null ? null : new User(r.username(), r.phone(), r.password());
+    }
+
+    public String getPasswordByPhone(String phone) {
+        Row r = phone == null ? null : byPhone.get(phone);
+        return r == null ? null : r.password();
+    }
+
+    public void addSpentAndMaybeUpgrade(String phone, double amount) {
+        byPhone.computeIfPresent(phone, (k, r) -> {
+            double total = r.totalSpent() + amount;
+            // 与 SQLite 实现相同的阈值：>=30000 -> GOLD；>=10000 -> SILVER；>=3000 -> BRONZE
+            Enums.VIPLevel vip = Enums.VIPLevel.NORMAL;
+            if (total >= 30000) vip = Enums.VIPLevel.GOLD;
+            else if (total >= 10000) vip = Enums.VIPLevel.SILVER;
+            else if (total >= 3000) vip = Enums.VIPLevel.BRONZE;
+            return r.withSpent(vip, total);
+        });
+    }
+
+    public Map<String, Object> getVipAndTotalByPhone(String phone) {
+        Row r = phone == null ? null : byPhone.get(phone);
+        return r == null ? null : Map.of("vip", r.vip().name(), "total_spent", r.totalSpent());
+    }
+
+    public void updatePasswordByPhone(String phone, String hashed) {
+        byPhone.computeIfPresent(phone, (k, r) -> r.withPassword(hashed));
+    }
+
+    public String findPhoneByUserId(String userId) {
+        return userId == null ? null : phoneById.get(userId);
+    }
+
+    public String findAnyPhone() {
+        for (String phone : byPhone.keySet()) return phone;
+        return null;
+    }
+
+    public List<String> listPhonesSorted() {
+        List<String> res = new ArrayList<>(byPhone.keySet());
+        res.sort(Comparator.comparing(InMemoryUserRepository::numericValue).thenComparing(Comparator.naturalOrder()));
+        return res;
+    }
+
+    /** 与 SQLite 的 CAST(phone AS INTEGER) 一致：取前导数字，没有则为 0 */
+    static long numericValue(String s) {
+        long v = 0;
+        for (int i = 0; i < s.length() && Character.isDigit(s.charAt(i)) && v < Long.MAX_VALUE / 10; i++) {
+            v = v * 10 + (s.charAt(i) - '0');
+        }
+        return v;
+    }
+
+    synchronized void clear() {
+        byPhone.clear();
+        phoneById.clear();
+    }
+}
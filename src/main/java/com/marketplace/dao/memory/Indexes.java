@@ -0,0 +1,36 @@
+package com.marketplace.dao.memory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二级索引：键 -> 主键集合（例如 merchant_id -> 商品 id）。
+ * 主表与索引的更新由各仓储在自己的锁内完成，读操作无锁。
+ */
+final class Indexes<K> {
+    private final ConcurrentHashMap<K, Set<String>> index = new ConcurrentHashMap<>();
+
+    void add(K key, String id) {
+        if (key == null) return;
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    void remove(K key, String id) {
+        if (key == null) return;
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    Set<String> get(K key) {
+        if (key == null) return Collections.emptySet();
+        Set<String> ids = index.get(key);
+        return ids == null ? Collections.emptySet() : ids;
+    }
+
+    void clear() {
+        index.clear();
+    }
+}
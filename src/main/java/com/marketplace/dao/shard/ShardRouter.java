@@ -0,0 +1,27 @@
+package com.marketplace.dao.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * 按 merchant_id 的稳定哈希选择分片：同一商家总是落在同一个分片，与进程、JVM 版本无关。
+ */
+public final class ShardRouter {
+    private final int shardCount;
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("shardCount must be >= 1");
+        this.shardCount = shardCount;
+    }
+
+    public int shardFor(String merchantId) {
+        if (merchantId == null) return 0;
+        CRC32 crc = new CRC32();
+        crc.update(merchantId.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
@@ -0,0 +1,53 @@
+package com.marketplace.dao.shard;
+
+import com.marketplace.dao.CouponDAO;
+import com.marketplace.dao.CouponRepository;
+import com.marketplace.models.Coupon;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 分片优惠券仓储：优惠券按商家分片；用户领取记录与优惠券存放在同一分片，
+ * 因此领取仍是单分片内的原子事务。按用户列出领取记录需要 scatter-gather。
+ */
+public class ShardedCouponRepository implements CouponRepository {
+    private final Shards<CouponDAO> shards;
+
+    ShardedCouponRepository(Shards<CouponDAO> shards) {
+        this.shards = shards;
+    }
+
+    public void save(Coupon c) throws SQLException {
+        int i = shards.indexForMerchant(c.getMerchantId());
+        shards.get(i).save(c);
+        shards.remember(c.getCouponId(), i);
+    }
+
+    public boolean claimCoupon(String couponId, String userPhone) throws SQLException {
+        int i = shards.locate(couponId, dao -> dao.exists(couponId) ? Boolean.TRUE : null);
+        return i >= 0 && shards.get(i).claimCoupon(couponId, userPhone);
+    }
+
+    public List<String> listUserCoupons(String userPhone) throws SQLException {
+        return shards.gather(dao -> dao.listUserCoupons(userPhone));
+    }
+
+    public void markUserCouponUsed(String userCouponId) throws SQLException {
+        int i = locateUserCoupon(userCouponId);
+        if (i >= 0) shards.get(i).markUserCouponUsed(userCouponId);
+    }
+
+    public Double getDiscountByUserCouponId(String userCouponId) throws SQLException {
+        int i = locateUserCoupon(userCouponId);
+        return i < 0 ? null : shards.get(i).getDiscountByUserCouponId(userCouponId);
+    }
+
+    public List<String> listCouponsByMerchant(String merchantId) throws SQLException {
+        return shards.forMerchant(merchantId).listCouponsByMerchant(merchantId);
+    }
+
+    private int locateUserCoupon(String userCouponId) throws SQLException {
+        return shards.locate(userCouponId, dao -> dao.getDiscountByUserCouponId(userCouponId));
+    }
+}
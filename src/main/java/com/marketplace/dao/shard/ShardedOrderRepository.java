@@ -0,0 +1,27 @@
+package com.marketplace.dao.shard;
+
+import com.marketplace.dao.OrderDAO;
+import com.marketplace.dao.OrderRepository;
+import com.marketplace.models.Order;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 分片订单仓储：订单按商家分片写入；按用户查询需要 scatter-gather。
+ */
+public class ShardedOrderRepository implements OrderRepository {
+    private final Shards<OrderDAO> shards;
+
+    ShardedOrderRepository(Shards<OrderDAO> shards) {
+        this.shards = shards;
+    }
+
+    public void save(Order o) throws SQLException {
+        shards.forMerchant(o.getMerchantId()).save(o);
+    }
+
+    public List<Order> findByUser(String userId) throws SQLException {
+        return shards.gather(dao -> dao.findByUser(userId));
+    }
+}
@@ -0,0 +1,199 @@
+package com.marketplace.dao.shard;
+
+import com.marketplace.dao.Page;
+import com.marketplace.dao.ProductChangeListener;
+import com.marketplace.dao.ProductDAO;
+import com.marketplace.dao.ProductKeyset;
+import com.marketplace.dao.ProductSort;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.ProductVisitor;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * 分片商品仓储：商品存放在其商家所在的分片；跨分片查询（已发布列表、搜索）并行 scatter-gather。
+ */
+public class ShardedProductRepository implements ProductRepository {
+    private final Shards<ProductDAO> shards;
+
+    ShardedProductRepository(Shards<ProductDAO> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * 写入商家所在分片；商品换了商家且新商家在另一个分片时，先删除旧分片上的副本再写入，
+     * 订阅者按先删除、后保存的顺序收到事件。写入失败时把旧副本放回原分片
+     */
+    public void save(Product p) throws SQLException {
+        int i = shards.indexForMerchant(p.getMerchantId());
+        int old = locate(p.getProductId());
+        Map<Integer, List<Product>> moved = new TreeMap<>();
+        if (old >= 0 && old != i) {
+            Product previous = shards.get(old).findById(p.getProductId());
+            if (previous != null) {
+                shards.get(old).deleteProduct(p.getProductId());
+                moved.put(old, List.of(previous));
+            }
+        }
+        try {
+            shards.get(i).save(p);
+        } catch (SQLException e) {
+            restore(moved, e);
+            throw e;
+        }
+        shards.remember(p.getProductId(), i);
+    }
+
+    /**
+     * 按商家所在分片分组，每个分片一个事务；跨分片不保证原子性，某个分片失败时此前的分片已经提交。
+     * 换了分片的商品同 {@link #save}：先一次批量查出各分片上已有的副本，删除旧副本后再写入
+     */
+    public void saveAll(List<Product> products) throws SQLException {
+        Map<String, Integer> target = new HashMap<>();
+        Map<Integer, List<Product>> byShard = new TreeMap<>();
+        for (Product p : products) {
+            int i = shards.indexForMerchant(p.getMerchantId());
+            target.put(p.getProductId(), i);
+            byShard.computeIfAbsent(i, k -> new ArrayList<>()).add(p);
+        }
+        Map<Integer, List<Product>> moved = removeMoved(target);
+        try {
+            for (Map.Entry<Integer, List<Product>> e : byShard.entrySet()) {
+                shards.get(e.getKey()).saveAll(e.getValue());
+                for (Product p : e.getValue()) shards.remember(p.getProductId(), e.getKey());
+            }
+        } catch (SQLException e) {
+            restore(moved, e);
+            throw e;
+        }
+    }
+
+    // 删除不在目标分片上的旧副本，按原分片返回
+    private Map<Integer, List<Product>> removeMoved(Map<String, Integer> target) throws SQLException {
+        Map<Integer, List<Product>> moved = new TreeMap<>();
+        if (target.isEmpty() || shards.all().size() == 1) return moved;
+        List<List<Product>> found = shards.scatter(dao -> dao.findByIds(target.keySet()));
+        for (int s = 0; s < found.size(); s++) {
+            for (Product existing : found.get(s)) {
+                if (target.get(existing.getProductId()) != s) moved.computeIfAbsent(s, k -> new ArrayList<>()).add(existing);
+            }
+        }
+        for (Map.Entry<Integer, List<Product>> e : moved.entrySet()) {
+            for (Product existing : e.getValue()) shards.get(e.getKey()).deleteProduct(existing.getProductId());
+        }
+        return moved;
+    }
+
+    // 新分片写入失败时把旧副本放回原分片，尽量不丢商品
+    private void restore(Map<Integer, List<Product>> moved, SQLException cause) {
+        for (Map.Entry<Integer, List<Product>> e : moved.entrySet()) {
+            try {
+                shards.get(e.getKey()).saveAll(e.getValue());
+            } catch (SQLException ex) {
+                cause.addSuppressed(ex);
+            }
+        }
+    }
+
+    public List<Product> listPublished() throws SQLException {
+        return shards.gather(ProductDAO::listPublished);
+    }
+
+    public boolean reduceStock(String productId, int qty) throws SQLException {
+        int i = locate(productId);
+        return i >= 0 && shards.get(i).reduceStock(productId, qty);
+    }
+
+    public void deleteProduct(String productId) throws SQLException {
+        int i = locate(productId);
+        if (i >= 0) shards.get(i).deleteProduct(productId);
+        shards.forget(productId);
+    }
+
+    /**
+     * 各分片各取游标之后的一页再归并：游标由全局可比的 (排序键, id) 构成，归并后的前 pageSize 条即全局的下一页
+     */
+    public Page<Product> listPublishedPage(ProductSort sort, String cursor, int pageSize) throws SQLException {
+        List<Page<Product>> pages = shards.gather(dao -> List.of(dao.listPublishedPage(sort, cursor, pageSize)));
+        List<Product> merged = new ArrayList<>();
+        boolean more = false;
+        for (Page<Product> p : pages) {
+            merged.addAll(p.items());
+            more |= p.hasNext();
+        }
+        merged.sort(ProductKeyset.comparator(sort));
+        if (merged.size() <= pageSize && !more) return new Page<>(merged, null);
+        List<Product> items = new ArrayList<>(merged.subList(0, Math.min(pageSize, merged.size())));
+        return new Page<>(items, ProductKeyset.cursorOf(sort, items.get(items.size() - 1)));
+    }
+
+    public Page<Product> listByMerchantPage(String merchantId, ProductSort sort, String cursor, int pageSize) throws SQLException {
+        return shards.forMerchant(merchantId).listByMerchantPage(merchantId, sort, cursor, pageSize);
+    }
+
+    public Product findById(String id) throws SQLException {
+        int i = locate(id);
+        return i < 0 ? null : shards.get(i).findById(id);
+    }
+
+    /**
+     * 商品位置未必已知，各分片并行各查一次
+     */
+    public List<Product> findByIds(Collection<String> ids) throws SQLException {
+        if (ids.isEmpty()) return new ArrayList<>();
+        return shards.gather(dao -> dao.findByIds(ids));
+    }
+
+    public List<Product> listByMerchant(String merchantId) throws SQLException {
+        return shards.forMerchant(merchantId).listByMerchant(merchantId);
+    }
+
+    /**
+     * 依次遍历各分片（不并行，同一时刻只占用一个分片的读连接）
+     */
+    public void forEach(ProductVisitor visitor) throws SQLException {
+        for (ProductDAO dao : shards.all()) dao.forEach(visitor);
+    }
+
+    /**
+     * 各分片分别取得分最好的前 limit 条，再按得分多路归并取全局前 limit 条。
+     * bm25 的词频统计按分片各自计算，分片间数据分布相近时得分大致可比。
+     */
+    public List<Product> searchFullText(List<List<String>> groups, int limit) throws SQLException {
+        List<List<ProductDAO.Hit>> parts = shards.scatter(dao -> dao.searchFullTextScored(groups, limit));
+        // 队列中每项为 {分片, 该分片下一条的位置}，按该条得分排序
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingDouble((int[] h) -> parts.get(h[0]).get(h[1]).score()));
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) heads.add(new int[]{i, 0});
+        }
+        List<Product> res = new ArrayList<>();
+        while (res.size() < limit && !heads.isEmpty()) {
+            int[] h = heads.poll();
+            List<ProductDAO.Hit> part = parts.get(h[0]);
+            res.add(part.get(h[1]).product());
+            if (++h[1] < part.size()) heads.add(h);
+        }
+        return res;
+    }
+
+    public void addChangeListener(ProductChangeListener listener) throws SQLException {
+        for (ProductDAO dao : shards.all()) dao.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(ProductChangeListener listener) throws SQLException {
+        for (ProductDAO dao : shards.all()) dao.removeChangeListener(listener);
+    }
+
+    private int locate(String productId) throws SQLException {
+        return shards.locate(productId, dao -> dao.findById(productId));
+    }
+}
@@ -0,0 +1,133 @@
+package com.marketplace.dao.shard;
+
+import com.marketplace.dao.BanDAO;
+import com.marketplace.dao.BanRepository;
+import com.marketplace.dao.CachingProductRepository;
+import com.marketplace.dao.ComplaintDAO;
+import com.marketplace.dao.ComplaintRepository;
+import com.marketplace.dao.CouponDAO;
+import com.marketplace.dao.CouponRepository;
+import com.marketplace.dao.MerchantDAO;
+import com.marketplace.dao.MerchantRepository;
+import com.marketplace.dao.MessageDAO;
+import com.marketplace.dao.MessageRepository;
+import com.marketplace.dao.OrderDAO;
+import com.marketplace.dao.OrderRepository;
+import com.marketplace.dao.ProductDAO;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.SampleData;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.UserDAO;
+import com.marketplace.dao.UserRepository;
+import com.marketplace.db.DBUtil;
+import com.marketplace.db.Database;
+import com.marketplace.db.PoolConfig;
+import com.marketplace.db.SchemaMigrator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 按商家分片的 SQLite 存储引擎。
+ * - 商品、优惠券（含领取记录）、订单按 merchant_id 的稳定哈希写入 N 个分片库之一，
+ *   不同商家的写入由各分片自己的写线程并行执行
+ * - 用户、商家、消息、投诉、黑名单等全局数据仍在默认库 marketplace.db
+ * - 跨分片查询在各分片上并行执行后合并
+ * 事务：{@link #inTransaction} 只对默认库提供原子性，分片上的写入各自独立提交。
+ * 通过 -Dmarketplace.storage=sharded 启用，分片数与目录由 marketplace.shards / marketplace.shards.dir 指定。
+ */
+public final class ShardedStorageEngine implements StorageEngine, AutoCloseable {
+    private final List<Database> databases;
+    private final ExecutorService scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Shards<ProductDAO> productShards;
+    private final Shards<OrderDAO> orderShards;
+    private final Shards<CouponDAO> couponShards;
+    private final ProductRepository products;
+    private final OrderRepository orders;
+    private final CouponRepository coupons;
+    private final UserRepository users = new UserDAO();
+    private final MerchantRepository merchants = new MerchantDAO();
+    private final MessageRepository messages = new MessageDAO();
+    private final ComplaintRepository complaints = new ComplaintDAO();
+    private final BanRepository bans = new BanDAO();
+
+    /**
+     * 按系统属性创建：分片数默认 4，分片库默认放在当前目录
+     */
+    public static ShardedStorageEngine fromSystemProperties() throws SQLException {
+        int n = Integer.getInteger("marketplace.shards", 4);
+        Path dir = Paths.get(System.getProperty("marketplace.shards.dir", "."));
+        ShardedStorageEngine engine = new ShardedStorageEngine(dir, n, PoolConfig.fromSystemProperties());
+        Runtime.getRuntime().addShutdownHook(new Thread(engine::close, "shard-shutdown"));
+        return engine;
+    }
+
+    /**
+     * 在 dir 下打开（必要时创建并迁移）marketplace-shard-0.db ... marketplace-shard-(n-1).db
+     */
+    public ShardedStorageEngine(Path dir, int shardCount, PoolConfig config) throws SQLException {
+        ShardRouter router = new ShardRouter(shardCount);
+        this.databases = new ArrayList<>(shardCount);
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                Database db = new Database("jdbc:sqlite:" + dir.resolve("marketplace-shard-" + i + ".db"), config);
+                databases.add(db);
+                db.write(conn -> {
+                    new SchemaMigrator().migrate(conn);
+                    return null;
+                });
+            }
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        this.productShards = new Shards<>(Shards.build(shardCount, i -> new ProductDAO(databases.get(i))), router, scatterExecutor);
+        this.orderShards = new Shards<>(Shards.build(shardCount, i -> new OrderDAO(databases.get(i))), router, scatterExecutor);
+        this.couponShards = new Shards<>(Shards.build(shardCount, i -> new CouponDAO(databases.get(i))), router, scatterExecutor);
+        this.products = new CachingProductRepository(new ShardedProductRepository(productShards));
+        this.orders = new ShardedOrderRepository(orderShards);
+        this.coupons = new ShardedCouponRepository(couponShards);
+    }
+
+    public String name() { return "sharded"; }
+    public ProductRepository products() { return products; }
+    public OrderRepository orders() { return orders; }
+    public UserRepository users() { return users; }
+    public MerchantRepository merchants() { return merchants; }
+    public CouponRepository coupons() { return coupons; }
+    public MessageRepository messages() { return messages; }
+    public ComplaintRepository complaints() { return complaints; }
+    public BanRepository bans() { return bans; }
+
+    /** 分片数据库（只读访问，用于监控或测试） */
+    public List<Database> getShardDatabases() {
+        return List.copyOf(databases);
+    }
+
+    public <T> T inTransaction(Work<T> work) throws SQLException {
+        return DBUtil.inTransaction(conn -> work.run());
+    }
+
+    public void clearAllData() throws SQLException {
+        DBUtil.clearAllData();
+        for (Database db : databases) DBUtil.clearAllData(db);
+        productShards.forgetAll();
+        orderShards.forgetAll();
+        couponShards.forgetAll();
+    }
+
+    public void seedSampleData() throws SQLException {
+        SampleData.seed(this);
+    }
+
+    @Override
+    public void close() {
+        for (Database db : databases) db.close();
+        scatterExecutor.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+package com.marketplace.dao.shard;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntFunction;
+
+/**
+ * 一组同类型的分片仓储（例如每个分片库一个 ProductDAO），提供按商家路由、
+ * 并行 scatter-gather 以及按主键定位分片（带 id -> 分片缓存）。
+ */
+final class Shards<R> {
+
+    @FunctionalInterface
+    interface ShardCall<R, T> {
+        T call(R shard) throws SQLException;
+    }
+
+    private final List<R> shards;
+    private final ShardRouter router;
+    private final ExecutorService executor;
+    // 主键 -> 分片下标；键由写入路径登记，或由一次 scatter 查找回填
+    private final Map<String, Integer> locations = new ConcurrentHashMap<>();
+
+    Shards(List<R> shards, ShardRouter router, ExecutorService executor) {
+        this.shards = List.copyOf(shards);
+        this.router = router;
+        this.executor = executor;
+    }
+
+    /** merchant_id 所在分片 */
+    R forMerchant(String merchantId) {
+        return shards.get(router.shardFor(merchantId));
+    }
+
+    int indexForMerchant(String merchantId) {
+        return router.shardFor(merchantId);
+    }
+
+    R get(int index) {
+        return shards.get(index);
+    }
+
+    List<R> all() {
+        return shards;
+    }
+
+    void remember(String id, int shard) {
+        if (id != null) locations.put(id, shard);
+    }
+
+    void forget(String id) {
+        if (id != null) locations.remove(id);
+    }
+
+    void forgetAll() {
+        locations.clear();
+    }
+
+    /**
+     * 定位主键所在的分片：先查缓存，未命中时并行询问所有分片，found 返回非 null 的分片即为所在分片。
+     * @return 分片下标，不存在返回 -1
+     */
+    <T> int locate(String id, ShardCall<R, T> found) throws SQLException {
+        if (id == null) return -1;
+        Integer cached = locations.get(id);
+        if (cached != null) return cached;
+        List<T> hits = scatter(found);
+        for (int i = 0; i < hits.size(); i++) {
+            if (hits.get(i) != null) {
+                locations.put(id, i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在每个分片上并行执行 call，按分片顺序返回各自结果
+     */
+    <T> List<T> scatter(ShardCall<R, T> call) throws SQLException {
+        if (shards.size() == 1) return java.util.Collections.singletonList(call.call(shards.get(0)));
+        List<CompletableFuture<T>> fs = new ArrayList<>(shards.size());
+        for (R shard : shards) {
+            fs.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.call(shard);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        List<T> res = new ArrayList<>(shards.size());
+        for (CompletableFuture<T> f : fs) {
+            try {
+                res.add(f.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+                throw e;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * scatter 后把各分片返回的列表按分片顺序拼接
+     */
+    <T> List<T> gather(ShardCall<R, ? extends Collection<T>> call) throws SQLException {
+        List<T> all = new ArrayList<>();
+        for (Collection<T> part : scatter(call)) all.addAll(part);
+        return all;
+    }
+
+    static <R> List<R> build(int count, IntFunction<R> factory) {
+        List<R> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) res.add(factory.apply(i));
+        return res;
+    }
+}
@@ -0,0 +1,140 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界 SQLite 连接池：复用物理连接，避免每次 DAO 调用都重新打开数据库文件。
+ * - 同时借出的连接数不超过 maxSize，超出时等待直到超时
+ * - 启动时预建 minSize 个连接
+ * - 借出时可选校验连接是否可用，失效连接直接丢弃并重建
+ * - PRAGMA 只在物理连接建立时执行一次
+ * - 每个物理连接带一个预编译语句缓存（见 {@link StatementCache}），大小为 0 时关闭
+ * - 经连接执行的语句按 SQL 记录耗时与行数（见 {@link SqlMetrics}）
+ */
+public final class ConnectionPool implements AutoCloseable {
+    private final String url;
+    private final PoolConfig config;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger physicalCount = new AtomicInteger();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final SqlMetrics metrics;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, PoolConfig config) throws SQLException {
+        this(url, config, SqlMetrics.fromSystemProperties());
+    }
+
+    /**
+     * @param metrics SQL 执行统计，为 null 时不做统计
+     */
+    public ConnectionPool(String url, PoolConfig config, SqlMetrics metrics) throws SQLException {
+        this.url = url;
+        this.config = config;
+        this.metrics = metrics;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        for (int i = 0; i < config.getMinSize(); i++) {
+            idle.offer(openPhysical());
+        }
+    }
+
+    /**
+     * 借出一个连接；调用方使用完毕后 close() 即归还
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + config.getBorrowTimeoutMillis() + "ms waiting for a pooled connection (max " + config.getMaxSize() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (!config.isValidateOnBorrow() || pc.isValid(config.getValidationTimeoutSeconds())) {
+                    return pc.newHandle();
+                }
+                discard(pc);
+            }
+            return openPhysical().newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 由代理连接在 close() 时调用
+     */
+    void release(PooledConnection pc) {
+        try {
+            if (closed || !pc.reset()) {
+                discard(pc);
+            } else {
+                // 后进先出：最近使用过的连接页缓存更热
+                idle.offerFirst(pc);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledConnection openPhysical() throws SQLException {
+        Connection physical = DriverManager.getConnection(url);
+        StatementCache cache = config.getStatementCacheSize() > 0
+                ? new StatementCache(physical, config.getStatementCacheSize(), statementCacheHits, statementCacheMisses)
+                : null;
+        PooledConnection pc = new PooledConnection(this, physical, cache, metrics);
+        try {
+            pc.applyPragmas(config.getPragmas());
+        } catch (SQLException e) {
+            pc.closePhysical();
+            throw e;
+        }
+        physicalCount.incrementAndGet();
+        return pc;
+    }
+
+    private void discard(PooledConnection pc) {
+        physicalCount.decrementAndGet();
+        pc.closePhysical();
+    }
+
+    /** 当前已建立的物理连接数（含借出与空闲） */
+    public int getPhysicalCount() { return physicalCount.get(); }
+
+    /** 当前空闲连接数 */
+    public int getIdleCount() { return idle.size(); }
+
+    /** 预编译语句缓存命中次数（所有连接合计） */
+    public long getStatementCacheHits() { return statementCacheHits.sum(); }
+
+    /** 预编译语句缓存未命中次数（所有连接合计） */
+    public long getStatementCacheMisses() { return statementCacheMisses.sum(); }
+
+    public PoolConfig getConfig() { return config; }
+
+    /** SQL 执行统计，未启用时为 null */
+    public SqlMetrics getMetrics() { return metrics; }
+
+    /**
+     * 关闭连接池：关闭所有空闲连接，借出中的连接在归还时关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) discard(pc);
+    }
+}
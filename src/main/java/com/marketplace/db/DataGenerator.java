@@ -0,0 +1,231 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * 大规模测试数据生成器：按给定规模生成商家、用户、商品、优惠券、订单与消息。
+ * - 同一随机种子生成完全相同的数据，便于复现性能问题
+ * - 商品热度（订单落在哪个商品上）与用户发消息频率服从 Zipf 分布，模拟热门商品与话痨用户
+ * - 使用 JDBC 批量插入，每 chunkSize 行一个事务；每个事务单独提交给写线程，生成期间其它写入仍可穿插执行
+ * - 所有主键带 "gen-" 前缀并使用 INSERT OR IGNORE，重复运行不会报错
+ * 可在管理员菜单中调用，也可单独运行：java com.marketplace.db.DataGenerator [scale] [seed]
+ */
+public class DataGenerator {
+
+    /**
+     * 生成规模与分布参数
+     * @param productSkew 订单在商品上的 Zipf 指数（0 为均匀）
+     * @param talkerSkew  消息发送者在用户上的 Zipf 指数
+     * @param batchSize   每次 executeBatch 的行数
+     * @param chunkSize   每个事务的行数
+     */
+    public record Config(long seed, int merchants, int users, int products, int coupons, int orders, int messages,
+                         double productSkew, double talkerSkew, int batchSize, int chunkSize) {
+        public Config {
+            if (merchants < 1 || users < 1 || products < 1) throw new IllegalArgumentException("merchants, users and products must be >= 1");
+            if (coupons < 0 || orders < 0 || messages < 0) throw new IllegalArgumentException("counts must be >= 0");
+            if (batchSize < 1 || chunkSize < batchSize) throw new IllegalArgumentException("require 1 <= batchSize <= chunkSize");
+        }
+
+        /**
+         * 按倍数放大的默认规模：scale=1 时 1 千商家、10 万用户、20 万商品、1 万优惠券、50 万订单、100 万消息
+         */
+        public static Config scaled(double scale, long seed) {
+            return new Config(seed,
+                    atLeastOne(1_000 * scale), atLeastOne(100_000 * scale), atLeastOne(200_000 * scale),
+                    (int) (10_000 * scale), (int) (500_000 * scale), (int) (1_000_000 * scale),
+                    1.1, 1.2, 1_000, 50_000);
+        }
+
+        private static int atLeastOne(double v) {
+            return (int) Math.max(1, Math.min(Integer.MAX_VALUE, v));
+        }
+    }
+
+    /** 各表实际写入的行数与耗时 */
+    public record Report(long merchants, long users, long products, long coupons, long orders, long messages, long elapsedMillis) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "merchants=%d users=%d products=%d coupons=%d orders=%d messages=%d in %d ms",
+                    merchants, users, products, coupons, orders, messages, elapsedMillis);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, int i) throws SQLException;
+    }
+
+    private static final String[] NOUNS = {"手机", "耳机", "笔记本", "键盘", "鼠标", "显示器", "移动电源", "相机", "手表", "背包", "运动鞋", "书籍", "耳塞", "台灯", "水杯"};
+    private static final String[] ADJECTIVES = {"轻薄", "无线", "高清", "便携", "降噪", "机械", "智能", "专业", "入门级", "大容量"};
+    private static final long EPOCH_MILLIS = 1_700_000_000_000L;
+
+    private final Database db;
+    private final Config config;
+
+    public DataGenerator(Database db, Config config) {
+        this.db = db;
+        this.config = config;
+    }
+
+    public Report generate() throws SQLException {
+        long start = System.currentTimeMillis();
+        Config c = config;
+        // 各阶段使用从主种子派生的独立随机流，改变某一类数量不会影响其它表的数据
+        SplittableRandom root = new SplittableRandom(c.seed());
+        SplittableRandom productRnd = root.split();
+        SplittableRandom couponRnd = root.split();
+        SplittableRandom orderRnd = root.split();
+        SplittableRandom messageRnd = root.split();
+
+        long merchants = insert("INSERT OR IGNORE INTO merchants (id, shop_name, phone, password, contact_info, employee_count, identity) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                c.merchants(), (ps, i) -> {
+                    ps.setString(1, merchantId(i));
+                    ps.setString(2, "生成商家" + i);
+                    ps.setString(3, merchantPhone(i));
+                    ps.setString(4, "pwd");
+                    ps.setString(5, "联系" + i);
+                    ps.setInt(6, 1 + i % 20);
+                    ps.setString(7, "BOSS");
+                });
+
+        long users = insert("INSERT OR IGNORE INTO users (id, username, phone, password, vip, login_count, total_spent) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                c.users(), (ps, i) -> {
+                    ps.setString(1, userId(i));
+                    ps.setString(2, "user" + i);
+                    ps.setString(3, userPhone(i));
+                    ps.setString(4, "pwd");
+                    ps.setString(5, "NORMAL");
+                    ps.setInt(6, 0);
+                    ps.setDouble(7, 0.0);
+                });
+
+        // 商品的商家与价格在后续生成订单时还要用到，先在内存中算好
+        int[] productMerchant = new int[c.products()];
+        double[] productPrice = new double[c.products()];
+        ZipfSampler merchantSize = new ZipfSampler(c.merchants(), 0.8);
+        for (int i = 0; i < c.products(); i++) {
+            productMerchant[i] = merchantSize.next(productRnd);
+            productPrice[i] = Math.round((9.9 + productRnd.nextDouble() * productRnd.nextDouble() * 9990) * 100) / 100.0;
+        }
+        SplittableRandom titleRnd = productRnd.split();
+        long products = insert("INSERT OR IGNORE INTO products (id, title, description, price, stock, status, merchant_id, merchant_phone) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                c.products(), (ps, i) -> {
+                    String noun = NOUNS[titleRnd.nextInt(NOUNS.length)];
+                    String adj = ADJECTIVES[titleRnd.nextInt(ADJECTIVES.length)];
+                    ps.setString(1, productId(i));
+                    ps.setString(2, adj + noun + " " + i);
+                    ps.setString(3, "生成的" + adj + noun + "，型号 G" + i);
+                    ps.setDouble(4, productPrice[i]);
+                    ps.setInt(5, titleRnd.nextInt(1, 500));
+                    ps.setString(6, "PUBLISHED");
+                    ps.setString(7, merchantId(productMerchant[i]));
+                    ps.setString(8, merchantPhone(productMerchant[i]));
+                });
+
+        long coupons = insert("INSERT OR IGNORE INTO coupons (id, merchant_id, code, discount, valid_until, total_qty, claimed_qty) VALUES (?, ?, ?, ?, ?, ?, 0)",
+                c.coupons(), (ps, i) -> {
+                    ps.setString(1, "gen-c-" + i);
+                    ps.setString(2, merchantId(couponRnd.nextInt(c.merchants())));
+                    ps.setString(3, "GEN" + i);
+                    ps.setDouble(4, 5 * couponRnd.nextInt(1, 21));
+                    ps.setString(5, "2099-12-31");
+                    ps.setInt(6, couponRnd.nextInt(10, 1000));
+                });
+
+        ZipfSampler hotProducts = new ZipfSampler(c.products(), c.productSkew());
+        long orders = insert("INSERT OR IGNORE INTO orders (id, user_id, merchant_id, total_amount, discount, pay_by_platform, status, create_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                c.orders(), (ps, i) -> {
+                    int p = hotProducts.next(orderRnd);
+                    int qty = orderRnd.nextInt(1, 4);
+                    double total = Math.round(productPrice[p] * qty * 100) / 100.0;
+                    double discount = orderRnd.nextInt(10) == 0 ? Math.min(total, 10.0) : 0.0;
+                    ps.setString(1, "gen-o-" + i);
+                    ps.setString(2, userId(orderRnd.nextInt(c.users())));
+                    ps.setString(3, merchantId(productMerchant[p]));
+                    ps.setDouble(4, total);
+                    ps.setDouble(5, discount);
+                    ps.setDouble(6, 0.0);
+                    ps.setString(7, "PENDING_PAYMENT");
+                    ps.setString(8, Long.toString(EPOCH_MILLIS + i * 1_000L));
+                });
+
+        ZipfSampler talkers = new ZipfSampler(c.users(), c.talkerSkew());
+        long messages = insert("INSERT OR IGNORE INTO messages (id, sender_id, receiver_id, content, timestamp, is_read) VALUES (?, ?, ?, ?, ?, ?)",
+                c.messages(), (ps, i) -> {
+                    ps.setString(1, "gen-msg-" + i);
+                    ps.setString(2, userId(talkers.next(messageRnd)));
+                    ps.setString(3, merchantId(messageRnd.nextInt(c.merchants())));
+                    ps.setString(4, "你好，请问商品 " + productId(hotProducts.next(messageRnd)) + " 还有货吗？");
+                    ps.setString(5, Long.toString(EPOCH_MILLIS + i * 100L));
+                    ps.setInt(6, messageRnd.nextInt(4) == 0 ? 0 : 1);
+                });
+
+        db.fireReset();
+        return new Report(merchants, users, products, coupons, orders, messages, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 按 chunkSize 分段：每段在写线程上开一个事务，按 batchSize 批量执行
+     */
+    private long insert(String sql, int count, RowBinder binder) throws SQLException {
+        long inserted = 0;
+        for (int from = 0; from < count; from += config.chunkSize()) {
+            int start = from;
+            int end = (int) Math.min(count, (long) from + config.chunkSize());
+            inserted += db.write(conn -> insertChunk(conn, sql, start, end, binder));
+        }
+        return inserted;
+    }
+
+    private long insertChunk(Connection conn, String sql, int start, int end, RowBinder binder) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        long n = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = start; i < end; i++) {
+                binder.bind(ps, i);
+                ps.addBatch();
+                if ((i - start + 1) % config.batchSize() == 0) n += sum(ps.executeBatch());
+            }
+            n += sum(ps.executeBatch());
+            conn.commit();
+        } catch (SQLException e) {
+            try { conn.rollback(); } catch (SQLException ignore) {}
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return n;
+    }
+
+    private static long sum(int[] counts) {
+        long n = 0;
+        for (int c : counts) if (c > 0) n += c;
+        return n;
+    }
+
+    static String merchantId(int i) { return "gen-m-" + i; }
+    static String userId(int i) { return "gen-u-" + i; }
+    static String productId(int i) { return "gen-p-" + i; }
+    // 生成的手机号与真实号段错开：用户 12 开头，商家 11 开头
+    static String userPhone(int i) { return String.format(Locale.ROOT, "12%09d", i); }
+    static String merchantPhone(int i) { return String.format(Locale.ROOT, "11%09d", i); }
+
+    /**
+     * 独立运行：参数依次为规模倍数（默认 1）与随机种子（默认 42），写入默认库 marketplace.db
+     */
+    public static void main(String[] args) throws SQLException {
+        double scale = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        Config config = Config.scaled(scale, seed);
+        System.out.println("生成数据: scale=" + scale + " seed=" + seed + " -> " + config);
+        Report report = new DataGenerator(DBUtil.database(), config).generate();
+        System.out.println("完成: " + report);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,173 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个 SQLite 数据库文件的访问入口：单写多读模型。
+ * - 读：从读连接池借出连接，在 WAL 模式下可与写操作并行
+ * - 写：全部交给 {@link WriteDispatcher} 的专用写线程顺序执行
+ * - 高频小插入：可经 {@link GroupCommitter} 攒批后在一个事务中提交
+ */
+public class Database implements AutoCloseable {
+    private final String url;
+    private final ConnectionPool readers;
+    private final WriteDispatcher writer;
+    private final GroupCommitter groupCommitter;
+    private final ExecutorService readExecutor;
+    private final CopyOnWriteArrayList<Runnable> resetListeners = new CopyOnWriteArrayList<>();
+
+    public Database(String url, PoolConfig config) throws SQLException {
+        this.url = url;
+        this.readers = new ConnectionPool(url, config);
+        int queueCapacity = Integer.getInteger("marketplace.db.writeQueueCapacity", 10_000);
+        this.writer = new WriteDispatcher(new ConnectionPool(url, config.withSize(1, 1)), queueCapacity, "db-writer");
+        this.groupCommitter = new GroupCommitter(writer,
+                Integer.getInteger("marketplace.db.groupCommit.maxBatch", 256),
+                Long.getLong("marketplace.db.groupCommit.lingerMillis", 2L),
+                "db-group-commit");
+        AtomicInteger seq = new AtomicInteger();
+        this.readExecutor = Executors.newFixedThreadPool(config.getMaxSize(), r -> {
+            Thread t = new Thread(r, "db-reader-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 借出一个读连接（close() 即归还）。写操作请使用 {@link #write(SqlWork)}。
+     * 若当前线程处于本库的工作单元中，返回事务连接，以便读到本事务内尚未提交的写入。
+     */
+    public Connection getConnection() throws SQLException {
+        UnitOfWork u = UnitOfWork.current(this);
+        if (u != null) return u.getConnection();
+        return readers.borrow();
+    }
+
+    /**
+     * 将写操作提交到写线程，返回异步结果
+     */
+    public <T> CompletableFuture<T> submitWrite(SqlWork<T> work) {
+        UnitOfWork u = UnitOfWork.current(this);
+        if (u != null) return runInline(u, work);
+        return writer.submit(work);
+    }
+
+    /**
+     * 在一个事务中执行 work（工作单元）：work 内通过 DBUtil/DAO 发起的读写都使用同一个连接，
+     * 正常返回时提交，抛出异常时整体回滚。已处于工作单元中时直接加入外层事务。
+     */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        UnitOfWork u = UnitOfWork.current(this);
+        if (u != null) return work.run(u.getConnection());
+        return write(conn -> UnitOfWork.run(this, conn, work));
+    }
+
+    /**
+     * 在读线程池上执行只读操作，返回异步结果
+     */
+    public <T> CompletableFuture<T> submitRead(SqlWork<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection c = readers.borrow()) {
+                return work.run(c);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, readExecutor);
+    }
+
+    /**
+     * 同步执行写操作：提交到写线程并等待完成，异常按 SQLException 抛出
+     */
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        UnitOfWork u = UnitOfWork.current(this);
+        if (u != null) return work.run(u.getConnection());
+        return await(writer.submit(work));
+    }
+
+    /**
+     * 以组提交方式异步执行一条小写入，Future 在所在批次提交后完成
+     */
+    public <T> CompletableFuture<T> submitGrouped(SqlWork<T> work) {
+        UnitOfWork u = UnitOfWork.current(this);
+        if (u != null) return runInline(u, work);
+        return groupCommitter.submit(work);
+    }
+
+    /**
+     * 以组提交方式执行一条小写入并等待所在批次提交（持久化确认）
+     */
+    public <T> T writeGrouped(SqlWork<T> work) throws SQLException {
+        UnitOfWork u = UnitOfWork.current(this);
+        if (u != null) return work.run(u.getConnection());
+        return await(groupCommitter.submit(work));
+    }
+
+    private static <T> CompletableFuture<T> runInline(UnitOfWork u, SqlWork<T> work) {
+        try {
+            return CompletableFuture.completedFuture(work.run(u.getConnection()));
+        } catch (SQLException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 等待 Future 完成并把失败原因还原为 SQLException
+     */
+    public static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for database operation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * 订阅批量变更通知：清库、加载样例数据、批量生成数据等绕过 DAO 的整体写入完成后回调，
+     * 由内存中的派生结构（如搜索索引）据此整体重新加载
+     */
+    public void addResetListener(Runnable listener) {
+        resetListeners.add(listener);
+    }
+
+    public void removeResetListener(Runnable listener) {
+        resetListeners.remove(listener);
+    }
+
+    /**
+     * 发出批量变更通知；在事务中调用时等事务提交后再通知
+     */
+    public void fireReset() {
+        UnitOfWork.runAfterCommit(() -> {
+            for (Runnable r : resetListeners) r.run();
+        });
+    }
+
+    public String getUrl() { return url; }
+    public ConnectionPool getReaderPool() { return readers; }
+    public WriteDispatcher getWriter() { return writer; }
+    public GroupCommitter getGroupCommitter() { return groupCommitter; }
+
+    @Override
+    public void close() {
+        groupCommitter.close();
+        writer.close();
+        readExecutor.shutdown();
+        readers.close();
+    }
+}
@@ -0,0 +1,152 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 组提交：把多个调用方的小写入（如插入一条消息/订单/投诉）在短时间窗口内攒成一批，
+ * 交给写线程在一个事务里执行，一次提交只付出一次 fsync。
+ * - 攒批条件：达到 maxBatch 条，或从第一条入队起经过 lingerMillis 毫秒
+ * - 每条写入使用独立的 savepoint，单条失败只回滚它自己，不影响同批其它写入
+ * - 返回的 Future 在所在批次提交成功后才完成，作为持久化确认
+ */
+public class GroupCommitter implements AutoCloseable {
+
+    private static final class Entry<T> {
+        final SqlWork<T> work;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Throwable error;
+
+        Entry(SqlWork<T> work) {
+            this.work = work;
+        }
+
+        void runIn(Connection conn) throws SQLException {
+            Savepoint sp = conn.setSavepoint();
+            try {
+                result = work.run(conn);
+                conn.releaseSavepoint(sp);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(sp);
+                conn.releaseSavepoint(sp);
+                error = e;
+            }
+        }
+
+        void finish() {
+            if (error != null) future.completeExceptionally(error);
+            else future.complete(result);
+        }
+    }
+
+    private final WriteDispatcher writer;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final BlockingQueue<Entry<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    // 检查 running 与入队在同一把锁内完成，关闭之后不会再有写入漏进队列
+    private final Object lifecycle = new Object();
+    private volatile boolean running = true;
+
+    public GroupCommitter(WriteDispatcher writer, int maxBatch, long lingerMillis, String threadName) {
+        if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be >= 1");
+        this.writer = writer;
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.thread = new Thread(this::loop, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 提交一条写入，返回在所在批次提交后完成的 Future。
+     * 若调用方本身就在写线程上（例如处于写事务中），直接在当前连接上执行，由外层事务负责提交。
+     */
+    public <T> CompletableFuture<T> submit(SqlWork<T> work) {
+        if (writer.isWriterThread()) return writer.submit(work);
+        Entry<T> e = new Entry<>(work);
+        synchronized (lifecycle) {
+            if (!running) return CompletableFuture.failedFuture(new SQLException("Group committer is closed"));
+            queue.add(e);
+        }
+        return e.future;
+    }
+
+    private void loop() {
+        while (running || !queue.isEmpty()) {
+            List<Entry<?>> batch = new ArrayList<>();
+            try {
+                Entry<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Entry<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException ie) {
+                if (batch.isEmpty()) continue;
+            }
+            commit(batch);
+        }
+    }
+
+    private void commit(List<Entry<?>> batch) {
+        CompletableFuture<Void> done = writer.submit(conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (Entry<?> e : batch) e.runIn(conn);
+                conn.commit();
+            } catch (SQLException ex) {
+                try { conn.rollback(); } catch (SQLException ignore) {}
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        try {
+            done.join();
+            for (Entry<?> e : batch) e.finish();
+        } catch (RuntimeException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            for (Entry<?> e : batch) e.future.completeExceptionally(cause);
+        }
+    }
+
+    /** 等待攒批的写入数量 */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 停止接收新写入，已入队的写入会被提交
+     */
+    @Override
+    public void close() {
+        synchronized (lifecycle) {
+            running = false;
+        }
+        thread.interrupt();
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 等待超时仍未提交的写入明确失败，不让调用方一直等
+        for (Entry<?> e = queue.poll(); e != null; e = queue.poll()) {
+            e.future.completeExceptionally(new SQLException("Group committer closed before the write was committed"));
+        }
+    }
+}
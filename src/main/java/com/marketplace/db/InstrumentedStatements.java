@@ -0,0 +1,165 @@
+package com.marketplace.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 为语句和结果集生成计时代理，执行结果记录到 {@link SqlMetrics}：
+ * - PreparedStatement：SQL 在预编译时已知，execute/executeQuery/executeUpdate/executeBatch 记到该 SQL 名下
+ * - Statement：SQL 随 execute(String) 等调用传入，逐次归类；executeBatch 记到 addBatch 的第一条 SQL 名下
+ * - executeQuery 返回的结果集同样被代理，next() 为 true 时累加读取行数并累计 fetch 时间
+ * 启用慢查询记录时，PreparedStatement 还会保留最近一次绑定的参数，超过阈值的执行交给 {@link SlowQueryLog}。
+ */
+final class InstrumentedStatements {
+    private InstrumentedStatements() {}
+
+    static PreparedStatement prepared(PreparedStatement target, String sql, SqlMetrics metrics) {
+        SqlMetrics.Stats stats = metrics.stats(sql);
+        Params params = metrics.getSlowQueryLog() != null ? new Params() : null;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (isExecute(method) && (args == null || args.length == 0)) {
+                        return timed(target, method, args, metrics, stats, sql, params);
+                    }
+                    if (params != null) params.track(method.getName(), args);
+                    return invokeOrUnwrap(proxy, target, method, args);
+                });
+    }
+
+    static Statement plain(Statement target, SqlMetrics metrics) {
+        String[] firstBatchSql = {null};
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (isExecute(method) && args != null && args.length > 0 && args[0] instanceof String sql) {
+                        return timed(target, method, args, metrics, metrics.stats(sql), sql, null);
+                    }
+                    if (name.equals("addBatch") && args != null && args.length == 1 && firstBatchSql[0] == null) {
+                        firstBatchSql[0] = (String) args[0];
+                    } else if (name.equals("clearBatch")) {
+                        firstBatchSql[0] = null;
+                    } else if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                        String sql = firstBatchSql[0];
+                        firstBatchSql[0] = null;
+                        if (sql != null) return timed(target, method, args, metrics, metrics.stats(sql), sql, null);
+                    }
+                    return invokeOrUnwrap(proxy, target, method, args);
+                });
+    }
+
+    private static boolean isExecute(Method m) {
+        return switch (m.getName()) {
+            case "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch" -> true;
+            default -> false;
+        };
+    }
+
+    private static Object timed(Statement target, Method method, Object[] args, SqlMetrics metrics, SqlMetrics.Stats stats,
+                                String sql, Params params) throws Throwable {
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            long elapsed = System.nanoTime() - start;
+            stats.record(elapsed, 0, true);
+            recordIfSlow(target, metrics, sql, params, elapsed, true);
+            throw e.getCause();
+        }
+        long elapsed = System.nanoTime() - start;
+        stats.record(elapsed, affectedRows(result), false);
+        recordIfSlow(target, metrics, sql, params, elapsed, false);
+        if (result instanceof ResultSet rs) return resultSet(rs, stats);
+        return result;
+    }
+
+    private static void recordIfSlow(Statement target, SqlMetrics metrics, String sql, Params params, long elapsed, boolean failed) {
+        SlowQueryLog slow = metrics.getSlowQueryLog();
+        if (slow == null || !slow.isSlow(elapsed)) return;
+        try {
+            // 被代理语句的 getConnection() 返回物理连接，EXPLAIN 不会再次进入统计
+            slow.record(target.getConnection(), sql, params == null ? null : params.values(), elapsed, failed);
+        } catch (Exception e) {
+            // 记录慢查询失败不能影响业务语句本身，只计数
+            slow.recordFailure();
+        }
+    }
+
+    private static long affectedRows(Object result) {
+        if (result instanceof Integer i) return i;
+        if (result instanceof Long l) return l;
+        long n = 0;
+        if (result instanceof int[] counts) for (int c : counts) n += Math.max(c, 0);
+        else if (result instanceof long[] counts) for (long c : counts) n += Math.max(c, 0);
+        return n;
+    }
+
+    private static ResultSet resultSet(ResultSet target, SqlMetrics.Stats stats) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("next")) {
+                        long start = System.nanoTime();
+                        boolean more;
+                        try {
+                            more = target.next();
+                        } finally {
+                            stats.addFetchNanos(System.nanoTime() - start);
+                        }
+                        if (more) stats.addRows(1);
+                        return more;
+                    }
+                    return invokeOrUnwrap(proxy, target, method, args);
+                });
+    }
+
+    private static Object invokeOrUnwrap(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "unwrap":
+                // 调用方需要驱动原生对象时（如 SQLiteConnection 特有接口）直接交出被代理对象
+                if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                break;
+            default:
+                break;
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 最近一次绑定的参数（按序号），只保留简单类型，流和大对象记为类型名
+     */
+    private static final class Params {
+        private Object[] values = new Object[8];
+        private int max;
+
+        void track(String method, Object[] args) {
+            if (method.equals("clearParameters")) {
+                Arrays.fill(values, null);
+                max = 0;
+                return;
+            }
+            if (!method.startsWith("set") || args == null || args.length < 2 || !(args[0] instanceof Integer index) || index < 1) return;
+            if (index > values.length) values = Arrays.copyOf(values, Math.max(index, values.length * 2));
+            Object v = method.equals("setNull") ? null : args[1];
+            if (v != null && !(v instanceof String || v instanceof Number || v instanceof Boolean)) v = "<" + v.getClass().getSimpleName() + ">";
+            values[index - 1] = v;
+            max = Math.max(max, index);
+        }
+
+        Object[] values() {
+            return Arrays.copyOf(values, max);
+        }
+    }
+}
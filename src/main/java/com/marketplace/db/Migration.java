@@ -0,0 +1,34 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 一个版本化的表结构迁移步骤。版本号严格递增，每一步在独立事务中执行并记录到 schema_version 表。
+ */
+public class Migration {
+    /**
+     * 迁移步骤的具体动作
+     */
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+    private final Step step;
+
+    public Migration(int version, String description, Step step) {
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+
+    public int getVersion() { return version; }
+    public String getDescription() { return description; }
+
+    void apply(Connection conn) throws SQLException {
+        step.apply(conn);
+    }
+}
@@ -0,0 +1,83 @@
+package com.marketplace.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 连接池配置：最小/最大连接数、借出等待时间、借出校验、每个物理连接的 PRAGMA 初始化语句以及预编译语句缓存大小。
+ * 默认值可通过系统属性覆盖（例如 -Dmarketplace.db.pool.max=16）。
+ */
+public class PoolConfig {
+    /** 每个连接默认缓存的预编译语句数 */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final boolean validateOnBorrow;
+    private final int validationTimeoutSeconds;
+    private final List<String> pragmas;
+    private final int statementCacheSize;
+
+    public PoolConfig(int minSize, int maxSize, long borrowTimeoutMillis, boolean validateOnBorrow, int validationTimeoutSeconds, List<String> pragmas) {
+        this(minSize, maxSize, borrowTimeoutMillis, validateOnBorrow, validationTimeoutSeconds, pragmas, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public PoolConfig(int minSize, int maxSize, long borrowTimeoutMillis, boolean validateOnBorrow, int validationTimeoutSeconds, List<String> pragmas, int statementCacheSize) {
+        if (statementCacheSize < 0) throw new IllegalArgumentException("statementCacheSize must be >= 0");
+        if (minSize < 0) throw new IllegalArgumentException("minSize must be >= 0");
+        if (maxSize < 1 || maxSize < minSize) throw new IllegalArgumentException("maxSize must be >= max(1, minSize)");
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validateOnBorrow = validateOnBorrow;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.pragmas = Collections.unmodifiableList(new ArrayList<>(pragmas));
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * 从系统属性读取配置，未设置的项使用默认值。
+     * PRAGMA 列表以分号分隔，例如 "busy_timeout=5000;temp_store=MEMORY"。
+     */
+    public static PoolConfig fromSystemProperties() {
+        int min = Integer.getInteger("marketplace.db.pool.min", 2);
+        int max = Integer.getInteger("marketplace.db.pool.max", 8);
+        long timeout = Long.getLong("marketplace.db.pool.borrowTimeoutMillis", 10_000L);
+        boolean validate = Boolean.parseBoolean(System.getProperty("marketplace.db.pool.validateOnBorrow", "true"));
+        int validationTimeout = Integer.getInteger("marketplace.db.pool.validationTimeoutSeconds", 2);
+        // WAL 模式下读连接与写连接可以并发工作；synchronous=NORMAL 在 WAL 下仍保证崩溃一致性
+        String pragmaProp = System.getProperty("marketplace.db.pragmas", "journal_mode=WAL;synchronous=NORMAL;busy_timeout=5000;temp_store=MEMORY;cache_size=-8000");
+        List<String> pragmas = new ArrayList<>();
+        for (String p : pragmaProp.split(";")) {
+            if (!p.trim().isEmpty()) pragmas.add(p.trim());
+        }
+        int statementCacheSize = Integer.getInteger("marketplace.db.statementCacheSize", DEFAULT_STATEMENT_CACHE_SIZE);
+        return new PoolConfig(min, Math.max(max, Math.max(1, min)), timeout, validate, validationTimeout, pragmas, statementCacheSize);
+    }
+
+    /**
+     * 复制当前配置但使用新的连接数上下限（例如写线程专用的单连接池）
+     */
+    public PoolConfig withSize(int min, int max) {
+        return new PoolConfig(min, max, borrowTimeoutMillis, validateOnBorrow, validationTimeoutSeconds, pragmas, statementCacheSize);
+    }
+
+    /**
+     * 复制当前配置但使用新的预编译语句缓存大小（0 表示不缓存）
+     */
+    public PoolConfig withStatementCacheSize(int size) {
+        return new PoolConfig(minSize, maxSize, borrowTimeoutMillis, validateOnBorrow, validationTimeoutSeconds, pragmas, size);
+    }
+
+    public int getMinSize() { return minSize; }
+    public int getMaxSize() { return maxSize; }
+    public long getBorrowTimeoutMillis() { return borrowTimeoutMillis; }
+    public boolean isValidateOnBorrow() { return validateOnBorrow; }
+    public int getValidationTimeoutSeconds() { return validationTimeoutSeconds; }
+    /** 形如 "busy_timeout=5000" 的 PRAGMA 设置，建立物理连接时逐条执行一次 */
+    public List<String> getPragmas() { return pragmas; }
+    /** 每个物理连接最多缓存的预编译语句数，0 表示不缓存 */
+    public int getStatementCacheSize() { return statementCacheSize; }
+}
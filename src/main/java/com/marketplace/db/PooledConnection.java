@@ -0,0 +1,134 @@
+package com.marketplace.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 池中的一个物理连接。对外只暴露 {@link #newHandle()} 生成的代理连接：
+ * 调用方 close() 时不会真正关闭物理连接，而是把它归还给连接池。
+ * 启用 SQL 统计时，代理连接创建的语句也会被包装以记录执行耗时（见 {@link SqlMetrics}）。
+ */
+class PooledConnection {
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private final SqlMetrics metrics;
+
+    PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache, SqlMetrics metrics) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 在新建的物理连接上执行一次 PRAGMA 初始化
+     */
+    void applyPragmas(Iterable<String> pragmas) throws SQLException {
+        try (Statement st = physical.createStatement()) {
+            for (String p : pragmas) {
+                st.execute("PRAGMA " + p);
+            }
+        }
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !physical.isClosed() && physical.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 归还前恢复连接状态：回滚未提交的事务并恢复自动提交。
+     * @return false 表示连接已不可用，应直接丢弃
+     */
+    boolean reset() {
+        try {
+            if (physical.isClosed()) return false;
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closePhysical() {
+        if (statementCache != null) statementCache.closeAll();
+        try {
+            physical.close();
+        } catch (SQLException ignore) { /* 关闭失败无需处理 */ }
+    }
+
+    Connection physical() {
+        return physical;
+    }
+
+    /** 本连接上已缓存的预编译语句数，未启用缓存时为 0 */
+    int cachedStatementCount() {
+        return statementCache == null ? 0 : statementCache.size();
+    }
+
+    /**
+     * 生成一个一次性的代理连接，close() 后归还本物理连接
+     */
+    Connection newHandle() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new Handle());
+    }
+
+    private final class Handle implements InvocationHandler {
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + (closed ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) throw new SQLException("Connection has already been returned to the pool");
+            Object result;
+            // 只缓存最常见的 prepareStatement(String)，带结果集类型/生成键等参数的重载直接透传
+            if (statementCache != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                result = statementCache.prepare((String) args[0]);
+            } else {
+                try {
+                    result = method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            if (metrics == null) return result;
+            if (result instanceof PreparedStatement ps && method.getName().equals("prepareStatement")) {
+                return InstrumentedStatements.prepared(ps, (String) args[0], metrics);
+            }
+            if (result instanceof Statement st && method.getName().equals("createStatement")) {
+                return InstrumentedStatements.plain(st, metrics);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 表结构迁移器：维护 schema_version 表，并按版本号顺序执行尚未应用的迁移步骤。
+ * 新的表结构变更请追加到 {@link #MIGRATIONS} 末尾，已发布的步骤不要修改。
+ */
+public class SchemaMigrator {
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "baseline tables", conn -> {
+                try (Statement st = conn.createStatement()) {
+                    // users
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id TEXT PRIMARY KEY, username TEXT, phone TEXT UNIQUE, password TEXT, vip TEXT, login_count INTEGER, last_login TEXT)");
+                    // merchants (增加 password 字段用于认证)
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS merchants (id TEXT PRIMARY KEY, shop_name TEXT, phone TEXT UNIQUE, password TEXT, contact_info TEXT, employee_count INTEGER, identity TEXT)");
+                    // admins
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS admins (id TEXT PRIMARY KEY, username TEXT, password TEXT)");
+                    // products
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS products (id TEXT PRIMARY KEY, title TEXT, description TEXT, price REAL, stock INTEGER, status TEXT, merchant_id TEXT, merchant_phone TEXT)");
+                    // orders
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS orders (id TEXT PRIMARY KEY, user_id TEXT, merchant_id TEXT, total_amount REAL, discount REAL, pay_by_platform REAL, status TEXT, create_time TEXT)");
+                    // messages：is_read 用于未读标识（默认 0）
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS messages (id TEXT PRIMARY KEY, sender_id TEXT, receiver_id TEXT, content TEXT, timestamp TEXT, is_read INTEGER DEFAULT 0)");
+                    // complaints
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS complaints (id TEXT PRIMARY KEY, user_id TEXT, target_id TEXT, type TEXT, status TEXT)");
+                    // promotions
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS promotions (id TEXT PRIMARY KEY, merchant_id TEXT, type TEXT, discount REAL, valid_until TEXT)");
+                    // coupons 表：商家创建的优惠券
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS coupons (id TEXT PRIMARY KEY, merchant_id TEXT, code TEXT, discount REAL, valid_until TEXT, total_qty INTEGER, claimed_qty INTEGER DEFAULT 0)");
+                    // 用户-优惠券关联
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS user_coupons (id TEXT PRIMARY KEY, coupon_id TEXT, user_phone TEXT, used INTEGER DEFAULT 0)");
+                    // banned phones
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS banned (phone TEXT PRIMARY KEY, reason TEXT)");
+                    // banned products (管理员封禁的商品记录)
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS banned_products (product_id TEXT PRIMARY KEY, reason TEXT)");
+                }
+            }),
+            // 旧版本数据库的 messages 表可能缺少 is_read 列
+            new Migration(2, "messages.is_read column", conn ->
+                    addColumnIfMissing(conn, "messages", "is_read", "INTEGER DEFAULT 0")),
+            // users 表的累计消费字段（用于 VIP 升级）
+            new Migration(3, "users.total_spent column", conn ->
+                    addColumnIfMissing(conn, "users", "total_spent", "REAL DEFAULT 0")),
+            // 热点查询的二级索引：收件箱/未读数、已发消息、用户订单、商品列表、用户优惠券
+            new Migration(4, "hot-path secondary indexes", conn -> {
+                try (Statement st = conn.createStatement()) {
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_messages_receiver_read ON messages(receiver_id, is_read)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_messages_sender_time ON messages(sender_id, timestamp)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_user ON orders(user_id)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_products_status ON products(status)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_products_merchant ON products(merchant_id)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_coupons_phone ON user_coupons(user_phone)");
+                }
+            }),
+            // 商品全文检索：外部内容 FTS5 表（不重复存储正文），trigram 分词支持中文子串匹配；
+            // 触发器随 products 的增删改同步，只在标题/描述变化时更新（扣库存不触及 FTS）
+            new Migration(5, "products_fts full-text index", conn -> {
+                try (Statement st = conn.createStatement()) {
+                    st.executeUpdate("CREATE VIRTUAL TABLE IF NOT EXISTS products_fts USING fts5(title, description, content='products', content_rowid='rowid', tokenize='trigram')");
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS products_fts_ai AFTER INSERT ON products BEGIN "
+                            + "INSERT INTO products_fts(rowid, title, description) VALUES (new.rowid, new.title, new.description); END");
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS products_fts_ad AFTER DELETE ON products BEGIN "
+                            + "INSERT INTO products_fts(products_fts, rowid, title, description) VALUES ('delete', old.rowid, old.title, old.description); END");
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS products_fts_au AFTER UPDATE OF title, description ON products BEGIN "
+                            + "INSERT INTO products_fts(products_fts, rowid, title, description) VALUES ('delete', old.rowid, old.title, old.description); "
+                            + "INSERT INTO products_fts(rowid, title, description) VALUES (new.rowid, new.title, new.description); END");
+                    // 已有商品一次性导入
+                    st.executeUpdate("INSERT INTO products_fts(products_fts) VALUES ('rebuild')");
+                }
+            }),
+            // 商品分页（keyset）：created_at 记录上架时间（毫秒）；按 (排序键, id) 建复合索引，翻页只做索引范围扫描
+            new Migration(6, "products.created_at and keyset pagination indexes", conn -> {
+                addColumnIfMissing(conn, "products", "created_at", "INTEGER");
+                try (Statement st = conn.createStatement()) {
+                    // 旧数据没有上架时间：用 rowid 回填，保持插入顺序且早于所有新商品
+                    st.executeUpdate("UPDATE products SET created_at = rowid WHERE created_at IS NULL");
+                    // 未显式给出 created_at 的插入（样例数据、批量生成）取当前时间
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS products_created_at AFTER INSERT ON products WHEN new.created_at IS NULL BEGIN "
+                            + "UPDATE products SET created_at = CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER) WHERE rowid = new.rowid; END");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_products_status_created ON products(status, created_at, id)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_products_status_price ON products(status, price, id)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_products_merchant_created ON products(merchant_id, created_at, id)");
+                    st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_products_merchant_price ON products(merchant_id, price, id)");
+                }
+            }),
+            // 商品变更日志：触发器把 products 的每次增删改按序号记下（只记商品 id 与变更类型，订阅方按 id 回读最新内容）。
+            // 序号由 AUTOINCREMENT 分配，写入都经过单一写线程，按序号提交，读到 n 时不会再出现更小的序号；
+            // 只保留最近 100000 条，更早的由插入触发器顺带删除
+            new Migration(7, "product_changes change log", conn -> {
+                try (Statement st = conn.createStatement()) {
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS product_changes (seq INTEGER PRIMARY KEY AUTOINCREMENT, product_id TEXT NOT NULL, kind TEXT NOT NULL, changed_at INTEGER NOT NULL)");
+                    String now = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+                    String contentChanged = "old.title IS NOT new.title OR old.description IS NOT new.description OR old.price IS NOT new.price "
+                            + "OR old.status IS NOT new.status OR old.merchant_id IS NOT new.merchant_id OR old.merchant_phone IS NOT new.merchant_phone";
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS product_changes_ai AFTER INSERT ON products BEGIN "
+                            + "INSERT INTO product_changes(product_id, kind, changed_at) VALUES (new.id, 'SAVED', " + now + "); END");
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS product_changes_ad AFTER DELETE ON products BEGIN "
+                            + "INSERT INTO product_changes(product_id, kind, changed_at) VALUES (old.id, 'DELETED', " + now + "); END");
+                    // 只改 created_at（上架时间回填触发器）不算变更；内容与库存同时变化只记一条 SAVED
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS product_changes_au AFTER UPDATE ON products WHEN " + contentChanged + " BEGIN "
+                            + "INSERT INTO product_changes(product_id, kind, changed_at) VALUES (new.id, 'SAVED', " + now + "); END");
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS product_changes_stock AFTER UPDATE OF stock ON products WHEN old.stock IS NOT new.stock AND NOT (" + contentChanged + ") BEGIN "
+                            + "INSERT INTO product_changes(product_id, kind, changed_at) VALUES (new.id, 'STOCK', " + now + "); END");
+                    st.executeUpdate("CREATE TRIGGER IF NOT EXISTS product_changes_retention AFTER INSERT ON product_changes BEGIN "
+                            + "DELETE FROM product_changes WHERE seq <= new.seq - 100000; END");
+                }
+            }),
+            // 库存台账（StockLedger）写回进度：已写回 products.stock 的最后一条日志序号，与扣减在同一事务中更新
+            new Migration(8, "stock_ledger write-behind checkpoint", conn -> {
+                try (Statement st = conn.createStatement()) {
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS stock_ledger (id INTEGER PRIMARY KEY CHECK (id = 1), applied_seq INTEGER NOT NULL)");
+                    st.executeUpdate("INSERT OR IGNORE INTO stock_ledger (id, applied_seq) VALUES (1, 0)");
+                }
+            })
+    );
+
+    private final List<Migration> migrations;
+
+    public SchemaMigrator() {
+        this(MIGRATIONS);
+    }
+
+    public SchemaMigrator(List<Migration> migrations) {
+        List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort((a, b) -> Integer.compare(a.getVersion(), b.getVersion()));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).getVersion() == sorted.get(i - 1).getVersion()) {
+                throw new IllegalArgumentException("Duplicate migration version " + sorted.get(i).getVersion());
+            }
+        }
+        this.migrations = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * 将数据库迁移到最新版本
+     * @return 本次实际执行的迁移步骤数
+     */
+    public int migrate(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (version INTEGER PRIMARY KEY, description TEXT, applied_at TEXT)");
+        }
+        int current = currentVersion(conn);
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            conn.setAutoCommit(false);
+            for (Migration m : migrations) {
+                if (m.getVersion() <= current) continue;
+                try {
+                    m.apply(conn);
+                    try (PreparedStatement ps = conn.prepareStatement("INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                        ps.setInt(1, m.getVersion());
+                        ps.setString(2, m.getDescription());
+                        ps.setString(3, String.valueOf(System.currentTimeMillis()));
+                        ps.executeUpdate();
+                    }
+                    conn.commit();
+                    applied++;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + m.getVersion() + " (" + m.getDescription() + ") failed: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    /**
+     * 读取当前已应用的最高版本号，未迁移过的数据库返回 0
+     */
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** 代码中定义的最新版本号 */
+    public int latestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).getVersion();
+    }
+
+    static boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+
+    static void addColumnIfMissing(Connection conn, String table, String column, String definition) throws SQLException {
+        if (columnExists(conn, table, column)) return;
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.marketplace.db;
+
+import com.marketplace.util.PhoneMasking;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 慢查询记录：执行时间超过阈值的语句连同参数与 EXPLAIN QUERY PLAN 一起保存。
+ * - 参数中像手机号的值按 {@link PhoneMasking#maskPhone} 掩码，SQL 中的长数字字面量同样掩码
+ * - 涉及密码等列的语句不记录参数值，只记录类型与长度
+ * - 最近的记录保存在定长环形缓冲区中（无锁覆盖最旧的记录）
+ * - 同时追加写入日志文件，超过大小上限时滚动为 .1、.2 …；写文件在后台线程进行，不拖慢写线程
+ * - 记录或写文件失败不影响业务语句，只计入 {@link #failures()}
+ * 阈值等参数可用系统属性配置：marketplace.db.slowQuery.thresholdMillis（负数关闭）、
+ * marketplace.db.slowQuery.capacity、marketplace.db.slowQuery.file（空字符串表示不写文件）、
+ * marketplace.db.slowQuery.maxFileBytes、marketplace.db.slowQuery.maxFiles。
+ */
+public class SlowQueryLog implements AutoCloseable {
+    private static final Pattern SECRET_COLUMN = Pattern.compile("\\b(password|passwd|pwd|secret|token)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 一条慢查询
+     * @param params 已掩码的绑定参数（按参数序号排列，未绑定为 null）
+     * @param plan   EXPLAIN QUERY PLAN 的各行 detail，无法获取时为空
+     */
+    public record Entry(Instant at, String sql, List<String> params, long elapsedNanos, boolean failed, List<String> plan) {
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(at).append(String.format(Locale.ROOT, " %.3fms", elapsedNanos / 1e6))
+                    .append(failed ? " FAILED" : "").append(System.lineSeparator())
+                    .append("  sql: ").append(sql).append(System.lineSeparator());
+            if (!params.isEmpty()) sb.append("  params: ").append(params).append(System.lineSeparator());
+            for (String p : plan) sb.append("  plan: ").append(p).append(System.lineSeparator());
+            return sb.toString();
+        }
+    }
+
+    private final long thresholdNanos;
+    private final AtomicReferenceArray<Entry> ring;
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder failures = new LongAdder();
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final ExecutorService fileWriter;
+
+    /**
+     * @param file 日志文件，为 null 时只保存在内存中
+     */
+    public SlowQueryLog(long thresholdMillis, int capacity, Path file, long maxFileBytes, int maxFiles) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        this.thresholdNanos = thresholdMillis * 1_000_000L;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.fileWriter = file == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "slow-query-log");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 按系统属性创建；阈值为负数时返回 null（不记录慢查询）
+     */
+    static SlowQueryLog fromSystemProperties() {
+        long threshold = Long.getLong("marketplace.db.slowQuery.thresholdMillis", 200L);
+        if (threshold < 0) return null;
+        int capacity = Integer.getInteger("marketplace.db.slowQuery.capacity", 100);
+        String fileProp = System.getProperty("marketplace.db.slowQuery.file", "marketplace-slow.log");
+        Path file = fileProp.isEmpty() ? null : Paths.get(fileProp);
+        long maxBytes = Long.getLong("marketplace.db.slowQuery.maxFileBytes", 1L << 20);
+        int maxFiles = Integer.getInteger("marketplace.db.slowQuery.maxFiles", 3);
+        return new SlowQueryLog(threshold, capacity, file, maxBytes, maxFiles);
+    }
+
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * 记录一条慢查询。在执行语句的线程上调用：EXPLAIN 使用同一个物理连接，以便看到同一事务中的表结构。
+     */
+    void record(Connection physical, String sql, Object[] params, long elapsedNanos, boolean failed) {
+        Entry e = new Entry(Instant.now(), PhoneMasking.maskSensitiveNumbers(sql), maskParams(sql, params), elapsedNanos, failed, explain(physical, sql, params));
+        long seq = written.getAndIncrement();
+        ring.set((int) (seq % ring.length()), e);
+        if (fileWriter != null) {
+            try {
+                fileWriter.execute(() -> append(e));
+            } catch (RejectedExecutionException ignore) { /* 已关闭 */ }
+        }
+    }
+
+    /**
+     * 最近的慢查询，从旧到新
+     */
+    public List<Entry> recent() {
+        long end = written.get();
+        int cap = ring.length();
+        List<Entry> list = new ArrayList<>();
+        for (long i = Math.max(0, end - cap); i < end; i++) {
+            Entry e = ring.get((int) (i % cap));
+            if (e != null) list.add(e);
+        }
+        return list;
+    }
+
+    /** 记录慢查询或写日志文件失败的次数 */
+    public long failures() {
+        return failures.sum();
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    public void clear() {
+        for (int i = 0; i < ring.length(); i++) ring.set(i, null);
+    }
+
+    public long getThresholdMillis() {
+        return thresholdNanos / 1_000_000L;
+    }
+
+    private static List<String> maskParams(String sql, Object[] params) {
+        if (params == null) return List.of();
+        // 参数与列的对应关系不好从 SQL 可靠地解析，整条语句的参数都只记类型与长度
+        boolean secret = SECRET_COLUMN.matcher(sql).find();
+        List<String> list = new ArrayList<>(params.length);
+        for (Object p : params) {
+            if (p == null) list.add(null);
+            else if (secret) list.add(p.getClass().getSimpleName() + (p instanceof String s ? "(" + s.length() + ")" : ""));
+            else list.add(p instanceof String s ? PhoneMasking.maskIfPhone(s) : String.valueOf(p));
+        }
+        return list;
+    }
+
+    private static List<String> explain(Connection physical, String sql, Object[] params) {
+        String head = sql.stripLeading().toUpperCase(Locale.ROOT);
+        if (physical == null || !(head.startsWith("SELECT") || head.startsWith("WITH") || head.startsWith("UPDATE")
+                || head.startsWith("DELETE") || head.startsWith("INSERT") || head.startsWith("REPLACE"))) {
+            return List.of();
+        }
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement ps = physical.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) plan.add(rs.getString("detail"));
+            }
+        } catch (SQLException e) {
+            plan.add("(EXPLAIN failed: " + e.getMessage() + ")");
+        }
+        return plan;
+    }
+
+    private void append(Entry e) {
+        try {
+            if (Files.exists(file) && Files.size(file) >= maxFileBytes) rotate();
+            Files.writeString(file, e.format(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            failures.increment();
+        }
+    }
+
+    private void rotate() throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        String name = file.getFileName().toString();
+        Files.deleteIfExists(dir.resolve(name + "." + maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path from = dir.resolve(name + "." + i);
+            if (Files.exists(from)) Files.move(from, dir.resolve(name + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file, dir.resolve(name + ".1"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 等待已提交的文件写入完成后停止后台线程
+     */
+    @Override
+    public void close() {
+        if (fileWriter == null) return;
+        fileWriter.shutdown();
+        try {
+            fileWriter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQueryLog[threshold=" + getThresholdMillis() + "ms, capacity=" + ring.length() + ", file=" + file + "]";
+    }
+}
@@ -0,0 +1,248 @@
+package com.marketplace.db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 按 SQL 归类的执行统计：次数、错误数、影响/读取行数与执行耗时直方图。
+ * - SQL 文本先归一化（字面量替换为 ?、IN 列表折叠、空白压缩），同一模板的语句合并统计
+ * - 直方图按微秒取 log2 分桶，计数全部使用 LongAdder，记录路径无锁
+ * - 查询的耗时只含 executeQuery 本身，遍历结果集的时间单独累计为 fetch 时间
+ * 默认所有连接池共用 {@link #global()}，可用 -Dmarketplace.db.metrics=false 关闭。
+ * 设置了 {@link SlowQueryLog} 时，超过阈值的执行另外交给它记录。
+ */
+public class SqlMetrics {
+    /** 桶 i 覆盖 [2^(i-1), 2^i) 微秒，桶 0 为不足 1 微秒，最后一个桶收纳所有更慢的执行 */
+    static final int BUCKETS = 32;
+    /** 原始 SQL 到统计对象的缓存上限，防止拼接字面量的 SQL 撑爆内存 */
+    private static final int MAX_RAW_ENTRIES = 10_000;
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private static final SqlMetrics GLOBAL = new SqlMetrics(SlowQueryLog.fromSystemProperties());
+
+    private final ConcurrentHashMap<String, Stats> byNormalized = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Stats> byRaw = new ConcurrentHashMap<>();
+    private volatile SlowQueryLog slowQueryLog;
+
+    public SqlMetrics() {
+        this(null);
+    }
+
+    public SqlMetrics(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    public static SqlMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * 连接池默认使用的统计对象；通过系统属性关闭时返回 null
+     */
+    static SqlMetrics fromSystemProperties() {
+        return Boolean.parseBoolean(System.getProperty("marketplace.db.metrics", "true")) ? GLOBAL : null;
+    }
+
+    /** 慢查询记录，未启用时为 null */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * 替换慢查询记录（null 表示关闭）；只影响之后预编译的语句是否记录绑定参数
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * 取得 sql 对应的统计对象（预编译时调用一次，执行时直接记录）
+     */
+    public Stats stats(String sql) {
+        Stats s = byRaw.get(sql);
+        if (s != null) return s;
+        s = byNormalized.computeIfAbsent(normalize(sql), Stats::new);
+        if (byRaw.size() < MAX_RAW_ENTRIES) byRaw.putIfAbsent(sql, s);
+        return s;
+    }
+
+    /**
+     * 所有语句的统计快照，按累计耗时从高到低排序
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> list = new ArrayList<>();
+        for (Stats s : byNormalized.values()) {
+            Snapshot snap = s.snapshot();
+            if (snap.count() > 0 || snap.errors() > 0) list.add(snap);
+        }
+        list.sort(Comparator.comparingLong(Snapshot::totalNanos).reversed());
+        return list;
+    }
+
+    /**
+     * 文本报表（供管理员菜单显示），最多列出 limit 条
+     */
+    public String dump(int limit) {
+        List<Snapshot> list = snapshot();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%8s %6s %10s %9s %9s %9s %9s %10s  %s%n",
+                "count", "errors", "rows", "avg(ms)", "p50(ms)", "p99(ms)", "max(ms)", "total(ms)", "sql"));
+        for (int i = 0; i < list.size() && i < limit; i++) {
+            Snapshot s = list.get(i);
+            sb.append(String.format(Locale.ROOT, "%8d %6d %10d %9.3f %9.3f %9.3f %9.3f %10.1f  %s%n",
+                    s.count(), s.errors(), s.rows(), s.meanMillis(), s.percentileMillis(0.50), s.percentileMillis(0.99),
+                    s.maxNanos() / 1e6, (s.totalNanos() + s.fetchNanos()) / 1e6, s.sql()));
+        }
+        if (list.isEmpty()) sb.append("(暂无 SQL 执行记录)").append(System.lineSeparator());
+        return sb.toString();
+    }
+
+    /**
+     * 清零所有统计（保留已登记的语句，正在执行的记录不会丢失对象引用）
+     */
+    public void reset() {
+        for (Stats s : byNormalized.values()) s.reset();
+    }
+
+    /**
+     * SQL 归一化：去掉字符串与数字字面量、折叠 IN 列表、压缩空白
+     */
+    static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int n = sql.length();
+        boolean space = false;
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            if (c == '\'') {
+                // 字符串字面量，'' 为转义的单引号
+                int j = i + 1;
+                while (j < n) {
+                    if (sql.charAt(j) == '\'') {
+                        if (j + 1 < n && sql.charAt(j + 1) == '\'') j += 2;
+                        else break;
+                    } else j++;
+                }
+                sb.append('?');
+                i = j;
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))) {
+                int j = i;
+                while (j + 1 < n && (Character.isDigit(sql.charAt(j + 1)) || sql.charAt(j + 1) == '.')) j++;
+                sb.append('?');
+                i = j;
+            } else {
+                sb.append(c);
+            }
+        }
+        return IN_LIST.matcher(sb).replaceAll("IN (?)");
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    static int bucketOf(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int b = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(b, BUCKETS - 1);
+    }
+
+    /** 桶的上界（微秒） */
+    static long bucketUpperMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * 一条归一化 SQL 的累计统计
+     */
+    public static final class Stats {
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder fetchNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Stats(String sql) {
+            this.sql = sql;
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        public String sql() { return sql; }
+
+        /** 记录一次执行；rows 为更新行数（查询为 0，读取行数由 {@link #addRows} 累加） */
+        void record(long nanos, long affectedRows, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            buckets[bucketOf(nanos)].increment();
+            if (affectedRows > 0) rows.add(affectedRows);
+            if (failed) errors.increment();
+        }
+
+        void addRows(long n) {
+            rows.add(n);
+        }
+
+        void addFetchNanos(long nanos) {
+            fetchNanos.add(nanos);
+        }
+
+        Snapshot snapshot() {
+            long[] b = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) b[i] = buckets[i].sum();
+            return new Snapshot(sql, count.sum(), errors.sum(), rows.sum(), totalNanos.sum(), fetchNanos.sum(), maxNanos.get(), b);
+        }
+
+        void reset() {
+            count.reset();
+            errors.reset();
+            rows.reset();
+            totalNanos.reset();
+            fetchNanos.reset();
+            maxNanos.reset();
+            for (LongAdder a : buckets) a.reset();
+        }
+    }
+
+    /**
+     * 统计快照（不可变）
+     */
+    public record Snapshot(String sql, long count, long errors, long rows, long totalNanos, long fetchNanos, long maxNanos, long[] buckets) {
+        public double meanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * 由直方图估算的分位数（取所在桶的上界，误差不超过 2 倍）
+         */
+        public double percentileMillis(double p) {
+            long total = 0;
+            for (long c : buckets) total += c;
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return Math.min(bucketUpperMicros(i) / 1e3, maxNanos / 1e6);
+            }
+            return maxNanos / 1e6;
+        }
+    }
+}
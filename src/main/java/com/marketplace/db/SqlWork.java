@@ -0,0 +1,12 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 在给定连接上执行的一段数据库操作。连接由调度方提供和回收，实现中不要关闭它。
+ */
+@FunctionalInterface
+public interface SqlWork<T> {
+    T run(Connection conn) throws SQLException;
+}
@@ -0,0 +1,140 @@
+package com.marketplace.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个物理连接上的预编译语句缓存：以 SQL 文本为键，按最近最少使用（LRU）淘汰。
+ * - 调用方拿到的是代理语句，close() 只清空参数并放回缓存，不会真正关闭
+ * - 同一条 SQL 的缓存语句正被使用时（例如嵌套查询），另外临时预编译一条，用完即关闭
+ * - 物理连接关闭时关闭全部缓存语句
+ * 连接同一时刻只会被一个线程借出，因此这里不需要加锁。
+ */
+class StatementCache {
+    private final Connection physical;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, Cached> statements;
+
+    StatementCache(Connection physical, int capacity, LongAdder hits, LongAdder misses) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 取出（必要时预编译）sql 对应的语句，返回的代理在 close() 时归还缓存
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        Cached c = statements.get(sql);
+        if (c != null && c.inUse) {
+            misses.increment();
+            return physical.prepareStatement(sql);
+        }
+        if (c == null) {
+            misses.increment();
+            c = new Cached(sql, physical.prepareStatement(sql));
+            statements.put(sql, c);
+            evictIfNeeded();
+        } else {
+            hits.increment();
+        }
+        c.inUse = true;
+        return c.newHandle();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Cached>> it = statements.entrySet().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            Cached eldest = it.next().getValue();
+            it.remove();
+            // 正在使用的语句等调用方 close() 时再关闭
+            if (eldest.inUse) eldest.evicted = true;
+            else eldest.closeQuietly();
+        }
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    void closeAll() {
+        List<Cached> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (Cached c : all) c.closeQuietly();
+    }
+
+    private final class Cached {
+        final String sql;
+        final PreparedStatement target;
+        boolean inUse;
+        boolean evicted;
+
+        Cached(String sql, PreparedStatement target) {
+            this.sql = sql;
+            this.target = target;
+        }
+
+        PreparedStatement newHandle() {
+            boolean[] closed = {false};
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed[0]) {
+                            closed[0] = true;
+                            release();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed[0] || target.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+                if (closed[0]) throw new SQLException("Statement is closed");
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+
+        private void release() {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                target.clearParameters();
+                target.clearBatch();
+            } catch (SQLException e) {
+                // 语句状态无法恢复，移出缓存，下次重新预编译
+                statements.remove(sql, this);
+                closeQuietly();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                target.close();
+            } catch (SQLException ignore) { /* 关闭失败无需处理 */ }
+        }
+    }
+}
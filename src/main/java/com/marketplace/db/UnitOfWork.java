@@ -0,0 +1,138 @@
+package com.marketplace.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 事务作用域的工作单元：一次业务操作（如一次下单）内的所有 DAO 调用共用一个连接、一个事务。
+ * 工作单元绑定在执行它的写线程上，期间：
+ * - {@link DBUtil#getConnection()} 返回事务连接（可读到本事务尚未提交的写入）
+ * - {@link DBUtil#write(SqlWork)} / {@link DBUtil#writeGrouped(SqlWork)} 直接在事务连接上执行
+ * - 嵌套的 {@link DBUtil#inTransaction(SqlWork)} 加入外层事务
+ * 通过 {@link #afterCommit(Runnable)} 注册的回调只在事务成功提交后执行，
+ * 通过 {@link #runAfterCompletion(Runnable)} 注册的回调在提交或回滚后都会执行。
+ * 回调抛出的异常不改变事务结果：计入 {@link #callbackFailures()}，事务失败时附在抛出的异常上（suppressed）。
+ */
+public final class UnitOfWork {
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+    private static final LongAdder CALLBACK_FAILURES = new LongAdder();
+
+    private final Database database;
+    private final Connection handle;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterCompletion = new ArrayList<>();
+
+    private UnitOfWork(Database database, Connection connection) {
+        this.database = database;
+        this.handle = nonClosing(connection);
+    }
+
+    /**
+     * 当前线程上的工作单元，没有则返回 null
+     */
+    public static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 当前线程在给定数据库上的工作单元，没有则返回 null
+     */
+    static UnitOfWork current(Database database) {
+        UnitOfWork u = CURRENT.get();
+        return u != null && u.database == database ? u : null;
+    }
+
+    /**
+     * 注册事务提交后执行的回调（例如通知缓存、记录统计）；不在事务中时立即执行
+     */
+    public static void runAfterCommit(Runnable r) {
+        UnitOfWork u = CURRENT.get();
+        if (u == null) r.run();
+        else u.afterCommit(r);
+    }
+
+    /**
+     * 注册事务结束（提交或回滚）后执行的回调，例如撤销为本事务预留的内存状态；不在事务中时立即执行
+     */
+    public static void runAfterCompletion(Runnable r) {
+        UnitOfWork u = CURRENT.get();
+        if (u == null) r.run();
+        else u.afterCompletion.add(r);
+    }
+
+    /** 事务结束后执行回调时抛出异常的次数（进程内累计） */
+    public static long callbackFailures() {
+        return CALLBACK_FAILURES.sum();
+    }
+
+    /**
+     * 事务连接。调用方 close() 不会关闭它，连接的生命周期由工作单元管理。
+     */
+    public Connection getConnection() {
+        return handle;
+    }
+
+    public void afterCommit(Runnable r) {
+        afterCommit.add(r);
+    }
+
+    /**
+     * 在给定连接上开启事务执行 work：成功则提交并执行提交后回调，失败则回滚并抛出原异常
+     */
+    static <T> T run(Database database, Connection conn, SqlWork<T> work) throws SQLException {
+        UnitOfWork u = new UnitOfWork(database, conn);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        CURRENT.set(u);
+        T result;
+        try {
+            result = work.run(u.handle);
+            conn.commit();
+        } catch (SQLException | RuntimeException | Error e) {
+            try { conn.rollback(); } catch (SQLException ignore) {}
+            CURRENT.remove();
+            try { conn.setAutoCommit(autoCommit); } catch (SQLException ignore) {}
+            runAll(u.afterCompletion, e);
+            throw e;
+        }
+        CURRENT.remove();
+        try { conn.setAutoCommit(autoCommit); } catch (SQLException ignore) {}
+        runAll(u.afterCommit, null);
+        runAll(u.afterCompletion, null);
+        return result;
+    }
+
+    // failure 为事务失败时将要抛出的异常
+    private static void runAll(List<Runnable> callbacks, Throwable failure) {
+        for (Runnable r : callbacks) {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                // 事务已经结束，回调失败不应改变调用方看到的结果，其余回调照常执行
+                CALLBACK_FAILURES.increment();
+                if (failure != null) failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private static Connection nonClosing(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("close")) return null;
+            // 事务边界由工作单元控制，参与者不能自行提交、回滚或切换自动提交（回滚到 savepoint 除外）
+            if (name.equals("commit") || name.equals("setAutoCommit") || (name.equals("rollback") && (args == null || args.length == 0))) {
+                throw new SQLException("Transaction boundaries are managed by the enclosing UnitOfWork");
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
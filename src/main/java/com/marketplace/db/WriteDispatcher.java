@@ -0,0 +1,127 @@
+package com.marketplace.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 单写线程调度器：SQLite 同一时刻只允许一个写事务，
+ * 因此所有写操作都排队交给一个专用写线程在同一个连接上顺序执行，避免并发写入争抢数据库锁（SQLITE_BUSY）。
+ * 队列有界，队列满时提交方阻塞等待（背压）。
+ */
+public class WriteDispatcher implements AutoCloseable {
+
+    private static final class Task<T> {
+        final SqlWork<T> work;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(SqlWork<T> work) {
+            this.work = work;
+        }
+
+        void run(Connection conn) {
+            try {
+                future.complete(work.run(conn));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final ConnectionPool writerPool;
+    private final BlockingQueue<Task<?>> queue;
+    private final Thread thread;
+    private volatile boolean running = true;
+    /** 写线程当前正在使用的连接，仅由写线程读写 */
+    private Connection current;
+
+    public WriteDispatcher(ConnectionPool writerPool, int queueCapacity, String threadName) {
+        this.writerPool = writerPool;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::loop, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 提交一个写操作，返回在写线程执行完成后结束的 Future。
+     * 若当前已在写线程上（写操作内部嵌套调用），直接在当前连接上执行，避免自身等待自身。
+     */
+    public <T> CompletableFuture<T> submit(SqlWork<T> work) {
+        if (isWriterThread()) {
+            Task<T> task = new Task<>(work);
+            task.run(current);
+            return task.future;
+        }
+        if (!running) return CompletableFuture.failedFuture(new SQLException("Write dispatcher is closed"));
+        Task<T> task = new Task<>(work);
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new SQLException("Interrupted while queueing write", e));
+        }
+        // 入队前 close() 可能已清空过队列，还能从队列取回说明不会再有人执行它。
+        // 队列有界、put 可能阻塞，所以不像 GroupCommitter 那样持锁入队
+        if (!running && queue.remove(task)) task.future.completeExceptionally(new SQLException("Write dispatcher is closed"));
+        return task.future;
+    }
+
+    /** 当前线程是否为写线程（且正在执行写任务） */
+    public boolean isWriterThread() {
+        return Thread.currentThread() == thread && current != null;
+    }
+
+    /** 排队等待执行的写操作数量 */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void loop() {
+        while (running || !queue.isEmpty()) {
+            Task<?> task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                if (!running) break;
+                continue;
+            }
+            try (Connection conn = writerPool.borrow()) {
+                current = conn;
+                task.run(conn);
+            } catch (SQLException e) {
+                task.future.completeExceptionally(e);
+            } finally {
+                current = null;
+            }
+        }
+        failPending(new SQLException("Write dispatcher is closed"));
+    }
+
+    private void failPending(SQLException cause) {
+        List<Task<?>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (Task<?> t : rest) t.future.completeExceptionally(cause);
+    }
+
+    /**
+     * 停止接收新的写操作，等待已排队的写操作执行完毕后关闭写连接
+     */
+    @Override
+    public void close() {
+        running = false;
+        // 放入一个空任务唤醒阻塞在 take() 上的写线程
+        queue.offer(new Task<>(conn -> null));
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending(new SQLException("Write dispatcher is closed"));
+        writerPool.close();
+    }
+}
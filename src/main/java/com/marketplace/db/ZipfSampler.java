@@ -0,0 +1,31 @@
+package com.marketplace.db;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Zipf 分布采样：排名为 k（从 0 开始）的元素被抽中的概率正比于 1/(k+1)^s。
+ * s=0 退化为均匀分布，s 越大头部越集中（热门商品、话痨用户）。
+ * 预先计算累积分布，采样为一次二分查找。
+ */
+final class ZipfSampler {
+    private final double[] cdf;
+
+    ZipfSampler(int n, double skew) {
+        if (n < 1) throw new IllegalArgumentException("n must be >= 1");
+        if (skew < 0) throw new IllegalArgumentException("skew must be >= 0");
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) cdf[k] /= sum;
+    }
+
+    int next(SplittableRandom rnd) {
+        int i = Arrays.binarySearch(cdf, rnd.nextDouble());
+        if (i < 0) i = -i - 1;
+        return Math.min(i, cdf.length - 1);
+    }
+}
@@ -12,6 +12,8 @@ public class Product {
     private Enums.ProductStatus status;
     private String merchantId;
     private String merchantPhone;
+    // 上架时间（毫秒），用于按最新排序；未从存储加载时为 0
+    private long createdAt;
 
     /**
      * 构造商品对象
@@ -35,12 +37,21 @@ public class Product {
     public Enums.ProductStatus getStatus() { return status; }
     public String getMerchantId() { return merchantId; }
     public String getMerchantPhone() { return merchantPhone; }
+    public long getCreatedAt() { return createdAt; }
 
     public void setTitle(String title) { this.title = title; }
     public void setDescription(String description) { this.description = description; }
     public void setPrice(double price) { this.price = price; }
     public void setStock(int stock) { this.stock = stock; }
     public void setStatus(Enums.ProductStatus status) { this.status = status; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    /** 复制一份（含上架时间），修改副本不影响原对象 */
+    public Product copy() {
+        Product c = new Product(productId, title, description, price, stock, status, merchantId, merchantPhone);
+        c.createdAt = createdAt;
+        return c;
+    }
 
     public void updateInfo(String title, String description, double price, int stock) {
         setTitle(title);
@@ -0,0 +1,104 @@
+package com.marketplace.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BK 树：按编辑距离（Levenshtein）组织的词典，查找与给定词距离不超过 d 的所有词。
+ * 利用三角不等式，只需进入与当前节点距离在 [dist - d, dist + d] 内的子树，小 d 时只访问词典的一小部分。
+ * 不支持删除，调用方自行过滤已失效的词并在失效过多时重建。非线程安全。
+ */
+final class BkTree {
+    /** 一个候选词及其与查询词的编辑距离 */
+    record Match(String term, int distance) {}
+
+    private static final class Node {
+        final String term;
+        final Map<Integer, Node> children = new HashMap<>(4);
+
+        Node(String term) {
+            this.term = term;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    /**
+     * 加入一个词，已存在时返回 false
+     */
+    boolean add(String term) {
+        if (root == null) {
+            root = new Node(term);
+            size = 1;
+            return true;
+        }
+        Node n = root;
+        while (true) {
+            int d = distance(n.term, term, Integer.MAX_VALUE);
+            if (d == 0) return false;
+            Node child = n.children.get(d);
+            if (child == null) {
+                n.children.put(d, new Node(term));
+                size++;
+                return true;
+            }
+            n = child;
+        }
+    }
+
+    /**
+     * 与 term 编辑距离不超过 maxDistance 的所有词
+     */
+    List<Match> search(String term, int maxDistance) {
+        List<Match> res = new ArrayList<>();
+        if (root == null) return res;
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            int d = distance(n.term, term, Integer.MAX_VALUE);
+            if (d <= maxDistance) res.add(new Match(n.term, d));
+            for (Map.Entry<Integer, Node> e : n.children.entrySet()) {
+                if (Math.abs(e.getKey() - d) <= maxDistance) stack.push(e.getValue());
+            }
+        }
+        return res;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Levenshtein 距离（按 UTF-16 字符），超过 limit 时提前返回 limit + 1
+     */
+    static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) return limit + 1;
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+}
@@ -0,0 +1,88 @@
+package com.marketplace.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中英混排分词：
+ * - 拉丁字母、数字等连续字符组成单词，查询时按前缀匹配（"ip" 命中 "iphone"）
+ * - 中日韩文字按 n-gram 切分（默认二元）：连续汉字 "示例耳塞" 切为 示例、例耳、耳塞，
+ *   另外补上末尾不足 n 个字的后缀（塞），保证文本中的每个字都是某个词的开头
+ * 查询中不短于 n 个字的汉字串按 n-gram 精确匹配后求交；更短的串按前缀匹配词典，
+ * 因此 "耳塞"、"塞" 这样的子串查询都能用索引求交回答，不需要扫描商品。
+ */
+public class CjkNGramTokenizer implements Tokenizer {
+    private final int n;
+
+    public CjkNGramTokenizer() {
+        this(2);
+    }
+
+    public CjkNGramTokenizer(int n) {
+        if (n < 2) throw new IllegalArgumentException("n must be >= 2");
+        this.n = n;
+    }
+
+    public List<String> tokenize(String text) {
+        return split(text, false);
+    }
+
+    /**
+     * 查询分词：不短于 n 个字的汉字串只取 n-gram（不需要末尾后缀），更短的串整体作为前缀查询词
+     */
+    public List<String> tokenizeQuery(String text) {
+        return split(text, true);
+    }
+
+    private List<String> split(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String s = text.toLowerCase(Locale.ROOT);
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            int cp = s.codePointAt(i);
+            int j = i;
+            if (isCjk(cp)) {
+                while (j < len && isCjk(s.codePointAt(j))) j += Character.charCount(s.codePointAt(j));
+                addNGrams(s.substring(i, j), tokens, query);
+            } else if (Character.isLetterOrDigit(cp)) {
+                while (j < len && isWordChar(s.codePointAt(j))) j += Character.charCount(s.codePointAt(j));
+                tokens.add(s.substring(i, j));
+            } else {
+                j += Character.charCount(cp);
+            }
+            i = j;
+        }
+        return tokens;
+    }
+
+    private void addNGrams(String run, List<String> tokens, boolean query) {
+        int[] cps = run.codePoints().toArray();
+        if (query && cps.length < n) {
+            tokens.add(run);
+            return;
+        }
+        for (int k = 0; k + n <= cps.length; k++) tokens.add(new String(cps, k, n));
+        if (query) return;
+        // 末尾不足 n 个字的后缀：长度 n-1 .. 1
+        for (int k = Math.max(0, cps.length - n + 1); k < cps.length; k++) tokens.add(new String(cps, k, cps.length - k));
+    }
+
+    public boolean prefixMatch(String token) {
+        if (token.isEmpty()) return false;
+        int cp = token.codePointAt(0);
+        return !isCjk(cp) || token.codePointCount(0, token.length()) < n;
+    }
+
+    static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static boolean isWordChar(int cp) {
+        return Character.isLetterOrDigit(cp) && !isCjk(cp);
+    }
+}
@@ -0,0 +1,179 @@
+package com.marketplace.search;
+
+import com.marketplace.dao.ProductChangeListener;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.models.Product;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 仓储派生内存结构（分面位图、倒排索引等）的变更缓冲。
+ * - 变更回调在写线程上执行，只把商品 id 记入并发表，不加锁也不访问仓储，不会拖慢写入
+ * - 查询前调用 {@link #refresh}：整体重置后在视图锁外构建新结构再交给视图替换，否则把缓冲的变更整批交给视图应用
+ * - 首次刷新时先订阅再加载，加载期间提交的变更留在缓冲里，下次刷新时再应用（重复应用无害）
+ * - 不引用所属视图：视图被回收后自动退订，见 {@link Registry}
+ */
+final class ProductChangeBuffer implements ProductChangeListener {
+    @FunctionalInterface
+    interface Loader<S> {
+        S load() throws SQLException;
+    }
+
+    /**
+     * 每个仓储一个共享视图。键与值都是弱引用：仓储不再使用、或没有服务再持有视图时都可回收
+     */
+    static final class Registry<V> {
+        private final Map<ProductRepository, WeakReference<V>> instances = new WeakHashMap<>();
+        private final Function<ProductRepository, V> factory;
+
+        Registry(Function<ProductRepository, V> factory) {
+            this.factory = factory;
+        }
+
+        synchronized V get(ProductRepository repository) {
+            WeakReference<V> ref = instances.get(repository);
+            V view = ref == null ? null : ref.get();
+            if (view == null) {
+                view = factory.apply(repository);
+                instances.put(repository, new WeakReference<>(view));
+            }
+            return view;
+        }
+    }
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // 每次事件一个新对象：刷新完成后按引用移除，期间又有新事件的商品留到下次
+    private static final class Pending {
+        final boolean deleted;
+
+        Pending(boolean deleted) {
+            this.deleted = deleted;
+        }
+    }
+
+    private final ProductRepository repository;
+    // 库存变化时在写线程上同步调用，只能做无锁的计数；设置后库存变化只交给它，不再回读商品
+    private final Consumer<String> onStockChanged;
+    // 商品 id -> 保存后的内容，或 Pending（删除 / 库存变化待回读）
+    private final ConcurrentHashMap<String, Object> changes = new ConcurrentHashMap<>();
+    private final AtomicLong resets = new AtomicLong();
+    // 同一时刻只有一个线程刷新，同一商品的变更按顺序应用
+    private final ReentrantLock refreshing = new ReentrantLock();
+    private volatile long built = -1;
+    private boolean subscribed;
+
+    /**
+     * @param owner 所属视图，被回收后退订；缓冲不持有它
+     */
+    ProductChangeBuffer(ProductRepository repository, Object owner) {
+        this(repository, owner, null);
+    }
+
+    /**
+     * @param onStockChanged 给不依赖库存的视图用：库存变化只调用它，不记入缓冲、刷新时也不回读
+     */
+    ProductChangeBuffer(ProductRepository repository, Object owner, Consumer<String> onStockChanged) {
+        this.repository = repository;
+        this.onStockChanged = onStockChanged;
+        CLEANER.register(owner, this::unsubscribe);
+    }
+
+    /**
+     * 让视图追上仓储
+     * @param load    从仓储构建完整的新结构，在视图锁外执行
+     * @param install 换上新结构
+     * @param apply   应用一批变更：商品 id -> 最新内容，null 表示已删除
+     */
+    <S> void refresh(Loader<S> load, Consumer<S> install, Consumer<Map<String, Product>> apply) throws SQLException {
+        if (built == resets.get() && changes.isEmpty()) return;
+        refreshing.lock();
+        try {
+            if (!subscribed) {
+                repository.addChangeListener(this);
+                subscribed = true;
+            }
+            long generation = resets.get();
+            if (generation != built) {
+                changes.clear();
+                install.accept(load.load());
+                // 构建期间又发生重置时保持过期，下次再重建
+                built = generation;
+                return;
+            }
+            if (changes.isEmpty()) return;
+            Map<String, Object> seen = new HashMap<>(changes);
+            Map<String, Product> batch = new HashMap<>();
+            List<String> reload = new ArrayList<>();
+            for (Map.Entry<String, Object> e : seen.entrySet()) {
+                Object v = e.getValue();
+                if (v instanceof Product p) batch.put(e.getKey(), p);
+                else {
+                    batch.put(e.getKey(), null);
+                    if (!((Pending) v).deleted) reload.add(e.getKey());
+                }
+            }
+            // 库存变化过的商品一次批量回读，查不到的按已删除处理
+            if (!reload.isEmpty()) for (Product p : repository.findByIds(reload)) batch.put(p.getProductId(), p);
+            apply.accept(batch);
+            for (Map.Entry<String, Object> e : seen.entrySet()) changes.remove(e.getKey(), e.getValue());
+        } finally {
+            refreshing.unlock();
+        }
+    }
+
+    @Override
+    public void saved(Product product) {
+        changes.put(product.getProductId(), product);
+    }
+
+    @Override
+    public void savedAll(List<Product> products) {
+        for (Product p : products) saved(p);
+    }
+
+    @Override
+    public void deleted(String productId) {
+        changes.put(productId, new Pending(true));
+    }
+
+    @Override
+    public void stockChanged(String productId) {
+        if (onStockChanged != null) {
+            onStockChanged.accept(productId);
+            return;
+        }
+        changes.put(productId, new Pending(false));
+    }
+
+    @Override
+    public void reset() {
+        resets.incrementAndGet();
+    }
+
+    // 在 Cleaner 线程上执行
+    private void unsubscribe() {
+        refreshing.lock();
+        try {
+            if (subscribed) repository.removeChangeListener(this);
+            subscribed = false;
+        } catch (SQLException ignore) {
+            // 退订失败只是多收事件，缓冲不再被刷新也不影响别的订阅者
+        } finally {
+            refreshing.unlock();
+        }
+        changes.clear();
+    }
+}
@@ -0,0 +1,258 @@
+package com.marketplace.search;
+
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 商品分面筛选：价格区间、商家、有无库存、状态四个维度。
+ * - 每个商品分配一个稠密序号（删除后序号回收复用），每个维度取值对应一个以序号为下标的位图
+ * - 组合筛选即位图求交：同一维度内多个取值为并集，不同维度之间为交集
+ * - 各维度的计数按“排除本维度条件、保留其它维度条件”统计，选中某个取值后同维度的其它取值仍显示可选数量
+ * - 变更回调只把商品 id 记入 {@link ProductChangeBuffer}，不加锁；下次查询前再应用变更、回读库存，重置后在锁外重建再替换
+ * 每个仓储共用一个实例，见 {@link #forRepository(ProductRepository)}。
+ */
+public final class ProductFacets {
+    /** 价格区间，左闭右开 */
+    public enum PriceBand {
+        UNDER_50(0, 50), FROM_50_TO_200(50, 200), FROM_200_TO_1000(200, 1000), OVER_1000(1000, Double.POSITIVE_INFINITY);
+
+        private final double min;
+        private final double max;
+
+        PriceBand(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        public static PriceBand of(double price) {
+            for (PriceBand b : values()) if (price < b.max) return b;
+            return OVER_1000;
+        }
+
+        public String label() {
+            return max == Double.POSITIVE_INFINITY ? (int) min + " 元以上" : (int) min + "-" + (int) max + " 元";
+        }
+    }
+
+    public enum StockState { IN_STOCK, SOLD_OUT }
+
+    /**
+     * 筛选条件：某维度为空集合表示不限
+     */
+    public record Filter(Set<PriceBand> priceBands, Set<String> merchantIds, Set<StockState> stock, Set<Enums.ProductStatus> statuses) {
+        public Filter {
+            priceBands = priceBands == null ? Set.of() : Set.copyOf(priceBands);
+            merchantIds = merchantIds == null ? Set.of() : Set.copyOf(merchantIds);
+            stock = stock == null ? Set.of() : Set.copyOf(stock);
+            statuses = statuses == null ? Set.of() : Set.copyOf(statuses);
+        }
+
+        /** 只看已发布商品，其它维度不限 */
+        public static Filter published() {
+            return new Filter(null, null, null, Set.of(Enums.ProductStatus.PUBLISHED));
+        }
+    }
+
+    /** 各维度取值的商品数（只含数量大于 0 的取值） */
+    public record Counts(Map<PriceBand, Integer> priceBands, Map<String, Integer> merchants, Map<StockState, Integer> stock, Map<Enums.ProductStatus, Integer> statuses) {}
+
+    /**
+     * 筛选结果：按序号顺序的至多 limit 个商品 id、满足条件的总数与各维度计数
+     */
+    public record Result(List<String> productIds, int total, Counts counts) {}
+
+    private record Entry(PriceBand band, String merchantId, StockState stock, Enums.ProductStatus status) {}
+
+    // 全部位图与序号表；重建时在锁外构建一份新的再整体替换
+    private static final class State {
+        final Map<String, Integer> ordinals = new HashMap<>();
+        final List<String> ids = new ArrayList<>();
+        final List<Entry> entries = new ArrayList<>();
+        final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+        final BitSet live = new BitSet();
+        final EnumMap<PriceBand, BitSet> byBand = new EnumMap<>(PriceBand.class);
+        final Map<String, BitSet> byMerchant = new HashMap<>();
+        final EnumMap<StockState, BitSet> byStock = new EnumMap<>(StockState.class);
+        final EnumMap<Enums.ProductStatus, BitSet> byStatus = new EnumMap<>(Enums.ProductStatus.class);
+
+        void put(Product p) {
+            Entry e = new Entry(PriceBand.of(p.getPrice()), p.getMerchantId(), p.getStock() > 0 ? StockState.IN_STOCK : StockState.SOLD_OUT, p.getStatus());
+            Integer ord = ordinals.get(p.getProductId());
+            if (ord != null) {
+                if (entries.get(ord).equals(e)) return;
+                clearBits(ord);
+            } else if (!freeOrdinals.isEmpty()) {
+                ord = freeOrdinals.pop();
+                ids.set(ord, p.getProductId());
+            } else {
+                ord = ids.size();
+                ids.add(p.getProductId());
+                entries.add(null);
+            }
+            ordinals.put(p.getProductId(), ord);
+            entries.set(ord, e);
+            live.set(ord);
+            byBand.computeIfAbsent(e.band(), k -> new BitSet()).set(ord);
+            if (e.merchantId() != null) byMerchant.computeIfAbsent(e.merchantId(), k -> new BitSet()).set(ord);
+            byStock.computeIfAbsent(e.stock(), k -> new BitSet()).set(ord);
+            if (e.status() != null) byStatus.computeIfAbsent(e.status(), k -> new BitSet()).set(ord);
+        }
+
+        void remove(String productId) {
+            Integer ord = ordinals.remove(productId);
+            if (ord == null) return;
+            clearBits(ord);
+            live.clear(ord);
+            entries.set(ord, null);
+            ids.set(ord, null);
+            freeOrdinals.push(ord);
+        }
+
+        private void clearBits(int ord) {
+            Entry old = entries.get(ord);
+            clear(byBand, old.band(), ord);
+            clear(byMerchant, old.merchantId(), ord);
+            clear(byStock, old.stock(), ord);
+            clear(byStatus, old.status(), ord);
+        }
+    }
+
+    private static final ProductChangeBuffer.Registry<ProductFacets> INSTANCES = new ProductChangeBuffer.Registry<>(ProductFacets::new);
+
+    private final ProductRepository repository;
+    private final ProductChangeBuffer changes;
+    // 只在持有本对象锁时读写
+    private State state = new State();
+
+    public ProductFacets(ProductRepository repository) {
+        this.repository = repository;
+        this.changes = new ProductChangeBuffer(repository, this);
+    }
+
+    /**
+     * 仓储对应的共享实例（首次查询时订阅变更并加载）
+     */
+    public static ProductFacets forRepository(ProductRepository repository) {
+        return INSTANCES.get(repository);
+    }
+
+    /**
+     * 按条件筛选
+     * @param candidates 候选商品 id（例如关键字搜索的命中），null 表示全部商品
+     */
+    public Result query(Filter filter, Collection<String> candidates, int limit) throws SQLException {
+        refresh();
+        synchronized (this) {
+            State s = state;
+            BitSet base = (BitSet) s.live.clone();
+            if (candidates != null) {
+                BitSet c = new BitSet();
+                for (String id : candidates) {
+                    Integer ord = s.ordinals.get(id);
+                    if (ord != null) c.set(ord);
+                }
+                base.and(c);
+            }
+            BitSet bandMask = union(s.byBand, filter.priceBands());
+            BitSet merchantMask = union(s.byMerchant, filter.merchantIds());
+            BitSet stockMask = union(s.byStock, filter.stock());
+            BitSet statusMask = union(s.byStatus, filter.statuses());
+
+            BitSet matched = intersect(base, bandMask, merchantMask, stockMask, statusMask);
+            List<String> page = new ArrayList<>();
+            for (int i = matched.nextSetBit(0); i >= 0 && page.size() < limit; i = matched.nextSetBit(i + 1)) page.add(s.ids.get(i));
+
+            Counts counts = new Counts(
+                    count(s.byBand, intersect(base, null, merchantMask, stockMask, statusMask), new EnumMap<>(PriceBand.class)),
+                    count(s.byMerchant, intersect(base, bandMask, null, stockMask, statusMask), new TreeMap<>()),
+                    count(s.byStock, intersect(base, bandMask, merchantMask, null, statusMask), new EnumMap<>(StockState.class)),
+                    count(s.byStatus, intersect(base, bandMask, merchantMask, stockMask, null), new EnumMap<>(Enums.ProductStatus.class)));
+            return new Result(page, matched.cardinality(), counts);
+        }
+    }
+
+    /** 已索引的商品数 */
+    public synchronized int size() {
+        return state.live.cardinality();
+    }
+
+    /**
+     * 从仓储重新加载全部商品
+     */
+    public void rebuild() throws SQLException {
+        changes.reset();
+        refresh();
+    }
+
+    // 变更回调只记录 id；这里才回读库存、应用变更，重建时新位图在锁外构建
+    private void refresh() throws SQLException {
+        changes.refresh(this::load, this::install, this::apply);
+    }
+
+    private State load() throws SQLException {
+        State s = new State();
+        repository.forEach(s::put);
+        return s;
+    }
+
+    private synchronized void install(State s) {
+        state = s;
+    }
+
+    private synchronized void apply(Map<String, Product> batch) {
+        for (Map.Entry<String, Product> e : batch.entrySet()) {
+            if (e.getValue() == null) state.remove(e.getKey());
+            else state.put(e.getValue());
+        }
+    }
+
+    private static <K> void clear(Map<K, BitSet> facet, K key, int ord) {
+        if (key == null) return;
+        BitSet b = facet.get(key);
+        if (b == null) return;
+        b.clear(ord);
+        if (b.isEmpty()) facet.remove(key);
+    }
+
+    // 同一维度内取并集；未限定该维度时返回 null
+    private static <K> BitSet union(Map<K, BitSet> facet, Set<K> selected) {
+        if (selected.isEmpty()) return null;
+        BitSet res = new BitSet();
+        for (K k : selected) {
+            BitSet b = facet.get(k);
+            if (b != null) res.or(b);
+        }
+        return res;
+    }
+
+    private static BitSet intersect(BitSet base, BitSet... masks) {
+        BitSet res = (BitSet) base.clone();
+        for (BitSet m : masks) if (m != null) res.and(m);
+        return res;
+    }
+
+    private static <K, M extends Map<K, Integer>> M count(Map<K, BitSet> facet, BitSet within, M out) {
+        BitSet tmp = new BitSet();
+        for (Map.Entry<K, BitSet> e : facet.entrySet()) {
+            tmp.clear();
+            tmp.or(e.getValue());
+            tmp.and(within);
+            int n = tmp.cardinality();
+            if (n > 0) out.put(e.getKey(), n);
+        }
+        return out;
+    }
+}
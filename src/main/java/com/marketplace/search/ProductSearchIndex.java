@@ -0,0 +1,364 @@
+package com.marketplace.search;
+
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已发布商品标题与描述的内存倒排索引。
+ * - 中英混排文本用 {@link CjkNGramTokenizer} 切分：汉字为二元组，英文为单词
+ * - 词 -> 商品 id 集合；查询先取最小的倒排集合，再逐个检查其它集合，代价与命中数量相关而与商品总数无关
+ * - 查询语法见 {@link SearchQuery}：空白分隔的词按 AND 组合，"OR" 分隔的各组按 OR 组合
+ * - 每个查询词还要在候选商品的原文中整体出现（保证中文多字词的相邻关系，与原先的包含匹配一致）
+ * - 相关度为 BM25F 风格：标题命中权重高于描述，词频按字段长度归一化后饱和，罕见词（命中商品少）得分更高，有货商品再乘以加成
+ * - 容错搜索（{@link #searchFuzzy}）：匹配不到的拉丁字母词用 {@link BkTree} 在词典中找编辑距离相近的词代替
+ * - 变更回调只把商品 id 记入 {@link ProductChangeBuffer}，不加锁；下次查询前应用变更、回读库存；批量重置后在锁外整体重建，换一次引用发布
+ * 每个仓储共用一个索引实例，见 {@link #forRepository(ProductRepository)}。
+ */
+public final class ProductSearchIndex {
+    /** 一条命中：商品 id 与相关度得分 */
+    public record Hit(String productId, double score) {}
+
+    private record Doc(String id, String title, String description, int stock) {}
+
+    // BM25 参数：K1 控制词频饱和的快慢，B 控制字段长度归一化的强弱
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double TITLE_WEIGHT = 2.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    // 有货商品的得分加成
+    private static final double IN_STOCK_BOOST = 1.2;
+
+    private static final ProductChangeBuffer.Registry<ProductSearchIndex> INDEXES = new ProductChangeBuffer.Registry<>(r -> new ProductSearchIndex(r, new CjkNGramTokenizer()));
+
+    private final ProductRepository repository;
+    private final Tokenizer tokenizer;
+    private final ProductChangeBuffer changes;
+    // 查询不加锁，先取一次引用再读；增量变更在本对象锁内应用，重建时整体替换
+    private volatile State state = new State();
+
+    // 倒排表与文档；查询与增量更新并发进行，用并发容器
+    private final class State {
+        final ConcurrentSkipListMap<String, Set<String>> postings = new ConcurrentSkipListMap<>();
+        final ConcurrentHashMap<String, Doc> docs = new ConcurrentHashMap<>();
+        // 全部文档的标题、描述总长度，用于计算平均字段长度
+        final AtomicLong titleChars = new AtomicLong();
+        final AtomicLong descriptionChars = new AtomicLong();
+        // 词典中拉丁字母词的 BK 树，容错搜索用；倒排集合清空的词不从树中删除，只计数，失效过多时重建
+        final BkTree fuzzyTerms = new BkTree();
+        int fuzzyDead;
+
+        void add(Product p) {
+            Doc d = new Doc(p.getProductId(), lower(p.getTitle()), lower(p.getDescription()), p.getStock());
+            docs.put(d.id(), d);
+            titleChars.addAndGet(d.title().length());
+            descriptionChars.addAndGet(d.description().length());
+            for (String t : distinctTokens(d)) {
+                if (!postings.containsKey(t) && isFuzzyTerm(t)) fuzzyTerms.add(t);
+                postings.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(d.id());
+            }
+        }
+
+        void remove(String id) {
+            Doc d = docs.remove(id);
+            if (d == null) return;
+            titleChars.addAndGet(-d.title().length());
+            descriptionChars.addAndGet(-d.description().length());
+            for (String t : distinctTokens(d)) {
+                postings.computeIfPresent(t, (k, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+                if (!postings.containsKey(t) && isFuzzyTerm(t)) fuzzyDead++;
+            }
+        }
+    }
+
+    public ProductSearchIndex(ProductRepository repository, Tokenizer tokenizer) {
+        this.repository = repository;
+        this.tokenizer = tokenizer;
+        this.changes = new ProductChangeBuffer(repository, this);
+    }
+
+    /**
+     * 仓储对应的共享索引（首次查询时订阅变更并加载）
+     */
+    public static ProductSearchIndex forRepository(ProductRepository repository) {
+        return INDEXES.get(repository);
+    }
+
+    /**
+     * 查询并按相关度返回得分最高的 limit 条命中（同分按 id 排序）；多组 OR 条件取各组得分的最大值
+     */
+    public List<Hit> search(String query, int limit) throws SQLException {
+        refresh();
+        return rank(state, SearchQuery.parse(query), Map.of(), limit);
+    }
+
+    /**
+     * 容错搜索：精确（含前缀）匹配不到的拉丁字母词，在词典中找编辑距离最小（3~5 个字母允许 1 处差异，更长允许 2 处）、
+     * 命中商品最多的词代替，例如 "jave" 按 "java" 查询；被替换的词得分按 1 / (1 + 距离) 打折。其它规则同 {@link #search}
+     */
+    public List<Hit> searchFuzzy(String query, int limit) throws SQLException {
+        refresh();
+        State s = state;
+        List<List<String>> groups = new ArrayList<>();
+        Map<String, Double> discounts = new HashMap<>();
+        // BK 树随增量变更修改，纠错期间持有索引锁
+        synchronized (this) {
+            for (List<String> group : SearchQuery.parse(query)) {
+                List<String> resolved = new ArrayList<>();
+                for (String t : group) {
+                    if (!matchTerm(s, t).isEmpty()) {
+                        resolved.add(t);
+                        continue;
+                    }
+                    BkTree.Match m = correct(s, t);
+                    if (m == null) {
+                        resolved = null;
+                        break;
+                    }
+                    resolved.add(m.term());
+                    discounts.merge(m.term(), 1.0 / (1 + m.distance()), Math::min);
+                }
+                if (resolved != null) groups.add(resolved);
+            }
+        }
+        return rank(s, groups, discounts, limit);
+    }
+
+    /**
+     * @param discounts 需要打折的词及其系数
+     */
+    private List<Hit> rank(State s, List<List<String>> groups, Map<String, Double> discounts, int limit) {
+        Map<String, Set<String>> termMatches = new HashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        int n = Math.max(1, s.docs.size());
+        double avgTitle = (double) s.titleChars.get() / n;
+        double avgDescription = (double) s.descriptionChars.get() / n;
+        for (List<String> group : groups) {
+            for (String id : matchGroup(s, group, termMatches)) {
+                Doc d = s.docs.get(id);
+                if (d == null) continue;
+                double score = 0;
+                for (String t : group) score += termScore(d, t, termMatches.get(t).size(), n, avgTitle, avgDescription) * discounts.getOrDefault(t, 1.0);
+                if (d.stock() > 0) score *= IN_STOCK_BOOST;
+                scores.merge(id, score, Math::max);
+            }
+        }
+        return topK(scores, limit);
+    }
+
+    /** 已索引的商品数 */
+    public int size() {
+        return state.docs.size();
+    }
+
+    /** 词典中的词数 */
+    public int termCount() {
+        return state.postings.size();
+    }
+
+    /**
+     * 从仓储重新加载全部已发布商品
+     */
+    public void rebuild() throws SQLException {
+        changes.reset();
+        refresh();
+    }
+
+    // 变更回调只记录 id；这里才回读库存、应用变更，重建时新倒排表在锁外构建
+    private void refresh() throws SQLException {
+        changes.refresh(this::load, this::install, this::apply);
+    }
+
+    private State load() throws SQLException {
+        State s = new State();
+        repository.forEach(p -> {
+            if (p.getStatus() == Enums.ProductStatus.PUBLISHED) s.add(p);
+        });
+        return s;
+    }
+
+    private synchronized void install(State s) {
+        state = s;
+    }
+
+    private synchronized void apply(Map<String, Product> batch) {
+        State s = state;
+        for (Map.Entry<String, Product> e : batch.entrySet()) {
+            s.remove(e.getKey());
+            Product p = e.getValue();
+            if (p != null && p.getStatus() == Enums.ProductStatus.PUBLISHED) s.add(p);
+        }
+    }
+
+    private Set<String> distinctTokens(Doc d) {
+        Set<String> tokens = new HashSet<>(tokenizer.tokenize(d.title()));
+        tokens.addAll(tokenizer.tokenize(d.description()));
+        return tokens;
+    }
+
+    /**
+     * 一组 AND 词：从候选最少的词开始逐个过滤；各词的命中集合记入 termMatches，同时用于计算词的稀有度
+     */
+    private Collection<String> matchGroup(State s, List<String> terms, Map<String, Set<String>> termMatches) {
+        List<Set<String>> perTerm = new ArrayList<>();
+        for (String term : terms) {
+            Set<String> ids = termMatches.computeIfAbsent(term, t -> matchTerm(s, t));
+            if (ids.isEmpty()) return List.of();
+            perTerm.add(ids);
+        }
+        perTerm.sort(Comparator.comparingInt(Set::size));
+        List<String> res = new ArrayList<>();
+        outer:
+        for (String id : perTerm.get(0)) {
+            for (int i = 1; i < perTerm.size(); i++) {
+                if (!perTerm.get(i).contains(id)) continue outer;
+            }
+            res.add(id);
+        }
+        return res;
+    }
+
+    /**
+     * 单个查询词：倒排集合求交得到候选，再校验原文中整体出现
+     */
+    private Set<String> matchTerm(State s, String term) {
+        List<Set<String>> lists = new ArrayList<>();
+        for (String t : new LinkedHashSet<>(tokenizer.tokenizeQuery(term))) {
+            Set<String> ids = postingsFor(s, t);
+            if (ids.isEmpty()) return Set.of();
+            lists.add(ids);
+        }
+        Set<String> res = new HashSet<>();
+        if (lists.isEmpty()) {
+            // 查询词里没有可索引的字符（例如只有标点），只能逐个检查
+            for (Doc d : s.docs.values()) if (contains(d, term)) res.add(d.id());
+            return res;
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        outer:
+        for (String id : lists.get(0)) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id)) continue outer;
+            }
+            Doc d = s.docs.get(id);
+            if (d != null && contains(d, term)) res.add(id);
+        }
+        return res;
+    }
+
+    /**
+     * 在 BK 树中为 term 找替换词：距离最小者优先，同距离取命中商品最多的
+     */
+    private BkTree.Match correct(State s, String term) {
+        if (!isFuzzyTerm(term)) return null;
+        if (s.fuzzyDead > s.fuzzyTerms.size() / 2) {
+            s.fuzzyTerms.clear();
+            for (String t : s.postings.keySet()) if (isFuzzyTerm(t)) s.fuzzyTerms.add(t);
+            s.fuzzyDead = 0;
+        }
+        int maxDistance = term.length() <= 5 ? 1 : 2;
+        BkTree.Match best = null;
+        int bestCount = 0;
+        for (BkTree.Match m : s.fuzzyTerms.search(term, maxDistance)) {
+            Set<String> ids = s.postings.get(m.term());
+            if (ids == null) continue; // 已失效的词
+            if (best == null || m.distance() < best.distance() || (m.distance() == best.distance() && ids.size() > bestCount)) {
+                best = m;
+                bestCount = ids.size();
+            }
+        }
+        return best;
+    }
+
+    // 参与容错匹配的词：不短于 3 个字符的拉丁字母/数字词（更短的词编辑距离 1 以内的候选太多）
+    private static boolean isFuzzyTerm(String t) {
+        if (t.length() < 3) return false;
+        for (int i = 0; i < t.length(); ) {
+            int cp = t.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp) || CjkNGramTokenizer.isCjk(cp)) return false;
+            i += Character.charCount(cp);
+        }
+        return true;
+    }
+
+    private Set<String> postingsFor(State s, String token) {
+        if (!tokenizer.prefixMatch(token)) {
+            Set<String> ids = s.postings.get(token);
+            return ids == null ? Set.of() : ids;
+        }
+        Map<String, Set<String>> range = s.postings.subMap(token, true, token + Character.MAX_VALUE, true);
+        if (range.size() == 1) return range.values().iterator().next();
+        Set<String> union = new HashSet<>();
+        for (Set<String> ids : range.values()) union.addAll(ids);
+        return union;
+    }
+
+    private static boolean contains(Doc d, String term) {
+        return d.title().contains(term) || d.description().contains(term);
+    }
+
+    /**
+     * 单个词的 BM25F 得分：两个字段的词频各自按长度归一化后加权求和，再做饱和并乘以 idf
+     * @param df 命中该词的商品数
+     */
+    private static double termScore(Doc d, String term, int df, int n, double avgTitle, double avgDescription) {
+        double tf = TITLE_WEIGHT * occurrences(d.title(), term) / lengthNorm(d.title().length(), avgTitle)
+                + DESCRIPTION_WEIGHT * occurrences(d.description(), term) / lengthNorm(d.description().length(), avgDescription);
+        double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+        return idf * tf * (K1 + 1) / (tf + K1);
+    }
+
+    private static double lengthNorm(int length, double avgLength) {
+        return avgLength <= 0 ? 1 : 1 - B + B * length / avgLength;
+    }
+
+    private static int occurrences(String text, String term) {
+        if (term.isEmpty()) return 0;
+        int count = 0;
+        for (int i = text.indexOf(term); i >= 0; i = text.indexOf(term, i + term.length())) count++;
+        return count;
+    }
+
+    /**
+     * 用容量为 limit 的最小堆选出得分最高的命中，不对全部命中排序
+     */
+    private static List<Hit> topK(Map<String, Double> scores, int limit) {
+        if (limit <= 0 || scores.isEmpty()) return List.of();
+        Comparator<Hit> worstFirst = Comparator.comparingDouble(Hit::score).thenComparing(Hit::productId, Comparator.reverseOrder());
+        PriorityQueue<Hit> heap = new PriorityQueue<>(Math.min(limit, scores.size()), worstFirst);
+        for (Map.Entry<String, Double> e : scores.entrySet()) {
+            Hit h = new Hit(e.getKey(), e.getValue());
+            if (heap.size() < limit) heap.add(h);
+            else if (worstFirst.compare(h, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(h);
+            }
+        }
+        List<Hit> res = new ArrayList<>(heap);
+        res.sort(worstFirst.reversed());
+        return res;
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,33 @@
+package com.marketplace.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 搜索框查询语法：空白分隔的词按 AND 组合，"OR" 或 "|" 分隔的各组按 OR 组合，
+ * 例如 "无线 耳机 OR 耳塞"。各种搜索实现（内存索引、FTS5）共用此解析结果。
+ */
+public final class SearchQuery {
+    private SearchQuery() {}
+
+    /**
+     * 解析查询：返回 OR 连接的各组，每组为 AND 连接的小写查询词；没有有效词时返回空列表
+     */
+    public static List<List<String>> parse(String query) {
+        List<List<String>> groups = new ArrayList<>();
+        if (query == null) return groups;
+        List<String> current = new ArrayList<>();
+        for (String w : query.trim().split("\\s+")) {
+            if (w.isEmpty() || w.equals("AND")) continue;
+            if (w.equals("OR") || w.equals("|")) {
+                if (!current.isEmpty()) groups.add(current);
+                current = new ArrayList<>();
+            } else {
+                current.add(w.toLowerCase(Locale.ROOT));
+            }
+        }
+        if (!current.isEmpty()) groups.add(current);
+        return groups;
+    }
+}
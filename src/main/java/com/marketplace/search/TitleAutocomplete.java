@@ -0,0 +1,316 @@
+package com.marketplace.search;
+
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 搜索框输入联想：已发布商品标题的前缀树。
+ * - 每个标题以整体及其中每个单词的开头（空白之后）作为键插入，输入 "pro" 也能联想到 "MacBook Pro"
+ * - 子节点按字符排序存放在数组里，二分查找，比每个节点一个 HashMap 紧凑
+ * - 每个节点缓存子树中权重最高的若干条建议，查询只需沿前缀走到节点，与商品总数无关
+ * - 权重为本次启动以来的购买次数（由扣库存事件计数），同权重按标题排序
+ * - 变更回调只把商品 id 记入 {@link ProductChangeBuffer}、累加购买次数，不加锁；下次查询前再增量更新，重置后在锁外重建再替换
+ * - 库存变化只影响购买次数，不回读商品
+ * - 删除或下架使节点缓存可能不完整时标记为脏，下次查询该节点时从子树重新统计
+ * 每个仓储共用一个实例，见 {@link #forRepository(ProductRepository)}。
+ */
+public final class TitleAutocomplete {
+    /** 一条联想建议 */
+    public record Suggestion(String title, String productId, long weight) {}
+
+    // 每个节点缓存的建议条数，也是单次查询能返回的上限
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final ProductChangeBuffer.Registry<TitleAutocomplete> INSTANCES = new ProductChangeBuffer.Registry<>(TitleAutocomplete::new);
+    private static final Comparator<Entry> BEST_FIRST = Comparator.comparingLong((Entry e) -> e.weight).reversed()
+            .thenComparing(e -> e.title).thenComparing(e -> e.productId);
+
+    private static final class Entry {
+        final String productId;
+        // 规范化后的标题（用作键），display 为原始标题
+        final String title;
+        final String display;
+        long weight;
+
+        Entry(String productId, String title, String display, long weight) {
+            this.productId = productId;
+            this.title = title;
+            this.display = display;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        // 以该节点结尾的键对应的商品
+        List<Entry> ends = List.of();
+        List<Entry> top = new ArrayList<>();
+        boolean dirty;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] ch = new Node[children.length + 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(children, 0, ch, 0, at);
+            k[at] = c;
+            ch[at] = new Node();
+            System.arraycopy(keys, at, k, at + 1, keys.length - at);
+            System.arraycopy(children, at, ch, at + 1, children.length - at);
+            keys = k;
+            children = ch;
+            return ch[at];
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i < 0) return;
+            char[] k = new char[keys.length - 1];
+            Node[] ch = new Node[children.length - 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(children, 0, ch, 0, i);
+            System.arraycopy(keys, i + 1, k, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, ch, i, children.length - i - 1);
+            keys = k;
+            children = ch;
+        }
+
+        boolean isEmpty() {
+            return keys.length == 0 && ends.isEmpty();
+        }
+    }
+
+    // 前缀树与 id 表；重建时在锁外构建一份新的再整体替换
+    private final class State {
+        final Node root = new Node();
+        final Map<String, Entry> byId = new HashMap<>();
+
+        void put(Product p) {
+            Entry old = byId.get(p.getProductId());
+            String title = normalize(p.getTitle());
+            boolean visible = p.getStatus() == Enums.ProductStatus.PUBLISHED && !title.isEmpty();
+            if (old != null && visible && old.display.equals(p.getTitle())) {
+                updateWeight(old);
+                return;
+            }
+            if (old != null) remove(p.getProductId());
+            if (!visible) return;
+            Entry e = new Entry(p.getProductId(), title, p.getTitle(), purchases.getOrDefault(p.getProductId(), 0L));
+            byId.put(e.productId, e);
+            for (String key : keys(e.title)) {
+                Node n = root;
+                for (int i = 0; i < key.length(); i++) {
+                    n = n.childOrCreate(key.charAt(i));
+                    offer(n, e);
+                }
+                if (n.ends.isEmpty()) n.ends = new ArrayList<>(1);
+                n.ends.add(e);
+            }
+        }
+
+        // 权重只增不减：沿途节点缓存里已有它的重新排序，没有的看能否挤进前列
+        void updateWeight(Entry e) {
+            long weight = purchases.getOrDefault(e.productId, 0L);
+            if (weight == e.weight) return;
+            e.weight = weight;
+            for (String key : keys(e.title)) {
+                Node n = root;
+                for (int i = 0; i < key.length(); i++) {
+                    n = n.child(key.charAt(i));
+                    offer(n, e);
+                }
+            }
+        }
+
+        void remove(String productId) {
+            Entry e = byId.remove(productId);
+            if (e == null) return;
+            for (String key : keys(e.title)) removeKey(root, key, 0, e);
+        }
+
+        // 返回该节点删除后是否已空（由父节点摘除）
+        private boolean removeKey(Node n, String key, int depth, Entry e) {
+            if (depth == key.length()) {
+                n.ends.remove(e);
+            } else {
+                char c = key.charAt(depth);
+                Node child = n.child(c);
+                if (child == null) return false;
+                if (removeKey(child, key, depth + 1, e)) n.removeChild(c);
+            }
+            // 缓存已满时子树里可能还有排在后面的建议，需要重新统计；未满说明缓存即子树全部，直接移除即可
+            if (n.top.size() >= MAX_SUGGESTIONS && n.top.contains(e)) n.dirty = true;
+            n.top.remove(e);
+            return n != root && n.isEmpty();
+        }
+    }
+
+    private final ProductRepository repository;
+    private final ProductChangeBuffer changes;
+    // 按商品 id 累计的购买次数，重建与重新上架后保留；在写线程上无锁累加
+    private final Map<String, Long> purchases;
+    // 购买次数变化、尚未更新到前缀树的商品
+    private final Set<String> bought;
+    // 只在持有本对象锁时读写
+    private State state = new State();
+
+    public TitleAutocomplete(ProductRepository repository) {
+        this.repository = repository;
+        // 计数回调只引用计数表，不引用本对象，见 ProductChangeBuffer
+        Map<String, Long> counts = new ConcurrentHashMap<>();
+        Set<String> touched = ConcurrentHashMap.newKeySet();
+        this.purchases = counts;
+        this.bought = touched;
+        // 先计数再登记：更新权重时先摘除登记再读计数，不会漏掉
+        this.changes = new ProductChangeBuffer(repository, this, id -> {
+            counts.merge(id, 1L, Long::sum);
+            touched.add(id);
+        });
+    }
+
+    /**
+     * 仓储对应的共享实例（首次查询时订阅变更并加载）
+     */
+    public static TitleAutocomplete forRepository(ProductRepository repository) {
+        return INSTANCES.get(repository);
+    }
+
+    /**
+     * 以 prefix 开头的标题（或标题中的单词）中权重最高的至多 limit 条，标题相同的只保留一条
+     */
+    public List<Suggestion> suggest(String prefix, int limit) throws SQLException {
+        refresh();
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) return List.of();
+        synchronized (this) {
+            applyPurchases();
+            Node n = state.root;
+            for (int i = 0; i < key.length() && n != null; i++) n = n.child(key.charAt(i));
+            if (n == null) return List.of();
+            if (n.dirty) recompute(n);
+            List<Suggestion> res = new ArrayList<>();
+            Set<String> titles = new LinkedHashSet<>();
+            for (Entry e : n.top) {
+                if (res.size() >= Math.min(limit, MAX_SUGGESTIONS)) break;
+                if (titles.add(e.title)) res.add(new Suggestion(e.display, e.productId, e.weight));
+            }
+            return res;
+        }
+    }
+
+    /** 已收录的商品数 */
+    public synchronized int size() {
+        return state.byId.size();
+    }
+
+    /**
+     * 从仓储重新加载全部已发布商品
+     */
+    public void rebuild() throws SQLException {
+        changes.reset();
+        refresh();
+    }
+
+    /**
+     * 应用缓冲的变更；首次调用或重置后会遍历整个仓储，界面可在后台线程上提前调用
+     */
+    public void refresh() throws SQLException {
+        changes.refresh(this::load, this::install, this::apply);
+    }
+
+    private State load() throws SQLException {
+        State s = new State();
+        repository.forEach(s::put);
+        return s;
+    }
+
+    private synchronized void install(State s) {
+        state = s;
+    }
+
+    private synchronized void apply(Map<String, Product> batch) {
+        for (Map.Entry<String, Product> e : batch.entrySet()) {
+            if (e.getValue() != null) {
+                state.put(e.getValue());
+                continue;
+            }
+            state.remove(e.getKey());
+            purchases.remove(e.getKey());
+        }
+    }
+
+    // 调用方持有本对象锁
+    private void applyPurchases() {
+        for (Iterator<String> it = bought.iterator(); it.hasNext(); ) {
+            Entry e = state.byId.get(it.next());
+            it.remove();
+            if (e != null) state.updateWeight(e);
+        }
+    }
+
+    private static void offer(Node n, Entry e) {
+        if (n.dirty) return;
+        int i = n.top.indexOf(e);
+        if (i >= 0) {
+            n.top.sort(BEST_FIRST);
+            return;
+        }
+        if (n.top.size() >= MAX_SUGGESTIONS && BEST_FIRST.compare(e, n.top.get(n.top.size() - 1)) >= 0) return;
+        int at = Collections.binarySearch(n.top, e, BEST_FIRST);
+        n.top.add(at < 0 ? -at - 1 : at, e);
+        if (n.top.size() > MAX_SUGGESTIONS) n.top.remove(n.top.size() - 1);
+    }
+
+    private static void recompute(Node n) {
+        Map<Entry, Boolean> all = new IdentityHashMap<>();
+        collect(n, all);
+        List<Entry> sorted = new ArrayList<>(all.keySet());
+        sorted.sort(BEST_FIRST);
+        n.top = new ArrayList<>(sorted.subList(0, Math.min(MAX_SUGGESTIONS, sorted.size())));
+        n.dirty = false;
+    }
+
+    private static void collect(Node n, Map<Entry, Boolean> out) {
+        for (Entry e : n.ends) out.put(e, Boolean.TRUE);
+        for (Node c : n.children) collect(c, out);
+    }
+
+    /** 标题整体以及每个空白之后的单词开头 */
+    private static Set<String> keys(String title) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(title);
+        for (int i = 1; i < title.length(); i++) {
+            if (title.charAt(i - 1) == ' ' && title.charAt(i) != ' ') keys.add(title.substring(i));
+        }
+        return keys;
+    }
+
+    // 小写、去掉首尾空白、连续空白合并为一个空格
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,25 @@
+package com.marketplace.search;
+
+import java.util.List;
+
+/**
+ * 把文本切分为索引词。建索引与解析查询必须使用同一个分词器。
+ */
+public interface Tokenizer {
+    /** 按出现顺序返回小写的词，可包含重复 */
+    List<String> tokenize(String text);
+
+    /**
+     * 切分查询词，默认与建索引相同；分词器可以省去查询时不需要的词
+     */
+    default List<String> tokenizeQuery(String text) {
+        return tokenize(text);
+    }
+
+    /**
+     * 查询词 token 是否按前缀匹配索引词典（例如单词 "ip" 命中 "iphone"），否则精确匹配
+     */
+    default boolean prefixMatch(String token) {
+        return false;
+    }
+}
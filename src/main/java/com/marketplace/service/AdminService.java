@@ -1,54 +1,67 @@
 package com.marketplace.service;
 
-import com.marketplace.db.DBUtil;
-
-import java.sql.Connection;
-import java.sql.PreparedStatement;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
-import com.marketplace.dao.ProductDAO;
+
+import com.google.gson.stream.JsonWriter;
+import com.marketplace.dao.BanRepository;
+import com.marketplace.dao.CachingProductRepository;
+import com.marketplace.dao.ProductChange;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.StockLedger;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.StorageEngines;
+import com.marketplace.dao.UserRepository;
+import com.marketplace.db.DBUtil;
+import com.marketplace.db.DataGenerator;
+import com.marketplace.db.SlowQueryLog;
+import com.marketplace.db.SqlMetrics;
 import com.marketplace.models.Enums;
 
 /**
  * 管理员服务：提供封禁/解封电话和检查封禁状态的操作。
  */
 public class AdminService {
-    
+    private final StorageEngine engine;
+    private final BanRepository bans;
+    private final ProductRepository products;
+    private final UserRepository users;
+
+    public AdminService() {
+        this(StorageEngines.getDefault());
+    }
+
+    public AdminService(StorageEngine engine) {
+        this.engine = engine;
+        this.bans = engine.bans();
+        this.products = engine.products();
+        this.users = engine.users();
+    }
+
     public boolean banPhone(String phone, String reason) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO banned (phone, reason) VALUES (?, ?)") ) {
-            ps.setString(1, phone);
-            ps.setString(2, reason);
-            return ps.executeUpdate() > 0;
-        }
+        return bans.banPhone(phone, reason);
     }
 
     public boolean unbanPhone(String phone) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("DELETE FROM banned WHERE phone = ?") ) {
-            ps.setString(1, phone);
-            return ps.executeUpdate() > 0;
-        }
+        return bans.unbanPhone(phone);
     }
 
     /**
      * 判断手机号是否已被封禁
      */
     public boolean isBanned(String phone) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("SELECT phone FROM banned WHERE phone = ?")) {
-            ps.setString(1, phone);
-            try (java.sql.ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        }
+        return bans.isBanned(phone);
     }
 
     /**
      * 管理员强制删除商品
      */
     public boolean forceDeleteProduct(String productId) throws SQLException {
-        ProductDAO dao = new ProductDAO();
-        dao.deleteProduct(productId);
+        products.deleteProduct(productId);
         return true;
     }
 
@@ -56,68 +69,144 @@ public class AdminService {
      * 管理员封禁商品（记录到 banned_products）
      */
     public boolean banProduct(String productId, String reason) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO banned_products (product_id, reason) VALUES (?, ?)") ) {
-            ps.setString(1, productId);
-            ps.setString(2, reason);
-            return ps.executeUpdate() > 0;
-        }
+        return bans.banProduct(productId, reason);
     }
 
     /**
      * 解除商品封禁
      */
     public boolean unbanProduct(String productId) throws SQLException {
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement("DELETE FROM banned_products WHERE product_id = ?") ) {
-            ps.setString(1, productId);
-            return ps.executeUpdate() > 0;
-        }
+        return bans.unbanProduct(productId);
     }
 
     public void clearAllData() throws SQLException {
-        DBUtil.clearAllData();
+        engine.clearAllData();
     }
 
     public void seedSampleData() throws SQLException {
-        DBUtil.seedSampleData();
+        engine.seedSampleData();
     }
 
-    public java.util.List<String> listBannedProductsSorted() throws SQLException {
-        java.util.List<String> res = new java.util.ArrayList<>();
-        String sql = "SELECT p.id, p.title FROM products p JOIN banned_products b ON p.id = b.product_id ORDER BY p.title COLLATE NOCASE ASC";
-        try (Connection c = DBUtil.getConnection(); PreparedStatement ps = c.prepareStatement(sql); java.sql.ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) res.add(rs.getString("id") + " | " + rs.getString("title"));
+    /**
+     * 生成大规模测试数据（仅 SQLite 存储引擎，直接批量写入默认库）
+     */
+    public DataGenerator.Report generateData(DataGenerator.Config config) throws SQLException {
+        if (!"sqlite".equals(engine.name())) {
+            throw new UnsupportedOperationException("Data generation is only supported on the sqlite storage engine, current: " + engine.name());
+        }
+        return new DataGenerator(DBUtil.database(), config).generate();
+    }
+
+    /**
+     * SQL 执行统计报表（按累计耗时排序，最多 limit 条）
+     */
+    public String sqlMetricsReport(int limit) {
+        return SqlMetrics.global().dump(limit);
+    }
+
+    /**
+     * 清零 SQL 执行统计
+     */
+    public void resetSqlMetrics() {
+        SqlMetrics.global().reset();
+    }
+
+    /**
+     * 最近记录的慢查询（从旧到新），未启用慢查询记录时返回空列表
+     */
+    public java.util.List<SlowQueryLog.Entry> recentSlowQueries() {
+        SlowQueryLog log = SqlMetrics.global().getSlowQueryLog();
+        return log == null ? java.util.List.of() : log.recent();
+    }
+
+    /**
+     * 以 JSON Lines 格式导出全部商品（每行一个商品，不含商家手机号），流式遍历，内存占用与商品数量无关
+     * @return 导出的商品数
+     */
+    public long exportProducts(Path file) throws SQLException, IOException {
+        long[] count = {0};
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            products.forEach(p -> {
+                try {
+                    JsonWriter json = new JsonWriter(out);
+                    json.beginObject()
+                            .name("id").value(p.getProductId())
+                            .name("title").value(p.getTitle())
+                            .name("description").value(p.getDescription())
+                            .name("price").value(p.getPrice())
+                            .name("stock").value(p.getStock())
+                            .name("status").value(p.getStatus().name())
+                            .name("merchantId").value(p.getMerchantId())
+                            .name("createdAt").value(p.getCreatedAt())
+                            .endObject();
+                    json.flush();
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
         }
-        return res;
+        return count[0];
+    }
+
+    /**
+     * 商品读缓存统计，当前存储引擎未启用缓存时返回 null
+     */
+    public CachingProductRepository.Stats productCacheStats() {
+        return products instanceof CachingProductRepository c ? c.stats() : null;
+    }
+
+    /**
+     * 库存台账写回时发现的超卖（商品 id -> 差额，累计），当前存储引擎未使用库存台账时返回 null
+     */
+    public java.util.Map<String, Integer> stockOversold() {
+        StockLedger ledger = stockLedger();
+        return ledger == null ? null : ledger.oversold();
+    }
+
+    /**
+     * 库存台账后台写回最近一次失败的原因，写回正常或未使用库存台账时返回 null
+     */
+    public SQLException stockLedgerFlushFailure() {
+        StockLedger ledger = stockLedger();
+        return ledger == null ? null : ledger.lastFlushFailure();
+    }
+
+    private StockLedger stockLedger() {
+        ProductRepository p = products instanceof CachingProductRepository c ? c.getDelegate() : products;
+        return p instanceof StockLedger l ? l : null;
+    }
+
+    /**
+     * 商品变更日志中最近的至多 n 条（按序号递增），当前存储引擎不记录变更日志时返回 null
+     */
+    public java.util.List<ProductChange> recentProductChanges(int n) throws SQLException {
+        try {
+            return products.readChanges(Math.max(0, products.latestChangeSequence() - n), n);
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public java.util.List<String> listBannedProductsSorted() throws SQLException {
+        return bans.listBannedProductsSorted();
     }
 
     /**
      * 列出所有被封禁的手机号（按数字大小排序，尽量按整数排序）
      */
     public java.util.List<String> listBannedPhonesSorted() throws SQLException {
-        java.util.List<String> res = new java.util.ArrayList<>();
-        String sql = "SELECT phone FROM banned ORDER BY CAST(phone AS INTEGER) ASC, phone ASC";
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             java.sql.ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) res.add(rs.getString("phone"));
-        }
-        return res;
+        return bans.listBannedPhonesSorted();
     }
 
     /**
      * 列出所有注册用户的手机号（按数字大小排序）
      */
     public java.util.List<String> listAllUserPhonesSorted() throws SQLException {
-        java.util.List<String> res = new java.util.ArrayList<>();
-        String sql = "SELECT phone FROM users WHERE phone IS NOT NULL ORDER BY CAST(phone AS INTEGER) ASC, phone ASC";
-        try (Connection c = DBUtil.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             java.sql.ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) res.add(rs.getString("phone"));
-        }
-        return res;
+        return users.listPhonesSorted();
     }
 
     /**
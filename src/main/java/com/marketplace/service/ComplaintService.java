@@ -1,6 +1,8 @@
 package com.marketplace.service;
 
-import com.marketplace.dao.ComplaintDAO;
+import com.marketplace.dao.ComplaintRepository;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.StorageEngines;
 import com.marketplace.models.Complaint;
 import com.marketplace.models.Enums;
 
@@ -11,7 +13,15 @@ import java.util.UUID;
  * 投诉服务：提供更高层的提交投诉接口（供UI/控制台调用）
  */
 public class ComplaintService {
-    private final ComplaintDAO dao = new ComplaintDAO();
+    private final ComplaintRepository dao;
+
+    public ComplaintService() {
+        this(StorageEngines.getDefault());
+    }
+
+    public ComplaintService(StorageEngine engine) {
+        this.dao = engine.complaints();
+    }
 
    
     public boolean submitComplaint(String userId, String targetId, Enums.ComplaintType type) {
@@ -0,0 +1,392 @@
+package com.marketplace.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.StorageEngines;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+
+/**
+ * 商家批量导入商品：流式读取 CSV 或 JSON Lines，逐行校验，按批在一个事务中写入。
+ * - 内存占用只与批大小有关，与文件大小无关
+ * - 校验失败的行记下行号与原因后跳过，不影响其它行
+ * - 整批因行内容写入失败（约束冲突、数据类型不符）时改为逐行保存，找出出错的行；连接、锁等故障直接抛出
+ * - 搜索索引、缓存等派生结构每批只收到一次通知
+ * 字段：title、price、stock 必填，description、status（PUBLISHED 或 DRAFT，默认 PUBLISHED）、id 可选；
+ * 给出 id 时按 id 更新已有商品，但不能覆盖其他商家的商品。CSV 第一行为表头，列顺序任意。
+ */
+public class ProductImportService {
+    public enum Format {
+        CSV, JSONL;
+
+        /** 按扩展名判断：.csv 为 CSV，其余按 JSON Lines */
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSONL;
+        }
+    }
+
+    /** 一行导入失败的原因，line 为文件中的行号（从 1 开始） */
+    public record RowError(long line, String message) {}
+
+    /**
+     * 导入结果：成功与失败的行数，以及至多 {@link #MAX_REPORTED_ERRORS} 条失败明细
+     */
+    public record Report(long imported, long failed, List<RowError> errors) {}
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_TITLE_LENGTH = 200;
+    // CSV 单条记录（含引号内换行）的字符数上限
+    private static final int MAX_RECORD_LENGTH = 1 << 16;
+
+    private final ProductRepository products;
+    private final int batchSize;
+
+    public ProductImportService() {
+        this(StorageEngines.getDefault());
+    }
+
+    public ProductImportService(StorageEngine engine) {
+        this(engine, Integer.getInteger("marketplace.import.batchSize", 1000));
+    }
+
+    public ProductImportService(StorageEngine engine, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        this.products = engine.products();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 导入文件，格式按扩展名判断
+     */
+    public Report importFile(Path file, String merchantId, String merchantPhone) throws SQLException, IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importProducts(in, Format.of(file), merchantId, merchantPhone);
+        }
+    }
+
+    /**
+     * 从 in 读取商品并以 merchantId 的名义发布
+     * @throws IOException 读取失败或 CSV 表头缺少必填列
+     */
+    public Report importProducts(Reader in, Format format, String merchantId, String merchantPhone) throws SQLException, IOException {
+        Tally tally = new Tally();
+        List<Product> batch = new ArrayList<>(batchSize);
+        List<Long> lines = new ArrayList<>(batchSize);
+        RowSource rows = format == Format.CSV ? new CsvRows(in) : new JsonRows(in);
+        for (Row row = rows.next(); row != null; row = rows.next()) {
+            try {
+                if (row.error() != null) throw new IllegalArgumentException(row.error());
+                batch.add(toProduct(row.fields(), merchantId, merchantPhone));
+                lines.add(row.line());
+            } catch (IllegalArgumentException e) {
+                tally.fail(row.line(), e.getMessage());
+                continue;
+            }
+            if (batch.size() >= batchSize) flush(batch, lines, merchantId, tally);
+        }
+        flush(batch, lines, merchantId, tally);
+        // 归属检查在整批写入前进行，失败明细按行号排列
+        tally.errors.sort(Comparator.comparingLong(RowError::line));
+        return new Report(tally.imported, tally.failed, tally.errors);
+    }
+
+    private void flush(List<Product> batch, List<Long> lines, String merchantId, Tally tally) throws SQLException {
+        rejectForeign(batch, lines, merchantId, tally);
+        if (batch.isEmpty()) return;
+        try {
+            products.saveAll(batch);
+            tally.imported += batch.size();
+        } catch (SQLException e) {
+            if (!isRowError(e)) throw e;
+            // 整批已回滚，逐行重试以定位出错的行
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    products.save(batch.get(i));
+                    tally.imported++;
+                } catch (SQLException ex) {
+                    tally.fail(lines.get(i), "保存失败: " + ex.getMessage());
+                }
+            }
+        }
+        batch.clear();
+        lines.clear();
+    }
+
+    // 由某一行的内容引起的错误：标准的约束 / 数据异常，SQLState 22、23 类，或 SQLite 主结果码
+    // SQLITE_TOOBIG(18)、SQLITE_CONSTRAINT(19)、SQLITE_MISMATCH(20)、SQLITE_RANGE(25)
+    private static boolean isRowError(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLIntegrityConstraintViolationException || t instanceof SQLDataException) return true;
+            if (!(t instanceof SQLException s)) continue;
+            String state = s.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) return true;
+            int code = s.getErrorCode() & 0xff;
+            if (code == 18 || code == 19 || code == 20 || code == 25) return true;
+        }
+        return false;
+    }
+
+    // 一次批量查询本批中已存在的商品，剔除属于其他商家的行
+    private void rejectForeign(List<Product> batch, List<Long> lines, String merchantId, Tally tally) throws SQLException {
+        if (batch.isEmpty()) return;
+        Set<String> ids = new HashSet<>();
+        for (Product p : batch) ids.add(p.getProductId());
+        Set<String> foreign = new HashSet<>();
+        for (Product existing : products.findByIds(ids)) {
+            if (!merchantId.equals(existing.getMerchantId())) foreign.add(existing.getProductId());
+        }
+        if (foreign.isEmpty()) return;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            String id = batch.get(i).getProductId();
+            if (!foreign.contains(id)) continue;
+            tally.fail(lines.get(i), "商品 " + id + " 属于其他商家");
+            batch.remove(i);
+            lines.remove(i);
+        }
+    }
+
+    private Product toProduct(Map<String, String> f, String merchantId, String merchantPhone) {
+        String title = trimToEmpty(f.get("title"));
+        if (title.isEmpty()) throw new IllegalArgumentException("标题不能为空");
+        if (title.length() > MAX_TITLE_LENGTH) throw new IllegalArgumentException("标题超过 " + MAX_TITLE_LENGTH + " 个字符");
+        double price;
+        try {
+            price = Double.parseDouble(trimToEmpty(f.get("price")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("价格不是数字: " + f.get("price"));
+        }
+        if (!Double.isFinite(price) || price < 0) throw new IllegalArgumentException("价格无效: " + f.get("price"));
+        int stock;
+        try {
+            stock = Integer.parseInt(trimToEmpty(f.get("stock")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("库存不是整数: " + f.get("stock"));
+        }
+        if (stock < 0) throw new IllegalArgumentException("库存不能为负数");
+        Enums.ProductStatus status = Enums.ProductStatus.PUBLISHED;
+        String s = trimToEmpty(f.get("status"));
+        if (!s.isEmpty()) {
+            try {
+                status = Enums.ProductStatus.valueOf(s.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                status = null;
+            }
+            if (status != Enums.ProductStatus.PUBLISHED && status != Enums.ProductStatus.DRAFT) throw new IllegalArgumentException("状态只能是 PUBLISHED 或 DRAFT: " + s);
+        }
+        String id = trimToEmpty(f.get("id"));
+        if (id.isEmpty()) id = "prod-" + UUID.randomUUID();
+        String description = f.get("description") == null ? "" : f.get("description");
+        return new Product(id, title, description, price, stock, status, merchantId, merchantPhone);
+    }
+
+    private static String trimToEmpty(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    private static final class Tally {
+        long imported;
+        long failed;
+        final List<RowError> errors = new ArrayList<>();
+
+        void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new RowError(line, message));
+        }
+    }
+
+    /** 一行数据：字段名（小写）到值；无法解析时 error 非空 */
+    private record Row(long line, Map<String, String> fields, String error) {}
+
+    private interface RowSource {
+        /** 下一行，读完返回 null */
+        Row next() throws IOException;
+    }
+
+    /**
+     * JSON Lines：每行一个对象，空行跳过
+     */
+    private static final class JsonRows implements RowSource {
+        private final BufferedReader in;
+        private long line;
+
+        JsonRows(Reader in) {
+            this.in = in instanceof BufferedReader b ? b : new BufferedReader(in);
+        }
+
+        public Row next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                if (text == null) return null;
+                line++;
+            } while (text.isBlank());
+            try {
+                JsonElement e = JsonParser.parseString(text);
+                if (!e.isJsonObject()) return new Row(line, null, "不是 JSON 对象");
+                Map<String, String> fields = new HashMap<>();
+                for (Map.Entry<String, JsonElement> f : ((JsonObject) e).entrySet()) {
+                    JsonElement v = f.getValue();
+                    if (v.isJsonPrimitive()) fields.put(f.getKey().toLowerCase(Locale.ROOT), v.getAsString());
+                }
+                return new Row(line, fields, null);
+            } catch (JsonParseException ex) {
+                return new Row(line, null, "JSON 格式错误");
+            }
+        }
+    }
+
+    /**
+     * CSV（RFC 4180）：逗号分隔，字段可用双引号包围，引号内可含逗号、换行，"" 表示一个双引号。
+     * 一条记录超过 {@link #MAX_RECORD_LENGTH} 个字符或引号到文件末尾仍未闭合时，该记录的首行记为失败，
+     * 从下一行起重新解析，不会把文件其余部分吞进一个字段
+     */
+    private static final class CsvRows implements RowSource {
+        private final Reader in;
+        private final List<String> header;
+        private long line = 1;
+        // 当前记录已读的原始字符，出错时用来回退
+        private final StringBuilder raw = new StringBuilder();
+        // 回退后待重新解析的字符，先于 in 读取
+        private final StringBuilder replay = new StringBuilder();
+        private int replayPos;
+        private String recordError;
+
+        CsvRows(Reader in) throws IOException {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+            if (peek() == '\uFEFF') read(); // UTF-8 BOM
+            List<String> h = readRecord();
+            if (h == null || recordError != null) throw new IOException(h == null ? "CSV 文件为空" : "CSV 表头无法解析: " + recordError);
+            header = new ArrayList<>(h.size());
+            for (String name : h) header.add(name.trim().toLowerCase(Locale.ROOT));
+            for (String required : List.of("title", "price", "stock")) {
+                if (!header.contains(required)) throw new IOException("CSV 表头缺少列: " + required);
+            }
+        }
+
+        public Row next() throws IOException {
+            List<String> values;
+            long start;
+            do {
+                start = line;
+                values = readRecord();
+                if (values == null) return null;
+                if (recordError != null) return new Row(start, null, recordError);
+            } while (values.size() == 1 && values.get(0).isBlank());
+            if (values.size() != header.size()) return new Row(start, null, "列数为 " + values.size() + "，表头为 " + header.size() + " 列");
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) fields.put(header.get(i), values.get(i));
+            return new Row(start, fields, null);
+        }
+
+        // 读一条记录，已到文件末尾返回 null；记录无法解析时设置 recordError 并返回空列表
+        private List<String> readRecord() throws IOException {
+            recordError = null;
+            raw.setLength(0);
+            long start = line;
+            int c = read();
+            if (c < 0) return null;
+            List<String> fields = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (raw.length() > MAX_RECORD_LENGTH) return skipRecord(start, "记录超过 " + MAX_RECORD_LENGTH + " 个字符（引号可能未闭合）");
+                if (quoted) {
+                    if (c < 0) return skipRecord(start, "引号未闭合");
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            sb.append('"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') line++;
+                        sb.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(sb.toString());
+                    sb.setLength(0);
+                } else if (c == '\r' || c == '\n' || c < 0) {
+                    if (c == '\r' && peek() == '\n') read();
+                    if (c >= 0) line++;
+                    break;
+                } else {
+                    sb.append((char) c);
+                }
+                c = read();
+            }
+            fields.add(sb.toString());
+            return fields;
+        }
+
+        // 放弃当前记录：首行之后已读的字符退回重新解析；首行还没读完则丢弃到行尾
+        private List<String> skipRecord(long start, String error) throws IOException {
+            recordError = error;
+            line = start + 1;
+            int nl = 0;
+            while (nl < raw.length() && raw.charAt(nl) != '\n' && raw.charAt(nl) != '\r') nl++;
+            if (nl < raw.length()) {
+                if (raw.charAt(nl) == '\r' && nl + 1 < raw.length() && raw.charAt(nl + 1) == '\n') nl++;
+                replay.delete(0, replayPos).insert(0, raw, nl + 1, raw.length());
+                replayPos = 0;
+            } else {
+                for (int c = read(); c >= 0 && c != '\n'; c = read()) {
+                    raw.setLength(0);
+                    if (c == '\r') {
+                        if (peek() == '\n') read();
+                        break;
+                    }
+                }
+            }
+            raw.setLength(0);
+            return List.of();
+        }
+
+        private int read() throws IOException {
+            int c;
+            if (replayPos < replay.length()) {
+                c = replay.charAt(replayPos++);
+                if (replayPos == replay.length()) {
+                    replay.setLength(0);
+                    replayPos = 0;
+                }
+            } else {
+                c = in.read();
+            }
+            if (c >= 0) raw.append((char) c);
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (replayPos < replay.length()) return replay.charAt(replayPos);
+            int c = in.read();
+            if (c >= 0) replay.append((char) c);
+            return c;
+        }
+    }
+}
@@ -1,20 +1,60 @@
 package com.marketplace.service;
 
-import com.marketplace.dao.ProductDAO;
+import com.marketplace.dao.CouponRepository;
+import com.marketplace.dao.Page;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.ProductSort;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.StorageEngines;
 import com.marketplace.models.Enums;
 import com.marketplace.models.Product;
 import com.marketplace.models.Coupon;
+import com.marketplace.search.ProductFacets;
+import com.marketplace.search.ProductSearchIndex;
+import com.marketplace.search.SearchQuery;
+import com.marketplace.search.TitleAutocomplete;
 
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * 商品服务：负责商品发布与查询等业务逻辑。
  */
 public class ProductService {
-    private final ProductDAO dao = new ProductDAO();
-    private final com.marketplace.dao.CouponDAO couponDAO = new com.marketplace.dao.CouponDAO();
+    /**
+     * 搜索实现：INDEX 为内存倒排索引（启动后首次查询时构建），FUZZY 为在 INDEX 基础上容忍拼写错误，
+     * FULL_TEXT 为 SQLite FTS5（持久化，无需构建，仅 SQLite 存储；其他存储按 INDEX 搜索）
+     */
+    public enum SearchMode { INDEX, FUZZY, FULL_TEXT }
+
+    /** 带相关度得分的搜索结果 */
+    public record ScoredProduct(Product product, double score) {}
+
+    /** 分面筛选结果：当前页商品、满足条件的总数与各维度计数 */
+    public record FilteredProducts(List<Product> products, int total, ProductFacets.Counts counts) {}
+
+    private final ProductRepository dao;
+    private final CouponRepository couponDAO;
+    private final ProductSearchIndex searchIndex;
+    private final ProductFacets facets;
+    private final TitleAutocomplete autocomplete;
+    // 默认搜索实现，可用 -Dmarketplace.search.mode=full_text 切换
+    private final SearchMode searchMode = SearchMode.valueOf(System.getProperty("marketplace.search.mode", "index").toUpperCase(java.util.Locale.ROOT));
+
+    public ProductService() {
+        this(StorageEngines.getDefault());
+    }
+
+    public ProductService(StorageEngine engine) {
+        this.dao = engine.products();
+        this.couponDAO = engine.coupons();
+        this.searchIndex = ProductSearchIndex.forRepository(dao);
+        this.facets = ProductFacets.forRepository(dao);
+        this.autocomplete = TitleAutocomplete.forRepository(dao);
+    }
 
     /**
      * 发布商品（生成 id 并保存）
@@ -75,19 +115,116 @@ public class ProductService {
     }
 
     /**
-     * 根据关键字搜索已发布商品（简单的包含匹配，模拟语义搜索）
+     * 分页列出已发布商品：cursor 传上一页的 nextCursor，第一页传 null
+     */
+    public Page<Product> listPublishedPage(ProductSort sort, String cursor, int pageSize) throws SQLException {
+        return dao.listPublishedPage(sort, cursor, pageSize);
+    }
+
+    /**
+     * 分页列出某商家的商品
+     */
+    public Page<Product> listMerchantProductsPage(String merchantId, ProductSort sort, String cursor, int pageSize) throws SQLException {
+        return dao.listByMerchantPage(merchantId, sort, cursor, pageSize);
+    }
+
+    /**
+     * 根据关键字搜索已发布商品，返回全部命中（按相关度排序）；关键字为空时返回全部已发布商品
      */
     public List<Product> searchProducts(String keyword) throws SQLException {
-        List<Product> all = dao.listPublished();
-        List<Product> res = new java.util.ArrayList<>();
-        if (keyword == null || keyword.isEmpty()) return all;
-        String k = keyword.toLowerCase();
-        for (Product p : all) {
-            if ((p.getTitle() != null && p.getTitle().toLowerCase().contains(k)) ||
-                    (p.getDescription() != null && p.getDescription().toLowerCase().contains(k))) {
-                res.add(p);
+        if (keyword == null || keyword.isEmpty()) return dao.listPublished();
+        return searchProducts(keyword, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 按默认搜索实现返回得分最高的 limit 个已发布商品。
+     * 空白分隔的词需同时出现（AND），用 OR 分隔多组条件，例如 "无线 耳机 OR 耳塞"。
+     */
+    public List<Product> searchProducts(String query, int limit) throws SQLException {
+        return searchProducts(query, limit, searchMode);
+    }
+
+    public List<Product> searchProducts(String query, int limit, SearchMode mode) throws SQLException {
+        if (mode == SearchMode.FULL_TEXT) {
+            try {
+                return dao.searchFullText(SearchQuery.parse(query), limit);
+            } catch (UnsupportedOperationException e) {
+                // 存储引擎没有全文检索（内存引擎），改用内存索引
+                mode = SearchMode.INDEX;
             }
         }
+        List<Product> res = new java.util.ArrayList<>();
+        for (ScoredProduct sp : mode == SearchMode.FUZZY ? searchFuzzy(query, limit) : searchScored(query, limit)) res.add(sp.product());
+        return res;
+    }
+
+    /**
+     * 搜索框输入联想：以 prefix 开头的商品标题（或标题中的单词），按购买次数从高到低，至多 limit 条
+     */
+    public List<String> suggestTitles(String prefix, int limit) throws SQLException {
+        List<String> res = new java.util.ArrayList<>();
+        for (TitleAutocomplete.Suggestion s : autocomplete.suggest(prefix, limit)) res.add(s.title());
+        return res;
+    }
+
+    /**
+     * 提前构建输入联想的前缀树（首次联想或清库后要遍历全部商品），供界面在后台线程上调用
+     */
+    public void warmUpSuggestions() throws SQLException {
+        autocomplete.refresh();
+    }
+
+    /**
+     * 按内存索引的相关度返回得分最高的 k 个已发布商品及得分（从高到低）：
+     * 标题命中高于描述命中，词频与词的稀有度计入得分，有货商品优先；只用容量为 k 的堆选出结果，不对全部命中排序
+     */
+    public List<ScoredProduct> searchScored(String query, int k) throws SQLException {
+        return toScored(searchIndex.search(query, k));
+    }
+
+    /**
+     * 同 {@link #searchScored}，但容忍拼写错误：匹配不到的英文/数字词按编辑距离最近的已有词查询，得分相应降低
+     */
+    public List<ScoredProduct> searchFuzzy(String query, int k) throws SQLException {
+        return toScored(searchIndex.searchFuzzy(query, k));
+    }
+
+    // 命中的商品一次批量读出，再按命中顺序排列
+    private List<ScoredProduct> toScored(List<ProductSearchIndex.Hit> hits) throws SQLException {
+        List<String> ids = new java.util.ArrayList<>(hits.size());
+        for (ProductSearchIndex.Hit h : hits) ids.add(h.productId());
+        Map<String, Product> byId = loadByIds(ids);
+        List<ScoredProduct> res = new java.util.ArrayList<>();
+        for (ProductSearchIndex.Hit h : hits) {
+            Product p = byId.get(h.productId());
+            if (p != null && p.getStatus() == Enums.ProductStatus.PUBLISHED) res.add(new ScoredProduct(p, h.score()));
+        }
         return res;
     }
+
+    private Map<String, Product> loadByIds(List<String> ids) throws SQLException {
+        Map<String, Product> byId = new HashMap<>();
+        if (ids.isEmpty()) return byId;
+        for (Product p : dao.findByIds(ids)) byId.put(p.getProductId(), p);
+        return byId;
+    }
+
+    /**
+     * 按价格区间、商家、库存、状态组合筛选，可叠加关键字（关键字为空时不限），返回至多 limit 个商品及各维度计数
+     */
+    public FilteredProducts filterProducts(String keyword, ProductFacets.Filter filter, int limit) throws SQLException {
+        List<String> candidates = null;
+        if (keyword != null && !keyword.isBlank()) {
+            candidates = new java.util.ArrayList<>();
+            for (ProductSearchIndex.Hit h : searchIndex.search(keyword, Integer.MAX_VALUE)) candidates.add(h.productId());
+        }
+        ProductFacets.Result r = facets.query(filter, candidates, limit);
+        Map<String, Product> byId = loadByIds(r.productIds());
+        List<Product> res = new java.util.ArrayList<>(r.productIds().size());
+        for (String id : r.productIds()) {
+            Product p = byId.get(id);
+            if (p != null) res.add(p);
+        }
+        return new FilteredProducts(res, r.total(), r.counts());
+    }
 }
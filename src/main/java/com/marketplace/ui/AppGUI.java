@@ -1,8 +1,12 @@
 package com.marketplace.ui;
 
-import com.marketplace.dao.ProductDAO;
-import com.marketplace.dao.UserDAO;
-import com.marketplace.dao.MerchantDAO;
+import com.marketplace.dao.MerchantRepository;
+import com.marketplace.dao.Page;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.ProductSort;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.StorageEngines;
+import com.marketplace.dao.UserRepository;
 import com.marketplace.models.Product;
 import com.marketplace.service.AdminService;
 import com.marketplace.service.AuthService;
@@ -23,14 +27,15 @@ import java.util.List;
  * - 商品卡片显示缩略、标题、价格、库存与“联系卖家”按钮（联系方式通过站内消息，不直接显示）。
  */
 public class AppGUI {
-    private final AuthService auth = new AuthService();
-    private final ProductService productService = new ProductService();
-    private final OrderService orderService = new OrderService();
-    private final MessageService messageService = new MessageService();
-    private final AdminService adminService = new AdminService();
-    private final ProductDAO productDAO = new ProductDAO();
-    private final UserDAO userDAO = new UserDAO();
-    private final MerchantDAO merchantDAO = new MerchantDAO();
+    private final StorageEngine storage = StorageEngines.getDefault();
+    private final AuthService auth = new AuthService(storage);
+    private final ProductService productService = new ProductService(storage);
+    private final OrderService orderService = new OrderService(storage);
+    private final MessageService messageService = new MessageService(storage);
+    private final AdminService adminService = new AdminService(storage);
+    private final ProductRepository productDAO = storage.products();
+    private final UserRepository userDAO = storage.users();
+    private final MerchantRepository merchantDAO = storage.merchants();
     private JFrame frame;
     private JPanel productGrid;
     private boolean darkMode = false;
@@ -43,6 +48,8 @@ public class AppGUI {
     private JButton btnSearch;
     // 主题色：RGB(85,0,75)
     private final Color THEME = new Color(85, 0, 75);
+    // 商品网格每页条数
+    private static final int PAGE_SIZE = 30;
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new AppGUI().createAndShow());
@@ -67,6 +74,7 @@ public class AppGUI {
     searchField = new JTextField(24);
     btnSearch = new JButton("搜索");
     styleButton(btnSearch);
+    installAutocomplete();
     JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
     searchPanel.add(searchField);
     searchPanel.add(btnSearch);
@@ -155,6 +163,68 @@ public class AppGUI {
         return top;
     }
 
+    /**
+     * 输入时在搜索框下方弹出标题联想，选中后直接搜索；联想来自内存前缀树，首次构建与增量更新在后台线程上进行
+     */
+    private void installAutocomplete() {
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+        // 选中建议后回填搜索框时不再触发联想
+        boolean[] filling = {false};
+        // 最近一次请求的编号，只显示最新输入的联想（仅在事件线程上读写）
+        int[] latest = {0};
+        // 前缀树首次构建要遍历全部商品，启动时在后台线程上提前完成
+        new SwingWorker<Void, Void>() {
+            protected Void doInBackground() throws SQLException {
+                productService.warmUpSuggestions();
+                return null;
+            }
+        }.execute();
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { if (!filling[0]) SwingUtilities.invokeLater(this::update); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { if (!filling[0]) SwingUtilities.invokeLater(this::update); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { }
+
+            private void update() {
+                popup.setVisible(false);
+                popup.removeAll();
+                if (!searchField.isFocusOwner()) return;
+                String prefix = searchField.getText();
+                int request = ++latest[0];
+                // 清库或生成数据后前缀树要整体重建，联想放到后台线程，不卡住界面
+                new SwingWorker<List<String>, Void>() {
+                    protected List<String> doInBackground() throws SQLException {
+                        return productService.suggestTitles(prefix, 8);
+                    }
+
+                    protected void done() {
+                        if (request != latest[0] || !searchField.isFocusOwner()) return;
+                        List<String> titles;
+                        try {
+                            titles = get();
+                        } catch (InterruptedException | java.util.concurrent.ExecutionException ignored) {
+                            // 联想失败不影响正常搜索
+                            return;
+                        }
+                        popup.removeAll();
+                        for (String title : titles) {
+                            JMenuItem item = new JMenuItem(title);
+                            item.addActionListener(a -> {
+                                filling[0] = true;
+                                searchField.setText(title);
+                                filling[0] = false;
+                                popup.setVisible(false);
+                                refreshProducts(title);
+                            });
+                            popup.add(item);
+                        }
+                        if (popup.getComponentCount() > 0) popup.show(searchField, 0, searchField.getHeight());
+                    }
+                }.execute();
+            }
+        });
+    }
+
     private JScrollPane buildCenterPanel() {
         productGrid = new JPanel();
         productGrid.setLayout(new GridLayout(0, 3, 12, 12));
@@ -173,16 +243,12 @@ public class AppGUI {
         SwingUtilities.invokeLater(() -> {
             productGrid.removeAll();
             try {
-                List<Product> list;
-                if (keyword == null || keyword.trim().isEmpty()) list = productService.listPublished();
-                else list = productService.searchProducts(keyword);
-                if (list == null || list.isEmpty()) {
-                    JLabel empty = new JLabel("暂无商品");
-                    productGrid.add(empty);
+                if (keyword == null || keyword.trim().isEmpty()) {
+                    appendProductPage(null);
                 } else {
-                    for (Product p : list) {
-                        productGrid.add(buildProductCard(p));
-                    }
+                    List<Product> list = productService.searchProducts(keyword, PAGE_SIZE);
+                    if (list == null || list.isEmpty()) productGrid.add(new JLabel("暂无商品"));
+                    for (Product p : list) productGrid.add(buildProductCard(p));
                 }
             } catch (SQLException ex) {
                 showError(ex);
@@ -195,6 +261,29 @@ public class AppGUI {
         });
     }
 
+    /**
+     * 追加一页商品卡片；还有下一页时在末尾放一个“加载更多”按钮
+     */
+    private void appendProductPage(String cursor) throws SQLException {
+        Page<Product> page = productService.listPublishedPage(ProductSort.NEWEST, cursor, PAGE_SIZE);
+        if (cursor == null && page.items().isEmpty()) productGrid.add(new JLabel("暂无商品"));
+        for (Product p : page.items()) productGrid.add(buildProductCard(p));
+        if (!page.hasNext()) return;
+        JButton more = new JButton("加载更多");
+        styleButton(more);
+        more.addActionListener(e -> {
+            productGrid.remove(more);
+            try {
+                appendProductPage(page.nextCursor());
+            } catch (SQLException ex) {
+                showError(ex);
+            }
+            productGrid.revalidate();
+            productGrid.repaint();
+        });
+        productGrid.add(more);
+    }
+
     private void updateUnreadBadgeForCurrentUser() {
         // Show unread badge for the active actor (user or merchant)
         String phone = currentUserPhone != null ? currentUserPhone : currentMerchantPhone;
@@ -225,10 +314,7 @@ public class AppGUI {
         if (recommendPanel == null) return;
         recommendPanel.removeAll();
         try {
-            List<Product> all = productService.listPublished();
-            int count = Math.min(3, all.size());
-            for (int i = 0; i < count; i++) {
-                Product p = all.get(i);
+            for (Product p : productService.listPublishedPage(ProductSort.NEWEST, null, 3).items()) {
                 JLabel l = new JLabel(p.getTitle() + " - ¥" + p.getPrice());
                 recommendPanel.add(l);
             }
@@ -357,8 +443,12 @@ public class AppGUI {
                     String chosen = JOptionPane.showInputDialog(frame, message);
                     if (chosen != null && !chosen.isBlank()) useCouponId = chosen.trim();
                 }
-                // 扣库存并下单（带/不带优惠券）
-                productDAO.reduceStock(p.getProductId(), qty);
+                // 扣库存并下单（带/不带优惠券）；库存不足时不下单
+                if (!productDAO.reduceStock(p.getProductId(), qty)) {
+                    JOptionPane.showMessageDialog(frame, "库存不足，购买失败");
+                    refreshProducts();
+                    return;
+                }
                 if (useCouponId == null) {
                     orderService.createOrder(currentUserPhone, p.getMerchantId(), total, 0, 0);
                 } else {
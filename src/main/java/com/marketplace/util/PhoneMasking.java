@@ -0,0 +1,39 @@
+package com.marketplace.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * 手机号与长数字串的掩码规则，消息展示与慢查询日志共用。
+ */
+public final class PhoneMasking {
+    private static final Pattern LONG_NUMBER = Pattern.compile("\\b(\\d{3})\\d+(\\d{2})\\b");
+    private static final Pattern PHONE_LIKE = Pattern.compile("\\+?\\d[\\d\\- ]{5,}\\d");
+
+    private PhoneMasking() {}
+
+    // 简单掩码：保留前三位与末尾两位，其余用星号替代；若长度太短则整体用星号
+    public static String maskPhone(String phone) {
+        if (phone == null) return "";
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.length() <= 4) return "****";
+        if (digits.length() <= 6) return digits.substring(0, 1) + "****" + digits.substring(digits.length()-1);
+        String start = digits.substring(0, Math.min(3, digits.length()));
+        String end = digits.substring(Math.max(digits.length()-2, 0));
+        return start + "****" + end;
+    }
+
+    // 掩码任意较长数字串（用于消息内容的安全展示）
+    public static String maskSensitiveNumbers(String text) {
+        if (text == null) return null;
+        // 只掩码纯数字序列（长度至少 5）的中间部分，避免误掩码包含字母或短序列（如 productId）
+        return LONG_NUMBER.matcher(text).replaceAll("$1****$2");
+    }
+
+    /**
+     * 整个值看起来像手机号（允许 +、空格与短横线）时返回掩码，否则原样返回
+     */
+    public static String maskIfPhone(String value) {
+        if (value == null || !PHONE_LIKE.matcher(value).matches()) return value;
+        return maskPhone(value);
+    }
+}
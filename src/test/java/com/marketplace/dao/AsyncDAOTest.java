@@ -0,0 +1,63 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.DBUtil;
+import com.marketplace.models.Complaint;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Merchant;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncDAOTest {
+    private final AsyncProductDAO products = new AsyncProductDAO();
+    private final AsyncMerchantDAO merchants = new AsyncMerchantDAO();
+    private final AsyncCouponDAO coupons = new AsyncCouponDAO();
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        DBUtil.clearAllData();
+        DBUtil.seedSampleData();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        DBUtil.clearAllData();
+    }
+
+    @Test
+    public void testIndependent_lookups_run_concurrently_and_combine() {
+        CompletableFuture<Product> product = products.findById("p1");
+        CompletableFuture<Merchant> merchant = merchants.findByPhone("10000000001");
+        CompletableFuture<Double> discount = coupons.getDiscountByUserCouponId("no-such-coupon");
+        String summary = CompletableFuture.allOf(product, merchant, discount)
+                .thenApply(v -> product.join().getTitle() + "@" + merchant.join().getShopName() + ":" + discount.join())
+                .join();
+        assertEquals("示例手机@示例商家A:null", summary);
+    }
+
+    @Test
+    public void testMany_parallel_reads_share_the_pool() {
+        List<CompletableFuture<Product>> fs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) fs.add(products.findById("p" + (i % 12 + 1)));
+        for (CompletableFuture<Product> f : fs) assertNotNull(f.join());
+    }
+
+    @Test
+    public void testSql_failure_surfaces_as_exceptional_completion() {
+        AsyncComplaintDAO complaints = new AsyncComplaintDAO();
+        Complaint c = new Complaint("c-dup", "u1", "p1", Enums.ComplaintType.values()[0]);
+        complaints.save(c).join();
+        CompletableFuture<Void> f = complaints.save(c); // 主键冲突
+        ExecutionException e = assertThrows(ExecutionException.class, f::get);
+        assertInstanceOf(SQLException.class, e.getCause());
+    }
+}
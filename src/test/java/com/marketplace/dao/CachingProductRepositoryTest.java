@@ -0,0 +1,99 @@
+package com.marketplace.dao;
+
+import com.marketplace.dao.memory.InMemoryProductRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingProductRepositoryTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private InMemoryProductRepository store;
+    private CachingProductRepository cache;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        // 统计落到底层仓储的读取次数
+        store = new InMemoryProductRepository() {
+            @Override
+            public Product findById(String id) {
+                loads.incrementAndGet();
+                return super.findById(id);
+            }
+
+            @Override
+            public List<Product> listPublished() {
+                loads.incrementAndGet();
+                return super.listPublished();
+            }
+        };
+        cache = new CachingProductRepository(store, 2);
+        for (String id : List.of("a", "b", "c")) {
+            store.save(new Product(id, "商品" + id, "", 9.9, 5, Enums.ProductStatus.PUBLISHED, "m1", "10000000001"));
+        }
+    }
+
+    @Test
+    public void testRepeated_reads_are_served_from_cache_as_copies() throws SQLException {
+        cache.findById("a").setTitle("调用方改动");
+        assertEquals("商品a", cache.findById("a").getTitle());
+        assertEquals(3, cache.listPublished().size());
+        cache.listPublished().clear();
+        assertEquals(3, cache.listPublished().size());
+        assertEquals(2, loads.get());
+        CachingProductRepository.Stats s = cache.stats();
+        assertEquals(1, s.hits());
+        assertEquals(1, s.misses());
+        assertEquals(2, s.listHits());
+        assertNull(cache.findById("missing"));
+    }
+
+    @Test
+    public void testWrites_invalidate_entry_and_published_snapshot() throws SQLException {
+        cache.findById("a");
+        cache.listPublished();
+        cache.reduceStock("a", 2);
+        assertEquals(3, cache.findById("a").getStock());
+
+        Product a = cache.findById("a");
+        a.setStatus(Enums.ProductStatus.DRAFT);
+        cache.save(a);
+        assertEquals(2, cache.listPublished().size());
+        assertEquals(Enums.ProductStatus.DRAFT, cache.findById("a").getStatus());
+
+        cache.deleteProduct("b");
+        assertNull(cache.findById("b"));
+        assertEquals(1, cache.listPublished().size());
+    }
+
+    @Test
+    public void testWrites_that_bypass_the_cache_invalidate_through_change_events() throws SQLException {
+        assertEquals(5, cache.findById("c").getStock());
+        cache.listPublished();
+        store.reduceStock("c", 1);
+        assertEquals(4, cache.findById("c").getStock());
+        store.save(new Product("d", "商品d", "", 1, 1, Enums.ProductStatus.PUBLISHED, "m2", "10000000002"));
+        assertEquals(4, cache.listPublished().size());
+    }
+
+    @Test
+    public void testLeast_recently_used_entry_is_evicted() throws SQLException {
+        cache.findById("a");
+        cache.findById("b");
+        cache.findById("a");
+        cache.findById("c"); // 容量为 2，淘汰最久未用的 b
+        int before = loads.get();
+        cache.findById("a");
+        assertEquals(before, loads.get());
+        cache.findById("b");
+        assertEquals(before + 1, loads.get());
+        assertEquals(2, cache.stats().evictions());
+        assertEquals(2, cache.stats().size());
+    }
+}
@@ -0,0 +1,154 @@
+package com.marketplace.dao;
+
+import com.marketplace.dao.memory.InMemoryProductRepository;
+import com.marketplace.db.Database;
+import com.marketplace.db.PoolConfig;
+import com.marketplace.db.SchemaMigrator;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductChangeFeedTest {
+    @TempDir
+    Path dir;
+
+    private static Product product(String id, String title, int stock) {
+        return new Product(id, title, "", 10.0, stock, Enums.ProductStatus.PUBLISHED, "m1", "10000000001");
+    }
+
+    private static List<String> describe(List<ProductChange> changes) {
+        List<String> res = new ArrayList<>();
+        for (ProductChange c : changes) res.add(c.kind() + ":" + c.productId());
+        return res;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testSqlite_triggers_record_every_change_in_sequence() throws SQLException {
+        Database db = new Database("jdbc:sqlite:" + dir.resolve("changes.db"), new PoolConfig(1, 2, 500, true, 1,
+                List.of("journal_mode=WAL", "busy_timeout=1000")));
+        try {
+            db.write(c -> new SchemaMigrator().migrate(c));
+            ProductDAO dao = new ProductDAO(db);
+            assertEquals(0, dao.latestChangeSequence());
+            dao.save(product("a", "台灯", 5));
+            dao.save(product("a", "台灯", 5)); // 内容未变，不记录
+            dao.reduceStock("a", 2);
+            dao.reduceStock("a", 100); // 库存不足，没有更新
+            dao.save(product("a", "护眼台灯", 3));
+            // 绕过 DAO 的插入同样被记录；上架时间回填触发器的 UPDATE 不算变更
+            db.write(c -> {
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO products (id, title, description, price, stock, status, merchant_id, merchant_phone) VALUES ('b', 'x', '', 1, 1, 'DRAFT', 'm1', '1')")) {
+                    return ps.executeUpdate();
+                }
+            });
+            dao.deleteProduct("a");
+
+            List<ProductChange> all = dao.readChanges(0, 100);
+            assertEquals(List.of("SAVED:a", "STOCK:a", "SAVED:a", "SAVED:b", "DELETED:a"), describe(all));
+            for (int i = 0; i < all.size(); i++) assertEquals(i + 1, all.get(i).sequence());
+            assertEquals(5, dao.latestChangeSequence());
+            assertEquals(List.of("SAVED:b", "DELETED:a"), describe(dao.readChanges(3, 100)));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void testFeed_delivers_in_batches_after_each_handler_returns() throws Exception {
+        InMemoryProductRepository repo = new InMemoryProductRepository();
+        repo.save(product("p0", "旧商品", 1));
+        long start = repo.latestChangeSequence();
+        List<ProductChange> seen = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        try (ProductChangeFeed feed = ProductChangeFeed.tail(repo, start, 3, 10_000, changes -> {
+            batchSizes.add(changes.size());
+            seen.addAll(changes);
+            try {
+                Thread.sleep(20); // 慢消费者
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            for (int i = 1; i <= 8; i++) repo.save(product("p" + i, "商品" + i, 1));
+            repo.reduceStock("p1", 1);
+            repo.deleteProduct("p2");
+            // 轮询间隔很长，靠写入事件唤醒
+            waitUntil(() -> feed.position() == 11);
+            assertEquals(0, feed.lag());
+        }
+        assertEquals(10, seen.size());
+        assertEquals("SAVED:p1", describe(seen).get(0));
+        assertEquals(List.of("STOCK:p1", "DELETED:p2"), describe(seen.subList(8, 10)));
+        for (int n : batchSizes) assertTrue(n <= 3);
+    }
+
+    @Test
+    public void testFeed_reports_gap_when_log_was_trimmed() throws Exception {
+        InMemoryProductRepository repo;
+        System.setProperty("marketplace.changeLog.capacity", "4");
+        try {
+            repo = new InMemoryProductRepository();
+        } finally {
+            System.clearProperty("marketplace.changeLog.capacity");
+        }
+        for (int i = 1; i <= 10; i++) repo.save(product("p" + i, "商品" + i, 1));
+        List<long[]> gaps = Collections.synchronizedList(new ArrayList<>());
+        List<ProductChange> seen = Collections.synchronizedList(new ArrayList<>());
+        try (ProductChangeFeed feed = ProductChangeFeed.tail(repo, 0, 100, 50, new ProductChangeFeed.Handler() {
+            public void onChanges(List<ProductChange> changes) {
+                seen.addAll(changes);
+            }
+
+            public void onGap(long position, long firstAvailable) {
+                gaps.add(new long[]{position, firstAvailable});
+            }
+        })) {
+            waitUntil(() -> feed.position() == 10);
+        }
+        assertEquals(1, gaps.size());
+        assertArrayEquals(new long[]{0, 7}, gaps.get(0));
+        assertEquals(List.of("SAVED:p7", "SAVED:p8", "SAVED:p9", "SAVED:p10"), describe(seen));
+    }
+
+    @Test
+    public void testFailures_go_to_on_error_and_retry_from_same_position() throws Exception {
+        InMemoryProductRepository repo = new InMemoryProductRepository();
+        repo.save(product("p1", "商品1", 1));
+        List<Integer> failures = Collections.synchronizedList(new ArrayList<>());
+        List<ProductChange> seen = Collections.synchronizedList(new ArrayList<>());
+        try (ProductChangeFeed feed = ProductChangeFeed.tail(repo, 0, 100, 10, new ProductChangeFeed.Handler() {
+            public void onChanges(List<ProductChange> changes) throws SQLException {
+                if (failures.size() < 3) throw new SQLException("下游暂不可用");
+                seen.addAll(changes);
+            }
+
+            public void onError(Exception error, int count) {
+                assertEquals("下游暂不可用", error.getMessage());
+                failures.add(count);
+            }
+        })) {
+            waitUntil(() -> feed.position() == 1);
+        }
+        assertEquals(List.of(1, 2, 3), failures);
+        assertEquals(List.of("SAVED:p1"), describe(seen));
+    }
+}
@@ -0,0 +1,80 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.Database;
+import com.marketplace.db.PoolConfig;
+import com.marketplace.db.SchemaMigrator;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import com.marketplace.search.SearchQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductFullTextSearchTest {
+    @TempDir
+    Path dir;
+
+    private Database db;
+    private ProductDAO dao;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        db = new Database("jdbc:sqlite:" + dir.resolve("fts.db"), new PoolConfig(1, 2, 2000, true, 1,
+                List.of("journal_mode=WAL", "busy_timeout=1000")));
+        db.write(c -> new SchemaMigrator().migrate(c));
+        dao = new ProductDAO(db);
+        dao.save(product("a", "降噪蓝牙耳机", "通勤必备", 10));
+        dao.save(product("b", "运动水杯", "附赠蓝牙耳机收纳袋", 10));
+        dao.save(product("c", "Java 编程入门", "入门书籍", 0));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    private static Product product(String id, String title, String desc, int stock) {
+        return new Product(id, title, desc, 9.9, stock, Enums.ProductStatus.PUBLISHED, "m1", "10000000001");
+    }
+
+    private List<String> search(String q, int limit) throws SQLException {
+        return dao.searchFullText(SearchQuery.parse(q), limit).stream().map(Product::getProductId).toList();
+    }
+
+    @Test
+    public void testBm25_ranks_title_hits_first_and_applies_limit() throws SQLException {
+        assertEquals(List.of("a", "b"), search("蓝牙耳机", 10));
+        assertEquals(List.of("a"), search("蓝牙耳机", 1));
+        assertEquals(List.of("c"), search("JAVA", 10));
+        assertEquals(List.of("a", "c"), search("降噪蓝 OR 编程入门", 10).stream().sorted().toList());
+    }
+
+    @Test
+    public void testTriggers_follow_updates_and_deletes() throws SQLException {
+        dao.save(product("a", "普通耳罩", "冬季保暖", 10));
+        assertEquals(List.of("b"), search("蓝牙耳机", 10));
+        dao.deleteProduct("b");
+        assertEquals(List.of(), search("蓝牙耳机", 10));
+        // 扣库存不改标题，FTS 内容保持一致
+        dao.reduceStock("c", 0);
+        assertEquals(List.of("c"), search("编程入门", 10));
+    }
+
+    @Test
+    public void testShort_terms_filter_ranked_matches() throws SQLException {
+        assertEquals(List.of("a", "b"), search("耳机", 10));
+        // 短词只在长词的 MATCH 结果上追加过滤，仍按 bm25 排序：标题命中的 d 排在先插入的 b 前面
+        dao.save(product("d", "收纳袋", "旅行用", 10));
+        assertEquals(List.of("d", "b"), search("收纳袋 袋", 10));
+        assertEquals(List.of("b"), search("收纳袋 蓝牙", 10));
+        assertEquals(List.of("b"), search("耳机 水杯", 10));
+        assertEquals(List.of(), search("50%", 10));
+    }
+}
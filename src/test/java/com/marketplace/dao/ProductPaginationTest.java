@@ -0,0 +1,100 @@
+package com.marketplace.dao;
+
+import com.marketplace.dao.memory.InMemoryProductRepository;
+import com.marketplace.db.Database;
+import com.marketplace.db.PoolConfig;
+import com.marketplace.db.SchemaMigrator;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductPaginationTest {
+    @TempDir
+    Path dir;
+
+    private Database db;
+    private ProductDAO dao;
+    private InMemoryProductRepository memory;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        db = new Database("jdbc:sqlite:" + dir.resolve("page.db"), new PoolConfig(1, 2, 2000, true, 1,
+                List.of("journal_mode=WAL", "busy_timeout=1000")));
+        db.write(c -> new SchemaMigrator().migrate(c));
+        dao = new ProductDAO(db);
+        memory = new InMemoryProductRepository();
+        // 价格只有 3 种取值，大量同价商品检验 id 作为次序键；上架时间也有重复
+        for (int i = 0; i < 23; i++) {
+            Product p = new Product(String.format("p%02d", i), "商品" + i, "", 10 + i % 3, 1,
+                    i % 5 == 4 ? Enums.ProductStatus.DRAFT : Enums.ProductStatus.PUBLISHED, i % 2 == 0 ? "m1" : "m2", "10000000001");
+            p.setCreatedAt(1_000 + i / 2);
+            dao.save(p);
+            memory.save(p);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    private static List<String> walk(ProductRepository repo, ProductSort sort, int pageSize) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Product> page = repo.listPublishedPage(sort, cursor, pageSize);
+            assertTrue(page.items().size() <= pageSize);
+            for (Product p : page.items()) ids.add(p.getProductId());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    @Test
+    public void testPaging_visits_every_published_product_once_in_order() throws SQLException {
+        for (ProductSort sort : ProductSort.values()) {
+            List<String> expected = dao.listPublished().stream()
+                    .sorted(ProductKeyset.comparator(sort)).map(Product::getProductId).toList();
+            assertEquals(19, expected.size());
+            for (int size : new int[]{1, 4, 19, 50}) {
+                assertEquals(expected, walk(dao, sort, size), sort + " / " + size);
+            }
+        }
+    }
+
+    @Test
+    public void testIn_memory_repository_pages_like_sqlite() throws SQLException {
+        for (ProductSort sort : ProductSort.values()) {
+            assertEquals(walk(dao, sort, 5), walk(memory, sort, 5), sort.name());
+        }
+        Page<Product> sqlite = dao.listByMerchantPage("m1", ProductSort.PRICE_DESC, null, 4);
+        Page<Product> mem = memory.listByMerchantPage("m1", ProductSort.PRICE_DESC, null, 4);
+        assertEquals(sqlite.items().stream().map(Product::getProductId).toList(), mem.items().stream().map(Product::getProductId).toList());
+        assertEquals(sqlite.nextCursor(), mem.nextCursor());
+        assertThrows(IllegalArgumentException.class, () -> dao.listPublishedPage(ProductSort.NEWEST, "bogus", 5));
+    }
+
+    @Test
+    public void testPage_query_uses_index_instead_of_sorting() throws SQLException {
+        String sql = "EXPLAIN QUERY PLAN SELECT id FROM products WHERE status = 'PUBLISHED' AND (price, id) > (10.0, 'p03') ORDER BY price ASC, id ASC LIMIT 21";
+        StringBuilder plan = new StringBuilder();
+        try (Connection c = db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) plan.append(rs.getString("detail")).append('\n');
+        }
+        assertTrue(plan.toString().contains("idx_products_status_price"), plan.toString());
+        assertFalse(plan.toString().contains("TEMP B-TREE"), plan.toString());
+    }
+}
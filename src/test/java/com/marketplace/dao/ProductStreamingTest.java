@@ -0,0 +1,98 @@
+package com.marketplace.dao;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.marketplace.dao.memory.InMemoryStorageEngine;
+import com.marketplace.db.Database;
+import com.marketplace.db.PoolConfig;
+import com.marketplace.db.SchemaMigrator;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import com.marketplace.service.AdminService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductStreamingTest {
+    @TempDir
+    Path dir;
+
+    private Database db;
+    private ProductDAO dao;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        // 只有一个读连接：遍历结束后连接必须归还，否则后续读取会超时
+        db = new Database("jdbc:sqlite:" + dir.resolve("stream.db"), new PoolConfig(1, 1, 500, true, 1,
+                List.of("journal_mode=WAL", "busy_timeout=1000")));
+        db.write(c -> new SchemaMigrator().migrate(c));
+        dao = new ProductDAO(db);
+        for (int i = 0; i < 1200; i++) {
+            dao.save(new Product("p" + i, "商品" + i, "", i, 1, i % 3 == 0 ? Enums.ProductStatus.DRAFT : Enums.ProductStatus.PUBLISHED, "m1", "10000000001"));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testFor_each_visits_every_product_across_fetch_batches() throws SQLException {
+        Set<String> seen = new HashSet<>();
+        dao.forEach(p -> {
+            assertTrue(p.getCreatedAt() > 0);
+            assertTrue(seen.add(p.getProductId()));
+        });
+        assertEquals(1200, seen.size());
+        assertNotNull(dao.findById("p0"));
+    }
+
+    @Test
+    public void testFind_by_ids_spans_several_in_queries() throws SQLException {
+        List<String> ids = new java.util.ArrayList<>();
+        for (int i = 0; i < 1100; i++) ids.add("p" + i);
+        ids.add("missing");
+        ids.add("p0");
+        Set<String> found = new HashSet<>();
+        for (Product p : dao.findByIds(ids)) assertTrue(found.add(p.getProductId()));
+        assertEquals(1100, found.size());
+        assertFalse(found.contains("missing"));
+        assertTrue(dao.findByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testVisitor_failure_stops_iteration_and_releases_connection() throws SQLException {
+        int[] visited = {0};
+        SQLException e = assertThrows(SQLException.class, () -> dao.forEach(p -> {
+            if (++visited[0] == 10) throw new SQLException("stop");
+        }));
+        assertEquals("stop", e.getMessage());
+        assertEquals(10, visited[0]);
+        assertEquals(800, dao.listPublished().size());
+    }
+
+    @Test
+    public void testExport_writes_one_json_object_per_product() throws Exception {
+        InMemoryStorageEngine engine = new InMemoryStorageEngine();
+        engine.seedSampleData();
+        Path out = dir.resolve("products.jsonl");
+        long n = new AdminService(engine).exportProducts(out);
+        List<String> lines = Files.readAllLines(out);
+        assertEquals(n, lines.size());
+        assertEquals(engine.products().listPublished().size(), lines.size());
+        JsonObject first = JsonParser.parseString(lines.get(0)).getAsJsonObject();
+        assertNotNull(engine.products().findById(first.get("id").getAsString()));
+        assertFalse(first.has("merchantPhone"));
+    }
+}
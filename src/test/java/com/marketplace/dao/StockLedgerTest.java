@@ -0,0 +1,234 @@
+package com.marketplace.dao;
+
+import com.marketplace.db.Database;
+import com.marketplace.db.PoolConfig;
+import com.marketplace.db.SchemaMigrator;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockLedgerTest {
+    @TempDir
+    Path dir;
+    private Database db;
+    private ProductDAO dao;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        db = new Database("jdbc:sqlite:" + dir.resolve("ledger.db"), new PoolConfig(1, 4, 500, true, 1,
+                List.of("journal_mode=WAL", "busy_timeout=1000")));
+        db.write(c -> new SchemaMigrator().migrate(c));
+        dao = new ProductDAO(db);
+        dao.save(new Product("hot", "秒杀商品", "", 1.0, 100, Enums.ProductStatus.PUBLISHED, "m1", "10000000001"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    // 写回间隔很长，测试中手动 flush
+    private StockLedger ledger(String journalDir) {
+        return new StockLedger(new ProductDAO(db), db, dir.resolve(journalDir), 60_000);
+    }
+
+    private long appliedSequence() throws SQLException {
+        try (Connection c = db.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT applied_seq FROM stock_ledger WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    public void testConcurrent_purchases_never_oversell() throws Exception {
+        try (StockLedger ledger = ledger("journal")) {
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    go.await();
+                    int sold = 0;
+                    for (int i = 0; i < 50; i++) {
+                        if (ledger.reduceStock("hot", 1)) sold++;
+                    }
+                    return sold;
+                }));
+            }
+            go.countDown();
+            int sold = 0;
+            for (Future<Integer> f : results) sold += f.get();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+            assertEquals(100, sold);
+            assertFalse(ledger.reduceStock("hot", 1));
+            assertFalse(ledger.reduceStock("missing", 1));
+            assertEquals(0, ledger.findById("hot").getStock());
+            // 尚未写回
+            assertEquals(100, dao.findById("hot").getStock());
+            ledger.flush();
+            assertEquals(0, dao.findById("hot").getStock());
+            assertEquals(100, appliedSequence());
+            assertEquals(0, ledger.pendingProducts());
+        }
+    }
+
+    @Test
+    public void testSave_flushes_pending_and_reloads_stock() throws Exception {
+        try (StockLedger ledger = ledger("journal")) {
+            assertTrue(ledger.reduceStock("hot", 20));
+            // 清库、批量生成数据等重置事件先写回未落库的扣减
+            db.fireReset();
+            assertEquals(80, dao.findById("hot").getStock());
+            assertTrue(ledger.reduceStock("hot", 10));
+            Product p = ledger.findById("hot");
+            assertEquals(70, p.getStock());
+            p.setStock(p.getStock() + 5); // 商家补货
+            ledger.save(p);
+            assertEquals(75, dao.findById("hot").getStock());
+            assertTrue(ledger.reduceStock("hot", 75));
+            assertFalse(ledger.reduceStock("hot", 1));
+        }
+        // 关闭时写回剩余扣减
+        assertEquals(0, dao.findById("hot").getStock());
+    }
+
+    @Test
+    public void testTransaction_decrements_see_pending_and_oversell_is_reported() throws Exception {
+        dao.save(new Product("cold", "普通商品", "", 1.0, 5, Enums.ProductStatus.PUBLISHED, "m1", "10000000001"));
+        try (StockLedger ledger = ledger("journal")) {
+            assertTrue(ledger.reduceStock("hot", 60));
+            // 事务内直接写库，但要扣除台账中尚未写回的 60 件
+            assertFalse((boolean) db.inTransaction(c -> ledger.reduceStock("hot", 50)));
+            // 回滚后释放预留
+            assertThrows(SQLException.class, () -> db.inTransaction(c -> {
+                assertTrue(ledger.reduceStock("hot", 30));
+                throw new SQLException("下单失败");
+            }));
+            assertTrue((boolean) db.inTransaction(c -> ledger.reduceStock("hot", 40)));
+            assertEquals(60, dao.findById("hot").getStock());
+            assertFalse(ledger.reduceStock("hot", 1));
+            ledger.flush();
+            assertEquals(0, dao.findById("hot").getStock());
+
+            // 绕过台账压低库存，写回时不够扣：报告超卖而不是静默截断
+            assertTrue(ledger.reduceStock("cold", 5));
+            db.write(c -> {
+                try (PreparedStatement ps = c.prepareStatement("UPDATE products SET stock = 2 WHERE id = 'cold'")) {
+                    return ps.executeUpdate();
+                }
+            });
+            SQLException e = assertThrows(SQLException.class, ledger::flush);
+            assertTrue(e.getMessage().contains("cold"));
+            assertEquals(java.util.Map.of("cold", 3), ledger.oversold());
+            assertEquals(0, dao.findById("cold").getStock());
+            assertEquals(0, ledger.pendingProducts());
+        }
+    }
+
+    @Test
+    public void testOversell_on_another_product_does_not_abort_save() throws Exception {
+        dao.save(new Product("cold", "普通商品", "", 1.0, 5, Enums.ProductStatus.PUBLISHED, "m1", "10000000001"));
+        try (StockLedger ledger = ledger("journal")) {
+            List<String> stockEvents = new java.util.concurrent.CopyOnWriteArrayList<>();
+            ledger.addChangeListener(new ProductChangeListener() {
+                public void saved(Product product) {}
+                public void deleted(String productId) {}
+                public void stockChanged(String productId) { stockEvents.add(productId); }
+                public void reset() {}
+            });
+            assertTrue(ledger.reduceStock("cold", 5));
+            db.write(c -> {
+                try (PreparedStatement ps = c.prepareStatement("UPDATE products SET stock = 2 WHERE id = 'cold'")) {
+                    return ps.executeUpdate();
+                }
+            });
+            stockEvents.clear();
+            Product hot = ledger.findById("hot");
+            hot.setStock(120);
+            ledger.save(hot);
+            assertEquals(120, dao.findById("hot").getStock());
+            // 超卖已记录并通知订阅者，写回已提交
+            assertEquals(java.util.Map.of("cold", 3), ledger.oversold());
+            assertTrue(stockEvents.contains("cold"));
+            assertEquals(0, ledger.pendingProducts());
+            assertEquals(0, ledger.findById("cold").getStock());
+        }
+    }
+
+    @Test
+    public void testJournal_locked_by_another_ledger_falls_back_to_database() throws Exception {
+        try (StockLedger owner = ledger("journal");
+             StockLedger second = ledger("journal")) {
+            assertTrue(owner.reduceStock("hot", 10));
+            // 日志目录已被占用：直接条件更新数据库
+            assertTrue(second.reduceStock("hot", 5));
+            assertEquals(95, dao.findById("hot").getStock());
+            assertFalse(second.reduceStock("hot", 1000));
+            assertFalse(second.reduceStock("missing", 1));
+            owner.flush();
+            assertEquals(85, dao.findById("hot").getStock());
+        }
+    }
+
+    @Test
+    public void testRestart_replays_journal_not_yet_flushed() throws Exception {
+        Path copy = Files.createDirectories(dir.resolve("restart"));
+        try (StockLedger crashed = ledger("journal")) {
+            assertTrue(crashed.reduceStock("hot", 10));
+            crashed.flush();
+            assertTrue(crashed.reduceStock("hot", 3));
+            assertTrue(crashed.reduceStock("hot", 4));
+            assertEquals(90, dao.findById("hot").getStock());
+            // 模拟进程崩溃：把此刻的日志复制到新目录，从那里重启；最后一行写了一半
+            try (var files = Files.list(dir.resolve("journal"))) {
+                for (Path f : (Iterable<Path>) files::iterator) {
+                    if (f.getFileName().toString().endsWith(".log")) Files.copy(f, copy.resolve(f.getFileName()));
+                }
+            }
+        }
+        // 旧台账关闭时已写回；把数据库退回崩溃时的状态
+        db.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE products SET stock = 90 WHERE id = 'hot'");
+                 PreparedStatement seq = c.prepareStatement("UPDATE stock_ledger SET applied_seq = 1 WHERE id = 1")) {
+                return ps.executeUpdate() + seq.executeUpdate();
+            }
+        });
+        Files.writeString(copy.resolve("stock-ledger-1.log"), "4\thot", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (StockLedger restarted = ledger("restart")) {
+            assertEquals(83, restarted.findById("hot").getStock());
+            restarted.flush();
+            assertEquals(83, dao.findById("hot").getStock());
+            assertEquals(3, appliedSequence());
+        }
+        // 已重放的日志不会再次扣减
+        try (StockLedger again = ledger("restart")) {
+            assertEquals(83, again.findById("hot").getStock());
+        }
+    }
+}
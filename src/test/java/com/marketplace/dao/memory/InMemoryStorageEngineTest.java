@@ -0,0 +1,121 @@
+package com.marketplace.dao.memory;
+
+import com.marketplace.models.Coupon;
+import com.marketplace.models.Order;
+import com.marketplace.models.Product;
+import com.marketplace.models.User;
+import com.marketplace.service.AdminService;
+import com.marketplace.service.AuthService;
+import com.marketplace.service.MessageService;
+import com.marketplace.service.OrderService;
+import com.marketplace.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryStorageEngineTest {
+    private InMemoryStorageEngine engine;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        engine = new InMemoryStorageEngine();
+        engine.seedSampleData();
+    }
+
+    @Test
+    public void testProducts_are_indexed_and_copied() throws SQLException {
+        ProductService svc = new ProductService(engine);
+        assertEquals(13, svc.listPublished().size());
+        assertEquals(2, engine.products().listByMerchant("m1").size());
+        assertEquals(1, svc.searchProducts("耳塞").size());
+
+        Product p = engine.products().findById("p1");
+        p.setStock(0);
+        assertEquals(50, engine.products().findById("p1").getStock());
+
+        engine.products().reduceStock("p1", 60); // 库存不足，不扣减
+        engine.products().reduceStock("p1", 20);
+        assertEquals(30, engine.products().findById("p1").getStock());
+
+        engine.products().deleteProduct("p1");
+        assertNull(engine.products().findById("p1"));
+        assertEquals(1, engine.products().listByMerchant("m1").size());
+    }
+
+    @Test
+    public void testRegister_login_and_bans() throws SQLException {
+        AuthService auth = new AuthService(engine);
+        AdminService admin = new AdminService(engine);
+        assertTrue(auth.registerUser(new User("u", "13900000002", null), "pw"));
+        assertFalse(auth.registerUser(new User("u2", "13900000002", null), "pw"));
+        assertTrue(auth.loginUser("13900000002", "pw"));
+        assertFalse(auth.loginUser("13900000002", "bad"));
+        assertTrue(auth.loginMerchant("10000000001", "pwd"));
+
+        admin.banPhone("13900000002", "spam");
+        admin.banPhone("900", "spam");
+        assertFalse(auth.loginUser("13900000002", "pw"));
+        assertEquals(List.of("900", "13900000002"), admin.listBannedPhonesSorted());
+
+        admin.banProduct("p2", "x");
+        admin.banProduct("missing", "x");
+        assertEquals(List.of("p2 | 示例耳机"), admin.listBannedProductsSorted());
+
+        admin.clearAllData();
+        assertTrue(admin.listBannedPhonesSorted().isEmpty());
+        assertTrue(engine.products().listPublished().isEmpty());
+    }
+
+    @Test
+    public void testCoupon_checkout_and_messages() throws SQLException {
+        User u = new User("buyer", "13900000001", null);
+        new AuthService(engine).registerUser(u, "pw");
+        Coupon c = new Coupon("m1", "SAVE", 5000.0, "", 1);
+        engine.coupons().save(c);
+        assertTrue(engine.coupons().claimCoupon(c.getCouponId(), u.getPhone()));
+        assertFalse(engine.coupons().claimCoupon(c.getCouponId(), u.getPhone()));
+        String ucid = engine.coupons().listUserCoupons(u.getPhone()).get(0).split(" \\| ")[0];
+
+        Order o = new OrderService(engine).createOrderWithCoupon(u.getUserId(), "m1", 20000.0, ucid);
+        assertEquals(5000.0, o.getDiscount(), 1e-9);
+        assertTrue(engine.coupons().listUserCoupons(u.getPhone()).get(0).endsWith("| 1"));
+        assertEquals(1, engine.orders().findByUser(u.getUserId()).size());
+        Map<String, Object> vip = engine.users().getVipAndTotalByPhone(u.getPhone());
+        assertEquals("SILVER", vip.get("vip"));
+
+        MessageService ms = new MessageService(engine);
+        assertEquals(1, ms.getUnreadCount(u.getUserId()));
+        assertEquals(1, ms.getConversation(u.getUserId(), "system").size());
+        assertEquals(0, ms.getUnreadCount(u.getUserId()));
+        assertFalse(ms.getMessagesFor("m1").isEmpty());
+    }
+
+    @Test
+    public void testConcurrent_claims_never_exceed_quantity() throws Exception {
+        Coupon c = new Coupon("m1", "HOT", 1.0, "", 50);
+        engine.coupons().save(c);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> fs = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String phone = "139" + i;
+                fs.add(pool.submit(() -> engine.coupons().claimCoupon(c.getCouponId(), phone)));
+            }
+            int ok = 0;
+            for (Future<Boolean> f : fs) if (f.get()) ok++;
+            assertEquals(50, ok);
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(engine.coupons().listCouponsByMerchant("m1").get(0).endsWith("| 0"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.marketplace.dao.shard;
+
+import com.marketplace.db.Database;
+import com.marketplace.db.PoolConfig;
+import com.marketplace.models.Coupon;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import com.marketplace.search.SearchQuery;
+import com.marketplace.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedStorageEngineTest {
+    @TempDir
+    Path dir;
+
+    private ShardedStorageEngine engine;
+
+    private PoolConfig config() {
+        return new PoolConfig(1, 4, 2000, true, 1, List.of("journal_mode=WAL", "synchronous=NORMAL", "busy_timeout=1000"));
+    }
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        engine = new ShardedStorageEngine(dir, 3, config());
+        engine.clearAllData();
+        engine.seedSampleData();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        engine.clearAllData();
+        engine.close();
+    }
+
+    private int countProducts(Database db) throws SQLException {
+        try (Connection c = db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM products")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testRouter_is_stable_and_in_range() {
+        ShardRouter r = new ShardRouter(3);
+        for (String m : List.of("m1", "m2", "merchant-abc", "")) {
+            int s = r.shardFor(m);
+            assertTrue(s >= 0 && s < 3);
+            assertEquals(s, new ShardRouter(3).shardFor(m));
+        }
+    }
+
+    @Test
+    public void testProducts_are_spread_across_shards_and_gathered() throws SQLException {
+        int total = 0;
+        int nonEmpty = 0;
+        ShardRouter router = new ShardRouter(3);
+        for (int i = 0; i < 3; i++) {
+            int n = countProducts(engine.getShardDatabases().get(i));
+            total += n;
+            if (n > 0) nonEmpty++;
+        }
+        assertEquals(13, total);
+        assertTrue(nonEmpty > 1);
+
+        ProductService svc = new ProductService(engine);
+        assertEquals(13, svc.listPublished().size());
+        assertEquals(1, svc.searchProducts("耳塞").size());
+        for (Product p : engine.products().listByMerchant("m3")) {
+            assertEquals("m3", p.getMerchantId());
+        }
+        assertEquals(2, engine.products().listByMerchant("m3").size());
+        assertTrue(countProducts(engine.getShardDatabases().get(router.shardFor("m3"))) >= 2);
+    }
+
+    private static String merchantOnShard(int shard, boolean same) {
+        ShardRouter r = new ShardRouter(3);
+        for (int i = 0; ; i++) {
+            if ((r.shardFor("mx" + i) == shard) == same) return "mx" + i;
+        }
+    }
+
+    @Test
+    public void testFull_text_search_merges_shards_by_score() throws SQLException {
+        String weak = merchantOnShard(0, true);
+        String strong = merchantOnShard(0, false);
+        for (int i = 0; i < 3; i++) {
+            engine.products().save(new Product("weak" + i, "水杯" + i, "附赠降噪蓝牙耳机收纳袋", 1.0, 1, Enums.ProductStatus.PUBLISHED, weak, "1"));
+        }
+        engine.products().save(new Product("strong", "降噪蓝牙耳机", "", 1.0, 1, Enums.ProductStatus.PUBLISHED, strong, "1"));
+        List<Product> top = engine.products().searchFullText(SearchQuery.parse("降噪蓝牙耳机"), 2);
+        assertEquals("strong", top.get(0).getProductId());
+        assertEquals(2, top.size());
+    }
+
+    @Test
+    public void testChanging_merchant_moves_the_product_to_the_new_shard() throws Exception {
+        String from = merchantOnShard(0, true);
+        String to = merchantOnShard(0, false);
+        ProductService svc = new ProductService(engine);
+        engine.products().save(new Product("mover", "搬家台灯", "", 1.0, 1, Enums.ProductStatus.PUBLISHED, from, "1"));
+        assertEquals(1, svc.searchProducts("搬家台灯", 10).size());
+
+        engine.products().save(new Product("mover", "搬家台灯 新款", "", 1.0, 1, Enums.ProductStatus.PUBLISHED, to, "1"));
+        assertEquals(to, engine.products().findById("mover").getMerchantId());
+        assertTrue(engine.products().listByMerchant(from).isEmpty());
+        assertEquals(14, engine.products().listPublished().size());
+        // 订阅者先收到旧分片的删除、再收到新分片的保存，索引里仍有这个商品
+        assertEquals(List.of("mover"), svc.searchProducts("搬家台灯", 10).stream().map(Product::getProductId).toList());
+
+        // 没有位置缓存的引擎批量保存时同样搬走旧副本
+        try (ShardedStorageEngine fresh = new ShardedStorageEngine(dir, 3, config())) {
+            fresh.products().saveAll(List.of(new Product("mover", "搬家台灯", "", 1.0, 1, Enums.ProductStatus.PUBLISHED, from, "1")));
+        }
+        assertEquals(from, engine.products().listByMerchant(from).get(0).getMerchantId());
+        int copies = 0;
+        for (Database db : engine.getShardDatabases()) {
+            try (Connection c = db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM products WHERE id = 'mover'")) {
+                rs.next();
+                copies += rs.getInt(1);
+            }
+        }
+        assertEquals(1, copies);
+    }
+
+    @Test
+    public void testLookups_by_id_find_the_right_shard_without_cache() throws Exception {
+        try (ShardedStorageEngine fresh = new ShardedStorageEngine(dir, 3, config())) {
+            Product p = fresh.products().findById("p8");
+            assertNotNull(p);
+            assertEquals("m5", p.getMerchantId());
+            fresh.products().reduceStock("p8", 3);
+            assertEquals(7, engine.products().findById("p8").getStock());
+            assertNull(fresh.products().findById("missing"));
+        }
+    }
+
+    @Test
+    public void testCoupon_claim_and_redeem_stay_on_the_merchant_shard() throws SQLException {
+        Coupon c = new Coupon("m6", "SHARD", 10.0, "", 1);
+        engine.coupons().save(c);
+        assertTrue(engine.coupons().claimCoupon(c.getCouponId(), "13900000009"));
+        assertFalse(engine.coupons().claimCoupon(c.getCouponId(), "13900000009"));
+        assertFalse(engine.coupons().claimCoupon("no-such-coupon", "13900000009"));
+        List<String> mine = engine.coupons().listUserCoupons("13900000009");
+        assertEquals(1, mine.size());
+        String ucid = mine.get(0).split(" \\| ")[0];
+        assertEquals(10.0, engine.coupons().getDiscountByUserCouponId(ucid));
+        engine.coupons().markUserCouponUsed(ucid);
+        assertTrue(engine.coupons().listUserCoupons("13900000009").get(0).endsWith("| 1"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+    @TempDir
+    Path dir;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        String url = "jdbc:sqlite:" + dir.resolve("pool.db");
+        pool = new ConnectionPool(url, new PoolConfig(1, 2, 200, true, 1, List.of("busy_timeout=1234")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testConnections_are_reused() throws SQLException {
+        for (int i = 0; i < 20; i++) {
+            try (Connection c = pool.borrow(); Statement st = c.createStatement()) {
+                st.execute("SELECT 1");
+            }
+        }
+        assertEquals(1, pool.getPhysicalCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testPool_is_bounded_and_borrow_times_out() throws SQLException {
+        try (Connection a = pool.borrow(); Connection b = pool.borrow()) {
+            assertNotNull(a);
+            assertNotNull(b);
+            assertThrows(SQLException.class, () -> pool.borrow());
+        }
+        // 归还后可以再次借出
+        try (Connection c = pool.borrow()) {
+            assertFalse(c.isClosed());
+        }
+    }
+
+    @Test
+    public void testPragmas_applied_on_physical_connection() throws SQLException {
+        try (Connection c = pool.borrow(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("PRAGMA busy_timeout")) {
+            assertTrue(rs.next());
+            assertEquals(1234, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testReturned_connection_is_reset_and_handle_unusable() throws SQLException {
+        Connection c = pool.borrow();
+        c.setAutoCommit(false);
+        c.close();
+        assertTrue(c.isClosed());
+        assertThrows(SQLException.class, c::createStatement);
+        try (Connection again = pool.borrow()) {
+            assertTrue(again.getAutoCommit());
+        }
+    }
+}
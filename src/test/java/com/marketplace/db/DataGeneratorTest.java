@@ -0,0 +1,91 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataGeneratorTest {
+    @TempDir
+    Path dir;
+
+    private Database db;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        db = open("gen.db");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    private Database open(String name) throws SQLException {
+        Database d = new Database("jdbc:sqlite:" + dir.resolve(name), new PoolConfig(1, 2, 2000, true, 1,
+                List.of("journal_mode=WAL", "synchronous=NORMAL", "busy_timeout=1000")));
+        d.write(c -> new SchemaMigrator().migrate(c));
+        return d;
+    }
+
+    private static DataGenerator.Config small(long seed) {
+        return new DataGenerator.Config(seed, 5, 50, 200, 10, 1000, 2000, 1.1, 1.2, 64, 256);
+    }
+
+    private static String query(Database d, String sql) throws SQLException {
+        try (Connection c = d.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    @Test
+    public void testGenerates_requested_counts_and_is_idempotent() throws SQLException {
+        DataGenerator.Report r = new DataGenerator(db, small(7)).generate();
+        assertEquals(50, r.users());
+        assertEquals(1000, r.orders());
+        assertEquals("2000", query(db, "SELECT COUNT(*) FROM messages"));
+        assertEquals("200", query(db, "SELECT COUNT(*) FROM products"));
+
+        // 重复运行：INSERT OR IGNORE，不新增也不报错
+        DataGenerator.Report again = new DataGenerator(db, small(7)).generate();
+        assertEquals(0, again.orders());
+        assertEquals("1000", query(db, "SELECT COUNT(*) FROM orders"));
+    }
+
+    @Test
+    public void testSame_seed_produces_same_data() throws SQLException {
+        new DataGenerator(db, small(42)).generate();
+        try (Database other = open("gen2.db")) {
+            new DataGenerator(other, small(42)).generate();
+            String sql = "SELECT group_concat(user_id || ':' || total_amount, ',') FROM (SELECT * FROM orders ORDER BY id LIMIT 200)";
+            assertEquals(query(db, sql), query(other, sql));
+        }
+    }
+
+    @Test
+    public void testSkew_concentrates_messages_on_heavy_talkers() throws SQLException {
+        new DataGenerator(db, small(1)).generate();
+        int top = Integer.parseInt(query(db, "SELECT COUNT(*) FROM messages WHERE sender_id = 'gen-u-0'"));
+        // 均匀分布下每人约 40 条，Zipf(1.2) 下排名第一的用户远多于此
+        assertTrue(top > 200, "top talker sent " + top);
+    }
+
+    @Test
+    public void testZipf_without_skew_is_uniform() {
+        ZipfSampler z = new ZipfSampler(4, 0.0);
+        SplittableRandom rnd = new SplittableRandom(3);
+        int[] counts = new int[4];
+        for (int i = 0; i < 40_000; i++) counts[z.next(rnd)]++;
+        for (int c : counts) assertTrue(Math.abs(c - 10_000) < 500, "count " + c);
+    }
+}
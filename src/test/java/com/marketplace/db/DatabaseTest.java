@@ -0,0 +1,133 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabaseTest {
+    @TempDir
+    Path dir;
+
+    private Database db;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        db = new Database("jdbc:sqlite:" + dir.resolve("single-writer.db"), new PoolConfig(1, 4, 2000, true, 1,
+                List.of("journal_mode=WAL", "synchronous=NORMAL", "busy_timeout=100")));
+        db.write(c -> {
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("CREATE TABLE counter (id INTEGER PRIMARY KEY, n INTEGER)");
+                st.executeUpdate("INSERT INTO counter (id, n) VALUES (1, 0)");
+            }
+            return null;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testConcurrent_writers_do_not_hit_busy_and_do_not_lose_updates() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                fs.add(pool.submit(() -> db.write(c -> {
+                    // 读-改-写：若不是单写线程，这里会丢失更新或触发 SQLITE_BUSY
+                    int n;
+                    try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT n FROM counter WHERE id = 1")) {
+                        rs.next();
+                        n = rs.getInt(1);
+                    }
+                    try (PreparedStatement ps = c.prepareStatement("UPDATE counter SET n = ? WHERE id = 1")) {
+                        ps.setInt(1, n + 1);
+                        return ps.executeUpdate();
+                    }
+                })));
+            }
+            for (Future<?> f : fs) f.get();
+        } finally {
+            pool.shutdown();
+        }
+        int n = Database.await(db.submitRead(c -> {
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT n FROM counter WHERE id = 1")) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }));
+        assertEquals(400, n);
+    }
+
+    @Test
+    public void testNested_write_runs_inline_on_writer_thread() throws SQLException {
+        String thread = db.write(c -> db.write(inner -> {
+            assertSame(c, inner);
+            return Thread.currentThread().getName();
+        }));
+        assertEquals("db-writer", thread);
+    }
+
+    @Test
+    public void testFailed_write_completes_future_exceptionally() {
+        CompletableFuture<Integer> f = db.submitWrite(c -> {
+            try (Statement st = c.createStatement()) {
+                return st.executeUpdate("INSERT INTO missing_table VALUES (1)");
+            }
+        });
+        assertThrows(SQLException.class, () -> Database.await(f));
+        // 写线程在失败后仍可继续工作
+        assertDoesNotThrow(() -> db.write(c -> 1));
+    }
+
+    @Test
+    public void testGroup_commit_persists_all_and_isolates_failures() throws Exception {
+        db.write(c -> {
+            try (Statement st = c.createStatement()) {
+                return st.executeUpdate("CREATE TABLE items (id INTEGER PRIMARY KEY)");
+            }
+        });
+        List<CompletableFuture<Integer>> fs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int id = i;
+            fs.add(db.submitGrouped(c -> {
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO items (id) VALUES (?)")) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate();
+                }
+            }));
+        }
+        // 主键冲突：只有这一条失败，同批其它写入照常提交
+        CompletableFuture<Integer> dup = db.submitGrouped(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO items (id) VALUES (?)")) {
+                ps.setInt(1, 7);
+                return ps.executeUpdate();
+            }
+        });
+        for (CompletableFuture<Integer> f : fs) assertEquals(1, Database.await(f));
+        assertThrows(SQLException.class, () -> Database.await(dup));
+        int count = Database.await(db.submitRead(c -> {
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM items")) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }));
+        assertEquals(200, count);
+    }
+}
@@ -0,0 +1,71 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+    @TempDir
+    Path dir;
+
+    private Connection open(String name) throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + dir.resolve(name));
+    }
+
+    @Test
+    public void testFresh_database_reaches_latest_version_with_indexes() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator();
+        try (Connection c = open("fresh.db")) {
+            int applied = migrator.migrate(c);
+            assertEquals(migrator.latestVersion(), applied);
+            assertEquals(migrator.latestVersion(), SchemaMigrator.currentVersion(c));
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN SELECT COUNT(1) FROM messages WHERE receiver_id = 'x' AND is_read = 0")) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) plan.append(rs.getString("detail"));
+                assertTrue(plan.toString().contains("idx_messages_receiver_read"), plan.toString());
+            }
+            // 再次执行不应重复应用
+            assertEquals(0, migrator.migrate(c));
+        }
+    }
+
+    @Test
+    public void testLegacy_database_gets_missing_columns() throws SQLException {
+        try (Connection c = open("legacy.db")) {
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("CREATE TABLE messages (id TEXT PRIMARY KEY, sender_id TEXT, receiver_id TEXT, content TEXT, timestamp TEXT)");
+                st.executeUpdate("CREATE TABLE users (id TEXT PRIMARY KEY, username TEXT, phone TEXT UNIQUE, password TEXT, vip TEXT, login_count INTEGER, last_login TEXT)");
+                st.executeUpdate("INSERT INTO messages (id, sender_id, receiver_id, content, timestamp) VALUES ('1','a','b','hi','0')");
+            }
+            new SchemaMigrator().migrate(c);
+            assertTrue(SchemaMigrator.columnExists(c, "messages", "is_read"));
+            assertTrue(SchemaMigrator.columnExists(c, "users", "total_spent"));
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT is_read FROM messages WHERE id = '1'")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void testFailed_migration_is_rolled_back_and_not_recorded() throws SQLException {
+        SchemaMigrator broken = new SchemaMigrator(java.util.List.of(
+                new Migration(1, "ok", c -> { try (Statement st = c.createStatement()) { st.executeUpdate("CREATE TABLE t (x INTEGER)"); } }),
+                new Migration(2, "broken", c -> { try (Statement st = c.createStatement()) { st.executeUpdate("CREATE TABLE t2 (x INTEGER)"); st.executeUpdate("NOT VALID SQL"); } })
+        ));
+        try (Connection c = open("broken.db")) {
+            assertThrows(SQLException.class, () -> broken.migrate(c));
+            assertEquals(1, SchemaMigrator.currentVersion(c));
+            assertFalse(SchemaMigrator.columnExists(c, "t2", "x"));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowQueryLogTest {
+    @TempDir
+    Path dir;
+
+    private SlowQueryLog slow;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        // 阈值 0：每条语句都算慢查询
+        slow = new SlowQueryLog(0, 3, dir.resolve("slow.log"), 400, 2);
+        pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("slow.db"),
+                new PoolConfig(1, 1, 200, true, 1, List.of("busy_timeout=100")), new SqlMetrics(slow));
+        try (Connection c = pool.borrow(); Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE users (id TEXT PRIMARY KEY, phone TEXT)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+        slow.close();
+    }
+
+    private void findByPhone(String phone) throws SQLException {
+        try (Connection c = pool.borrow(); PreparedStatement ps = c.prepareStatement("SELECT id FROM users WHERE phone = ?")) {
+            ps.setString(1, phone);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rs.getString(1);
+            }
+        }
+    }
+
+    @Test
+    public void testCaptures_masked_params_and_query_plan() throws SQLException {
+        findByPhone("13812345678");
+        SlowQueryLog.Entry e = slow.recent().get(slow.recent().size() - 1);
+        assertEquals("SELECT id FROM users WHERE phone = ?", e.sql());
+        assertEquals(List.of("138****78"), e.params());
+        assertFalse(e.plan().isEmpty());
+        assertTrue(e.plan().get(0).contains("SCAN"), e.plan().toString());
+    }
+
+    @Test
+    public void testStatements_touching_passwords_log_only_types_and_lengths() throws Exception {
+        try (Connection c = pool.borrow(); Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE accounts (phone TEXT, password TEXT, vip INTEGER)");
+        }
+        try (Connection c = pool.borrow();
+             PreparedStatement ps = c.prepareStatement("INSERT INTO accounts (phone, password, vip) VALUES (?, ?, ?)")) {
+            ps.setString(1, "13812345678");
+            ps.setString(2, "hunter2-secret");
+            ps.setInt(3, 1);
+            ps.executeUpdate();
+        }
+        SlowQueryLog.Entry e = slow.recent().get(slow.recent().size() - 1);
+        assertEquals(List.of("String(11)", "String(14)", "Integer"), e.params());
+        slow.close();
+        assertFalse(Files.readString(dir.resolve("slow.log")).contains("hunter2"));
+    }
+
+    @Test
+    public void testRing_buffer_keeps_most_recent_entries() throws SQLException {
+        for (int i = 0; i < 5; i++) findByPhone("1380000000" + i);
+        List<SlowQueryLog.Entry> recent = slow.recent();
+        assertEquals(3, recent.size());
+        assertEquals(List.of("138****04"), recent.get(2).params());
+        assertEquals(List.of("138****02"), recent.get(0).params());
+    }
+
+    @Test
+    public void testLog_file_rotates_when_too_large() throws Exception {
+        for (int i = 0; i < 10; i++) findByPhone("13900000000");
+        slow.close();
+        assertTrue(Files.exists(dir.resolve("slow.log")));
+        assertTrue(Files.exists(dir.resolve("slow.log.1")));
+        assertFalse(Files.exists(dir.resolve("slow.log.3")));
+        assertFalse(Files.readString(dir.resolve("slow.log")).contains("13900000000"));
+    }
+
+    @Test
+    public void testFile_write_failures_are_counted_not_thrown() throws Exception {
+        // 日志所在“目录”其实是个普通文件，写文件必然失败
+        Path blocker = Files.createFile(dir.resolve("blocker"));
+        SlowQueryLog broken = new SlowQueryLog(0, 3, blocker.resolve("slow.log"), 400, 2);
+        try (ConnectionPool p = new ConnectionPool("jdbc:sqlite:" + dir.resolve("broken.db"),
+                new PoolConfig(1, 1, 200, true, 1, List.of("busy_timeout=100")), new SqlMetrics(broken));
+             Connection c = p.borrow(); Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE t (id INTEGER)");
+        }
+        broken.close();
+        assertEquals(1, broken.recent().size());
+        assertEquals(1, broken.failures());
+    }
+}
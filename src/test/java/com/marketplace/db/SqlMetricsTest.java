@@ -0,0 +1,99 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlMetricsTest {
+    @TempDir
+    Path dir;
+
+    private SqlMetrics metrics;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        metrics = new SqlMetrics();
+        pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("metrics.db"),
+                new PoolConfig(1, 1, 200, true, 1, List.of("busy_timeout=100")), metrics);
+        try (Connection c = pool.borrow(); Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE t (id INTEGER PRIMARY KEY, v TEXT)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    private SqlMetrics.Snapshot find(String sql) {
+        return metrics.snapshot().stream().filter(s -> s.sql().equals(sql)).findFirst().orElseThrow();
+    }
+
+    @Test
+    public void testNormalize_replaces_literals_and_folds_in_lists() {
+        assertEquals("SELECT * FROM t WHERE id IN (?) AND v = ? AND col2 > ?",
+                SqlMetrics.normalize("SELECT *\n  FROM t WHERE id in (1, 2,3) AND v = 'it''s' AND col2 > 4.5"));
+        assertEquals("INSERT INTO t (id, v) VALUES (?, ?)", SqlMetrics.normalize("INSERT INTO t (id, v) VALUES (?, ?)"));
+    }
+
+    @Test
+    public void testRecords_counts_rows_and_errors_per_statement() throws SQLException {
+        try (Connection c = pool.borrow()) {
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO t (id, v) VALUES (?, ?)")) {
+                    ps.setInt(1, i);
+                    ps.setString(2, "v" + i);
+                    ps.executeUpdate();
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO t (id, v) VALUES (?, ?)")) {
+                ps.setInt(1, 0);
+                ps.setString(2, "dup");
+                assertThrows(SQLException.class, ps::executeUpdate);
+            }
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT v FROM t WHERE id < 10")) {
+                while (rs.next()) assertNotNull(rs.getString(1));
+            }
+        }
+        SqlMetrics.Snapshot insert = find("INSERT INTO t (id, v) VALUES (?, ?)");
+        assertEquals(4, insert.count());
+        assertEquals(1, insert.errors());
+        assertEquals(3, insert.rows());
+        SqlMetrics.Snapshot select = find("SELECT v FROM t WHERE id < ?");
+        assertEquals(1, select.count());
+        assertEquals(3, select.rows());
+        assertTrue(metrics.dump(10).contains("SELECT v FROM t WHERE id < ?"));
+    }
+
+    @Test
+    public void testReset_clears_counters_and_histogram() throws SQLException {
+        try (Connection c = pool.borrow(); Statement st = c.createStatement()) {
+            st.executeUpdate("INSERT INTO t (id, v) VALUES (1, 'a')");
+        }
+        assertFalse(metrics.snapshot().isEmpty());
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testPercentile_comes_from_log2_buckets() {
+        SqlMetrics.Stats s = metrics.stats("SELECT 1");
+        for (int i = 0; i < 99; i++) s.record(3_000, 0, false);        // 3 微秒 -> 桶 2，上界 4 微秒
+        s.record(5_000_000, 0, false);                                  // 5 毫秒
+        SqlMetrics.Snapshot snap = s.snapshot();
+        assertEquals(0.004, snap.percentileMillis(0.50), 1e-9);
+        assertEquals(5.0, snap.percentileMillis(1.0), 1e-9);
+    }
+}
@@ -0,0 +1,94 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest {
+    @TempDir
+    Path dir;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("stmt.db"),
+                new PoolConfig(1, 1, 200, true, 1, List.of("busy_timeout=100"), 2));
+        try (Connection c = pool.borrow(); Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE t (id INTEGER PRIMARY KEY, v TEXT)");
+            st.executeUpdate("INSERT INTO t (id, v) VALUES (1, 'a'), (2, 'b')");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    private String find(Connection c, int id) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT v FROM t WHERE id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    @Test
+    public void testSame_sql_is_prepared_once_per_connection() throws SQLException {
+        for (int i = 0; i < 10; i++) {
+            try (Connection c = pool.borrow()) {
+                assertEquals(i % 2 == 0 ? "a" : "b", find(c, i % 2 + 1));
+            }
+        }
+        assertEquals(1, pool.getStatementCacheMisses());
+        assertEquals(9, pool.getStatementCacheHits());
+    }
+
+    @Test
+    public void testNested_use_of_same_sql_gets_separate_statement() throws SQLException {
+        try (Connection c = pool.borrow();
+             PreparedStatement outer = c.prepareStatement("SELECT v FROM t WHERE id = ?")) {
+            outer.setInt(1, 1);
+            try (ResultSet rs = outer.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("b", find(c, 2));
+                assertEquals("a", rs.getString(1));
+            }
+        }
+    }
+
+    @Test
+    public void testLeast_recently_used_statement_is_evicted() throws SQLException {
+        try (Connection c = pool.borrow()) {
+            find(c, 1);
+            try (PreparedStatement ps = c.prepareStatement("SELECT COUNT(*) FROM t")) { ps.executeQuery().close(); }
+            try (PreparedStatement ps = c.prepareStatement("SELECT MAX(id) FROM t")) { ps.executeQuery().close(); }
+            // 容量为 2：最早的 find 语句已被淘汰，再次执行需要重新预编译
+            long misses = pool.getStatementCacheMisses();
+            assertEquals("a", find(c, 1));
+            assertEquals(misses + 1, pool.getStatementCacheMisses());
+        }
+    }
+
+    @Test
+    public void testClosed_handle_cannot_be_reused() throws SQLException {
+        try (Connection c = pool.borrow()) {
+            PreparedStatement ps = c.prepareStatement("SELECT v FROM t WHERE id = ?");
+            ps.close();
+            assertTrue(ps.isClosed());
+            assertThrows(SQLException.class, () -> ps.setInt(1, 1));
+        }
+    }
+}
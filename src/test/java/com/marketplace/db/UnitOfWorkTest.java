@@ -0,0 +1,136 @@
+package com.marketplace.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnitOfWorkTest {
+    @TempDir
+    Path dir;
+
+    private Database db;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        db = new Database("jdbc:sqlite:" + dir.resolve("uow.db"), new PoolConfig(1, 4, 2000, true, 1,
+                List.of("journal_mode=WAL", "synchronous=NORMAL", "busy_timeout=100")));
+        db.write(c -> {
+            try (Statement st = c.createStatement()) {
+                return st.executeUpdate("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT)");
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    private int insert(int id) throws SQLException {
+        return db.write(c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO items (id, name) VALUES (?, ?)")) {
+                ps.setInt(1, id);
+                ps.setString(2, "item-" + id);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    private int count() throws SQLException {
+        try (Connection c = db.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM items")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testFailure_rolls_back_every_write_in_the_unit() throws SQLException {
+        assertThrows(IllegalStateException.class, () -> db.inTransaction(c -> {
+            insert(1);
+            db.writeGrouped(inner -> {
+                try (PreparedStatement ps = inner.prepareStatement("INSERT INTO items (id, name) VALUES (2, 'grouped')")) {
+                    return ps.executeUpdate();
+                }
+            });
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(0, count());
+    }
+
+    @Test
+    public void testReads_inside_unit_see_uncommitted_writes_and_commit_once() throws SQLException {
+        int seen = db.inTransaction(c -> {
+            insert(1);
+            insert(2);
+            return count();
+        });
+        assertEquals(2, seen);
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void testAfter_commit_callbacks_run_only_on_commit() throws SQLException {
+        List<String> events = new ArrayList<>();
+        db.inTransaction(c -> {
+            insert(1);
+            UnitOfWork.runAfterCommit(() -> events.add("committed"));
+            assertTrue(events.isEmpty());
+            return null;
+        });
+        assertEquals(List.of("committed"), events);
+
+        assertThrows(SQLException.class, () -> db.inTransaction(c -> {
+            UnitOfWork.runAfterCommit(() -> events.add("should not run"));
+            return insert(1); // 主键冲突
+        }));
+        assertEquals(List.of("committed"), events);
+    }
+
+    @Test
+    public void testFailing_callbacks_are_counted_and_do_not_stop_the_rest() throws SQLException {
+        List<String> events = new ArrayList<>();
+        long before = UnitOfWork.callbackFailures();
+        assertEquals(1, (int) db.inTransaction(c -> {
+            UnitOfWork.runAfterCommit(() -> { throw new IllegalStateException("cache down"); });
+            UnitOfWork.runAfterCommit(() -> events.add("committed"));
+            return insert(1);
+        }));
+        assertEquals(List.of("committed"), events);
+        assertEquals(before + 1, UnitOfWork.callbackFailures());
+
+        // 事务失败时回调异常附在抛出的异常上
+        SQLException e = assertThrows(SQLException.class, () -> db.inTransaction(c -> {
+            UnitOfWork.runAfterCompletion(() -> { throw new IllegalStateException("release failed"); });
+            UnitOfWork.runAfterCompletion(() -> events.add("completed"));
+            return insert(1); // 主键冲突
+        }));
+        assertEquals(List.of("committed", "completed"), events);
+        assertEquals(before + 2, UnitOfWork.callbackFailures());
+        assertEquals("release failed", e.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    public void testNested_unit_joins_outer_and_boundaries_are_protected() throws SQLException {
+        assertThrows(RuntimeException.class, () -> db.inTransaction(outer -> {
+            db.inTransaction(inner -> {
+                assertSame(outer, inner);
+                return insert(1);
+            });
+            assertThrows(SQLException.class, outer::commit);
+            throw new RuntimeException("rollback outer");
+        }));
+        assertEquals(0, count());
+    }
+}
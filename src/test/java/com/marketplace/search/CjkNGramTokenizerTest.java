@@ -0,0 +1,36 @@
+package com.marketplace.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CjkNGramTokenizerTest {
+    private final CjkNGramTokenizer bigram = new CjkNGramTokenizer();
+
+    @Test
+    public void testMixed_text_splits_words_and_bigrams_with_tail() {
+        assertEquals(List.of("iphone", "15", "示例", "例耳", "耳塞", "塞", "pro"), bigram.tokenize("iPhone 15 示例耳塞-Pro"));
+        assertEquals(List.of("书"), bigram.tokenize("书"));
+        assertEquals(List.of(), bigram.tokenize("，。!"));
+    }
+
+    @Test
+    public void testQuery_tokens_skip_tail_and_keep_short_runs_for_prefix() {
+        assertEquals(List.of("耳塞"), bigram.tokenizeQuery("耳塞"));
+        assertEquals(List.of("降噪", "噪耳", "耳塞"), bigram.tokenizeQuery("降噪耳塞"));
+        assertEquals(List.of("塞"), bigram.tokenizeQuery("塞"));
+        assertTrue(bigram.prefixMatch("塞"));
+        assertFalse(bigram.prefixMatch("耳塞"));
+        assertTrue(bigram.prefixMatch("java"));
+    }
+
+    @Test
+    public void testTrigram_tail_covers_every_position() {
+        CjkNGramTokenizer trigram = new CjkNGramTokenizer(3);
+        assertEquals(List.of("示例耳", "例耳塞", "耳塞", "塞"), trigram.tokenize("示例耳塞"));
+        assertEquals(List.of("耳塞"), trigram.tokenizeQuery("耳塞"));
+        assertTrue(trigram.prefixMatch("耳塞"));
+    }
+}
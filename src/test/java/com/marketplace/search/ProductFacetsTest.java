@@ -0,0 +1,95 @@
+package com.marketplace.search;
+
+import com.marketplace.dao.memory.InMemoryProductRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductFacetsTest {
+    private InMemoryProductRepository repo;
+    private ProductFacets facets;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        repo = new InMemoryProductRepository();
+        repo.save(product("a", 30, 5, "m1", Enums.ProductStatus.PUBLISHED));
+        repo.save(product("b", 120, 0, "m1", Enums.ProductStatus.PUBLISHED));
+        repo.save(product("c", 150, 3, "m2", Enums.ProductStatus.PUBLISHED));
+        repo.save(product("d", 2000, 1, "m2", Enums.ProductStatus.DRAFT));
+        facets = new ProductFacets(repo);
+    }
+
+    private static Product product(String id, double price, int stock, String merchant, Enums.ProductStatus status) {
+        return new Product(id, "商品" + id, "", price, stock, status, merchant, "10000000001");
+    }
+
+    private List<String> ids(ProductFacets.Filter f) throws SQLException {
+        return facets.query(f, null, 100).productIds().stream().sorted().toList();
+    }
+
+    @Test
+    public void testFacets_combine_with_or_within_and_and_across_dimensions() throws SQLException {
+        assertEquals(List.of("a", "b", "c"), ids(ProductFacets.Filter.published()));
+        assertEquals(List.of("b", "c"), ids(new ProductFacets.Filter(Set.of(ProductFacets.PriceBand.FROM_50_TO_200), null, null, null)));
+        assertEquals(List.of("a", "c"), ids(new ProductFacets.Filter(null, null, Set.of(ProductFacets.StockState.IN_STOCK), Set.of(Enums.ProductStatus.PUBLISHED))));
+        assertEquals(List.of("a", "d"), ids(new ProductFacets.Filter(Set.of(ProductFacets.PriceBand.UNDER_50, ProductFacets.PriceBand.OVER_1000), null, null, null)));
+        assertEquals(List.of("c"), ids(new ProductFacets.Filter(null, Set.of("m2"), null, Set.of(Enums.ProductStatus.PUBLISHED))));
+        // 候选集（关键字命中）与筛选条件求交
+        assertEquals(List.of("b"), facets.query(new ProductFacets.Filter(null, Set.of("m1"), null, null), List.of("b", "c", "zzz"), 10).productIds());
+    }
+
+    @Test
+    public void testCounts_exclude_the_dimension_own_selection() throws SQLException {
+        ProductFacets.Result r = facets.query(new ProductFacets.Filter(Set.of(ProductFacets.PriceBand.FROM_50_TO_200), null, null, Set.of(Enums.ProductStatus.PUBLISHED)), null, 1);
+        assertEquals(1, r.productIds().size());
+        assertEquals(2, r.total());
+        assertEquals(Map.of(ProductFacets.PriceBand.UNDER_50, 1, ProductFacets.PriceBand.FROM_50_TO_200, 2), r.counts().priceBands());
+        assertEquals(Map.of("m1", 1, "m2", 1), r.counts().merchants());
+        assertEquals(Map.of(ProductFacets.StockState.IN_STOCK, 1, ProductFacets.StockState.SOLD_OUT, 1), r.counts().stock());
+        assertEquals(Map.of(Enums.ProductStatus.PUBLISHED, 2), r.counts().statuses());
+    }
+
+    @Test
+    public void testFacets_follow_saves_deletes_and_stock_changes() throws SQLException {
+        ProductFacets.Filter soldOut = new ProductFacets.Filter(null, null, Set.of(ProductFacets.StockState.SOLD_OUT), null);
+        assertEquals(List.of("b"), ids(soldOut));
+        repo.reduceStock("c", 3);
+        assertEquals(List.of("b", "c"), ids(soldOut));
+
+        Product d = repo.findById("d");
+        d.setStatus(Enums.ProductStatus.PUBLISHED);
+        d.setPrice(40);
+        repo.save(d);
+        assertEquals(List.of("a", "b", "c", "d"), ids(ProductFacets.Filter.published()));
+        assertEquals(List.of("a", "d"), ids(new ProductFacets.Filter(Set.of(ProductFacets.PriceBand.UNDER_50), null, null, null)));
+
+        repo.deleteProduct("a");
+        repo.save(product("e", 10, 1, "m3", Enums.ProductStatus.PUBLISHED));
+        assertEquals(List.of("d", "e"), ids(new ProductFacets.Filter(Set.of(ProductFacets.PriceBand.UNDER_50), null, null, null)));
+        // 删除后回收的序号被新商品复用
+        assertEquals(4, facets.size());
+    }
+
+    @Test
+    public void testShared_instance_per_repository_sees_writes_made_before_first_query() throws SQLException {
+        ProductFacets shared = ProductFacets.forRepository(repo);
+        assertSame(shared, ProductFacets.forRepository(repo));
+        assertNotSame(shared, ProductFacets.forRepository(new InMemoryProductRepository()));
+        // 首次查询时才订阅并加载
+        assertEquals(0, shared.size());
+        assertEquals(3, shared.query(ProductFacets.Filter.published(), null, 10).total());
+        repo.save(product("e", 10, 1, "m3", Enums.ProductStatus.PUBLISHED));
+        repo.reduceStock("a", 5);
+        ProductFacets.Result r = shared.query(ProductFacets.Filter.published(), null, 10);
+        assertEquals(4, r.total());
+        assertEquals(Map.of(ProductFacets.StockState.IN_STOCK, 2, ProductFacets.StockState.SOLD_OUT, 2), r.counts().stock());
+    }
+}
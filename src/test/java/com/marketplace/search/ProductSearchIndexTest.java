@@ -0,0 +1,110 @@
+package com.marketplace.search;
+
+import com.marketplace.dao.memory.InMemoryStorageEngine;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductSearchIndexTest {
+    private InMemoryStorageEngine engine;
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        engine = new InMemoryStorageEngine();
+        engine.seedSampleData();
+        index = new ProductSearchIndex(engine.products(), new CjkNGramTokenizer());
+    }
+
+    private List<String> ids(String query) throws SQLException {
+        return index.search(query, 100).stream().map(ProductSearchIndex.Hit::productId).sorted().toList();
+    }
+
+    private static Product product(String id, String title, String desc, Enums.ProductStatus status) {
+        return new Product(id, title, desc, 10.0, 5, status, "m1", "10000000001");
+    }
+
+    @Test
+    public void testAnd_or_queries_and_adjacent_chinese_terms() throws SQLException {
+        assertEquals(List.of("p13"), ids("耳塞"));
+        assertEquals(List.of("p13", "p2"), ids("耳塞 OR 无线"));
+        assertEquals(List.of("p2"), ids("示例 无线"));
+        // "耳示" 两个字都被索引过，但原文中不相邻
+        assertEquals(List.of(), ids("耳示"));
+        assertEquals(List.of("p12"), ids("JAV"));
+        // 单字查询走词典前缀：塞 只出现在 "耳塞" 的末尾
+        assertEquals(List.of("p13"), ids("塞"));
+        assertEquals(List.of("p3"), ids("记本"));
+    }
+
+    @Test
+    public void testSave_status_change_and_delete_update_incrementally() throws SQLException {
+        assertEquals(13, ids("示例").size());
+        engine.products().save(product("x1", "Gadget 示例", "新品", Enums.ProductStatus.PUBLISHED));
+        assertEquals(List.of("x1"), ids("gadget"));
+
+        engine.products().save(product("x1", "Gadget 示例", "新品", Enums.ProductStatus.BANNED));
+        assertEquals(List.of(), ids("gadget"));
+
+        engine.products().deleteProduct("p13");
+        assertEquals(List.of(), ids("耳塞"));
+        assertEquals(12, index.size());
+    }
+
+    @Test
+    public void testTop_k_prefers_title_hits() throws SQLException {
+        engine.products().save(product("x1", "普通商品", "附带耳机收纳", Enums.ProductStatus.PUBLISHED));
+        List<ProductSearchIndex.Hit> hits = index.search("耳机", 1);
+        assertEquals(1, hits.size());
+        assertEquals("p2", hits.get(0).productId());
+        assertEquals(2, index.search("耳机", 10).size());
+    }
+
+    @Test
+    public void testIn_stock_items_rank_first_and_stock_changes_are_picked_up() throws SQLException {
+        Product soldOut = product("x1", "蓝牙音箱", "便携", Enums.ProductStatus.PUBLISHED);
+        soldOut.setStock(0);
+        engine.products().save(soldOut);
+        engine.products().save(product("x2", "蓝牙音箱", "便携", Enums.ProductStatus.PUBLISHED));
+        List<ProductSearchIndex.Hit> hits = index.search("音箱", 10);
+        assertEquals(List.of("x2", "x1"), hits.stream().map(ProductSearchIndex.Hit::productId).toList());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+
+        engine.products().reduceStock("x2", 5);
+        assertEquals(hits.get(1).score(), index.search("音箱", 10).get(0).score(), 1e-9);
+    }
+
+    @Test
+    public void testFuzzy_search_corrects_misspelled_latin_terms() throws SQLException {
+        engine.products().save(product("x1", "Keyboard 机械键盘", "", Enums.ProductStatus.PUBLISHED));
+        engine.products().save(product("x2", "Keyboard 静音", "", Enums.ProductStatus.PUBLISHED));
+        engine.products().save(product("x3", "Keypad 数字小键盘", "", Enums.ProductStatus.PUBLISHED));
+        assertEquals(List.of(), ids("keybaord"));
+        List<ProductSearchIndex.Hit> hits = index.searchFuzzy("keybaord 静音", 10);
+        assertEquals(List.of("x2"), hits.stream().map(ProductSearchIndex.Hit::productId).toList());
+        // 同距离时取命中商品更多的词；纠错后的得分低于精确命中
+        assertEquals(List.of("x1", "x2"), index.searchFuzzy("keyboad", 10).stream().map(ProductSearchIndex.Hit::productId).sorted().toList());
+        assertTrue(index.searchFuzzy("keyboad", 1).get(0).score() < index.search("keyboard", 1).get(0).score());
+        // 能精确匹配时不纠错；短词和中文不纠错
+        assertEquals(List.of("x3"), index.searchFuzzy("keypad", 10).stream().map(ProductSearchIndex.Hit::productId).toList());
+        assertEquals(List.of(), index.searchFuzzy("键鼠", 10));
+
+        engine.products().deleteProduct("x3");
+        assertEquals(List.of(), index.searchFuzzy("keypda", 10));
+    }
+
+    @Test
+    public void testClear_rebuilds_on_next_query() throws SQLException {
+        assertFalse(ids("示例").isEmpty());
+        engine.clearAllData();
+        assertEquals(List.of(), ids("示例"));
+        engine.seedSampleData();
+        assertEquals(13, ids("示例").size());
+    }
+}
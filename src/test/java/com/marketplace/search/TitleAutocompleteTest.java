@@ -0,0 +1,92 @@
+package com.marketplace.search;
+
+import com.marketplace.dao.memory.InMemoryProductRepository;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TitleAutocompleteTest {
+    private InMemoryProductRepository repo;
+    private TitleAutocomplete ac;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        repo = new InMemoryProductRepository();
+        repo.save(product("a", "MacBook Pro 14"));
+        repo.save(product("b", "Mac Mini"));
+        repo.save(product("c", "蓝牙耳机"));
+        repo.save(product("d", "蓝牙音箱"));
+        ac = new TitleAutocomplete(repo);
+    }
+
+    private static Product product(String id, String title) {
+        return new Product(id, title, "", 10, 100, Enums.ProductStatus.PUBLISHED, "m1", "10000000001");
+    }
+
+    private List<String> titles(String prefix) throws SQLException {
+        return ac.suggest(prefix, 5).stream().map(TitleAutocomplete.Suggestion::title).toList();
+    }
+
+    @Test
+    public void testPrefixes_match_title_start_and_word_starts() throws SQLException {
+        assertEquals(List.of("Mac Mini", "MacBook Pro 14"), titles("MAC"));
+        assertEquals(List.of("MacBook Pro 14"), titles("pro"));
+        assertEquals(List.of("蓝牙耳机", "蓝牙音箱"), titles("蓝牙"));
+        assertEquals(List.of(), titles("耳机"));
+        assertEquals(List.of(), titles("  "));
+    }
+
+    @Test
+    public void testPurchases_raise_ranking() throws SQLException {
+        assertEquals("蓝牙耳机", titles("蓝").get(0));
+        repo.reduceStock("d", 1);
+        repo.reduceStock("d", 1);
+        assertEquals(List.of("蓝牙音箱", "蓝牙耳机"), titles("蓝"));
+        assertEquals(2, ac.suggest("蓝牙音", 1).get(0).weight());
+    }
+
+    @Test
+    public void testPurchases_update_weights_without_reloading_products() throws SQLException {
+        int[] reads = {0};
+        InMemoryProductRepository counting = new InMemoryProductRepository() {
+            @Override
+            public List<Product> findByIds(Collection<String> ids) {
+                reads[0]++;
+                return super.findByIds(ids);
+            }
+        };
+        counting.save(product("c", "蓝牙耳机"));
+        counting.save(product("d", "蓝牙音箱"));
+        TitleAutocomplete own = new TitleAutocomplete(counting);
+        own.refresh();
+        counting.reduceStock("d", 1);
+        assertEquals("蓝牙音箱", own.suggest("蓝", 5).get(0).title());
+        assertEquals(1, own.suggest("蓝牙音", 1).get(0).weight());
+        assertEquals(0, reads[0]);
+    }
+
+    @Test
+    public void testUpdates_and_evicted_suggestions_are_recomputed() throws SQLException {
+        // 超过节点缓存容量，删除前列的建议后需要从子树补齐
+        for (int i = 0; i < TitleAutocomplete.MAX_SUGGESTIONS + 3; i++) repo.save(product("x" + i, "Item " + (char) ('a' + i)));
+        assertEquals(TitleAutocomplete.MAX_SUGGESTIONS, ac.suggest("item", 20).size());
+        repo.deleteProduct("x0");
+        Product x1 = repo.findById("x1");
+        x1.setStatus(Enums.ProductStatus.DRAFT);
+        repo.save(x1);
+        List<String> after = ac.suggest("item", 20).stream().map(TitleAutocomplete.Suggestion::title).toList();
+        assertEquals(TitleAutocomplete.MAX_SUGGESTIONS, after.size());
+        assertEquals("Item c", after.get(0));
+        assertEquals("Item l", after.get(after.size() - 1));
+
+        repo.save(product("b", "Mac Studio"));
+        assertEquals(List.of("Mac Studio", "MacBook Pro 14"), titles("mac"));
+    }
+}
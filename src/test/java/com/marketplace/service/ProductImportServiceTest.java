@@ -0,0 +1,156 @@
+package com.marketplace.service;
+
+import com.marketplace.dao.CachingProductRepository;
+import com.marketplace.dao.ProductChangeListener;
+import com.marketplace.dao.ProductRepository;
+import com.marketplace.dao.StorageEngine;
+import com.marketplace.dao.StorageEngines;
+import com.marketplace.dao.memory.InMemoryProductRepository;
+import com.marketplace.dao.memory.InMemoryStorageEngine;
+import com.marketplace.db.DBUtil;
+import com.marketplace.models.Enums;
+import com.marketplace.models.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductImportServiceTest {
+    private final StorageEngine engine = StorageEngines.getDefault();
+    private final ProductRepository products = engine.products();
+    private final ProductImportService importer = new ProductImportService(engine, 2);
+    private final ProductService productService = new ProductService(engine);
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        DBUtil.clearAllData();
+        DBUtil.seedSampleData();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        DBUtil.clearAllData();
+    }
+
+    @Test
+    public void testCsv_import_reports_bad_rows_and_notifies_once_per_batch() throws Exception {
+        AtomicInteger single = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+        ProductChangeListener counter = new ProductChangeListener() {
+            public void saved(Product product) { single.incrementAndGet(); }
+            public void savedAll(List<Product> list) { batches.incrementAndGet(); }
+            public void deleted(String productId) {}
+            public void reset() {}
+        };
+        products.addChangeListener(counter);
+        try {
+            String csv = "title,description,price,stock\r\n"
+                    + "Importa 台灯,\"护眼, 可调光\",59.9,10\r\n"
+                    + "Importa 落地灯,\"两行\n描述，含 \"\"引号\"\"\",199,3\r\n"
+                    + "坏价格,,abc,1\r\n"
+                    + ",,10,1\r\n"
+                    + "负库存,,10,-1\r\n"
+                    + "列数不对,10\r\n"
+                    + "Importa 吊灯,,899,0\r\n";
+            ProductImportService.Report r = importer.importProducts(new StringReader(csv), ProductImportService.Format.CSV, "m9", "10000000009");
+            assertEquals(3, r.imported());
+            assertEquals(4, r.failed());
+            // 第 3 条记录跨两行，之后的行号顺延
+            assertEquals(List.of(5L, 6L, 7L, 8L), r.errors().stream().map(ProductImportService.RowError::line).toList());
+            // 3 个有效行按每批 2 行写入两批
+            assertEquals(2, batches.get());
+            assertEquals(0, single.get());
+        } finally {
+            products.removeChangeListener(counter);
+        }
+        List<Product> found = productService.searchProducts("importa", 10);
+        assertEquals(3, found.size());
+        Product lamp = found.stream().filter(p -> p.getTitle().equals("Importa 落地灯")).findFirst().orElseThrow();
+        assertEquals("两行\n描述，含 \"引号\"", lamp.getDescription());
+        assertEquals("m9", lamp.getMerchantId());
+    }
+
+    @Test
+    public void testJsonl_import_updates_own_products_only() throws Exception {
+        String jsonl = "{\"title\":\"JSON 商品\",\"price\":12.5,\"stock\":4,\"status\":\"draft\"}\n"
+                + "\n"
+                + "{\"id\":\"p1\",\"title\":\"抢别人的商品\",\"price\":1,\"stock\":1}\n"
+                + "not json\n"
+                + "{\"title\":\"封禁状态\",\"price\":1,\"stock\":1,\"status\":\"BANNED\"}\n"
+                + "{\"id\":\"p1\",\"title\":\"示例手机 新款\",\"price\":1899,\"stock\":20}\n";
+        ProductImportService.Report other = importer.importProducts(new StringReader(jsonl), ProductImportService.Format.JSONL, "m9", "10000000009");
+        assertEquals(1, other.imported());
+        assertEquals(List.of(3L, 4L, 5L, 6L), other.errors().stream().map(ProductImportService.RowError::line).toList());
+        assertEquals("示例手机", products.findById("p1").getTitle());
+        assertEquals(Enums.ProductStatus.DRAFT, products.listByMerchant("m9").get(0).getStatus());
+
+        ProductImportService.Report own = importer.importProducts(new StringReader(jsonl), ProductImportService.Format.JSONL, "m1", "10000000001");
+        assertEquals(3, own.imported());
+        Product p1 = products.findById("p1");
+        assertEquals("示例手机 新款", p1.getTitle());
+        assertEquals(20, p1.getStock());
+    }
+
+    @Test
+    public void testCsv_runaway_quotes_fail_one_row_and_parsing_resumes() throws Exception {
+        String csv = "title,price,stock\n"
+                + "超长,\"" + "x".repeat(70_000) + "\",10,1\n"
+                + "Importc 台灯,10,1\n"
+                + "\"没闭合,10,1\n"
+                + "Importc 吊灯,20,2\n";
+        ProductImportService.Report r = importer.importProducts(new StringReader(csv), ProductImportService.Format.CSV, "m9", "10000000009");
+        assertEquals(2, r.imported());
+        assertEquals(List.of(2L, 4L), r.errors().stream().map(ProductImportService.RowError::line).toList());
+        assertTrue(r.errors().get(1).message().contains("引号"));
+        assertEquals(2, productService.searchProducts("importc", 10).size());
+    }
+
+    // 商品仓储的 saveAll 按给定的异常失败，记录逐行保存的次数；其余仓储用内存引擎的
+    private static StorageEngine failingBatches(SQLException failure, AtomicInteger singleSaves) {
+        ProductRepository repo = new CachingProductRepository(new InMemoryProductRepository()) {
+            @Override
+            public void saveAll(List<Product> list) throws SQLException {
+                throw failure;
+            }
+
+            @Override
+            public void save(Product p) throws SQLException {
+                singleSaves.incrementAndGet();
+                super.save(p);
+            }
+        };
+        StorageEngine memory = new InMemoryStorageEngine();
+        return (StorageEngine) Proxy.newProxyInstance(StorageEngine.class.getClassLoader(), new Class<?>[]{StorageEngine.class},
+                (proxy, method, args) -> method.getName().equals("products") ? repo : method.invoke(memory, args));
+    }
+
+    @Test
+    public void testOnly_row_errors_fall_back_to_single_row_saves() throws Exception {
+        String csv = "title,price,stock\nA,1,1\nB,2,2\n";
+        AtomicInteger singleSaves = new AtomicInteger();
+        ProductImportService locked = new ProductImportService(failingBatches(new SQLException("database is locked", null, 5), singleSaves), 2);
+        SQLException e = assertThrows(SQLException.class, () -> locked.importProducts(new StringReader(csv), ProductImportService.Format.CSV, "m9", "10000000009"));
+        assertEquals("database is locked", e.getMessage());
+        assertEquals(0, singleSaves.get());
+
+        ProductImportService constrained = new ProductImportService(failingBatches(new SQLIntegrityConstraintViolationException("duplicate"), singleSaves), 2);
+        ProductImportService.Report r = constrained.importProducts(new StringReader(csv), ProductImportService.Format.CSV, "m9", "10000000009");
+        assertEquals(2, r.imported());
+        assertEquals(2, singleSaves.get());
+    }
+
+    @Test
+    public void testCsv_without_required_columns_is_rejected() {
+        IOException e = assertThrows(IOException.class, () -> importer.importProducts(new StringReader("title,stock\nA,1\n"), ProductImportService.Format.CSV, "m9", "10000000009"));
+        assertTrue(e.getMessage().contains("price"));
+    }
+}
@@ -2,6 +2,7 @@ package com.marketplace.service;
 
 import com.marketplace.db.DBUtil;
 import com.marketplace.dao.ProductDAO;
+import com.marketplace.dao.memory.InMemoryStorageEngine;
 import com.marketplace.models.Product;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -77,6 +78,15 @@ public class ProductServiceTest {
         assertTrue(res2.stream().anyMatch(x -> x.getProductId().equals(p.getProductId())));
     }
 
+    @Test
+    public void testFull_text_mode_falls_back_to_index_on_memory_engine() throws SQLException {
+        ProductService memory = new ProductService(new InMemoryStorageEngine());
+        Product p = memory.publishProduct("独特标题XYZ", "其它", 1.0, 1, "m1", "10000000001");
+        List<Product> res = memory.searchProducts("xyz", 10, ProductService.SearchMode.FULL_TEXT);
+        assertEquals(1, res.size());
+        assertEquals(p.getProductId(), res.get(0).getProductId());
+    }
+
     @Test
     public void testSearchProducts_no_match_returns_empty() throws SQLException {
         List<com.marketplace.models.Product> res = svc.searchProducts("不存在的关键词_zzz");